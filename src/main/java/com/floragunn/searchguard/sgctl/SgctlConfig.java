@@ -19,7 +19,10 @@ package com.floragunn.searchguard.sgctl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -38,10 +41,18 @@ import com.floragunn.codova.validation.errors.JsonValidationError;
 public class SgctlConfig {
 
     public static class Cluster implements Document<Cluster> {
+        public static final int DEFAULT_RESPONSE_CACHE_SIZE_MB = 0;
+
         private String clusterId;
         private String server;
         private int port;
+        private List<String> nodes;
         private TLSConfig tlsConfig;
+        private boolean acceptGzip = true;
+        private int gzipRequestThreshold = -1;
+        private boolean sniffing = false;
+        private int sniffingTtlSeconds = 300;
+        private int responseCacheSizeMb = DEFAULT_RESPONSE_CACHE_SIZE_MB;
 
         public Cluster(String server, int port, TLSConfig tlsConfig) {
             this.server = server;
@@ -54,7 +65,7 @@ public class SgctlConfig {
         }
 
         public static Cluster read(File configDir, String clusterId) throws SgctlException {
-            File configFile = new File(configDir, "cluster_" + clusterId + ".yml");
+            File configFile = getConfigFile(configDir, clusterId);
 
             try {
 
@@ -85,7 +96,7 @@ public class SgctlConfig {
                 }
             }
 
-            File configFile = new File(configDir, "cluster_" + clusterId + ".yml");
+            File configFile = getConfigFile(configDir, clusterId);
 
             try {
                 DocWriter.yaml().write(configFile, this.toBasicObject());
@@ -95,6 +106,38 @@ public class SgctlConfig {
 
         }
 
+        public static File getConfigFile(File configDir, String clusterId) {
+            return new File(configDir, "cluster_" + clusterId + ".yml");
+        }
+
+        /**
+         * Returns the ids of all cluster configurations in the given directory, sorted by name.
+         */
+        public static List<String> listClusterIds(File configDir) {
+            List<String> result = new ArrayList<>();
+            File[] files = configDir.listFiles((file) -> file.isFile() && file.getName().startsWith("cluster_") && file.getName().endsWith(".yml"));
+
+            if (files == null) {
+                return result;
+            }
+
+            for (File file : files) {
+                String clusterId = file.getName().substring("cluster_".length(), file.getName().length() - ".yml".length());
+
+                // Skip the caches of discovered nodes, which are located next to the cluster config files
+                if (clusterId.endsWith("_nodes")
+                        && getConfigFile(configDir, clusterId.substring(0, clusterId.length() - "_nodes".length())).exists()) {
+                    continue;
+                }
+
+                result.add(clusterId);
+            }
+
+            Collections.sort(result);
+
+            return result;
+        }
+
         public static Cluster parse(Map<String, Object> config, String clusterId) throws ConfigValidationException {
             ValidationErrors validationErrors = new ValidationErrors();
             ValidatingDocNode vNode = new ValidatingDocNode(config, validationErrors).expandVariables("file", VariableResolvers.FILE);
@@ -103,7 +146,13 @@ public class SgctlConfig {
 
             result.server = vNode.get("server").required().asString();
             result.port = vNode.get("port").withDefault(9300).asInt();
+            result.nodes = vNode.get("nodes").asListOfStrings();
             result.tlsConfig = vNode.get("tls").required().by((ValidatingFunction<DocNode, TLSConfig>) TLSConfig::parse);
+            result.acceptGzip = vNode.get("compression.responses").withDefault(true).asBoolean();
+            result.gzipRequestThreshold = vNode.get("compression.request_threshold").withDefault(-1).asInt();
+            result.sniffing = vNode.get("sniffing.enabled").withDefault(false).asBoolean();
+            result.sniffingTtlSeconds = vNode.get("sniffing.ttl_seconds").withDefault(300).asInt();
+            result.responseCacheSizeMb = vNode.get("response_cache.max_size_mb").withDefault(DEFAULT_RESPONSE_CACHE_SIZE_MB).asInt();
             result.clusterId = clusterId;
 
             validationErrors.throwExceptionForPresentErrors();
@@ -117,8 +166,32 @@ public class SgctlConfig {
 
             result.put("server", server);
             result.put("port", port);
+
+            if (nodes != null && nodes.size() > 1) {
+                result.put("nodes", nodes);
+            }
             result.put("tls", tlsConfig.toBasicObject());
 
+            if (!acceptGzip || gzipRequestThreshold >= 0) {
+                Map<String, Object> compression = new LinkedHashMap<>();
+                compression.put("responses", acceptGzip);
+                compression.put("request_threshold", gzipRequestThreshold);
+                result.put("compression", compression);
+            }
+
+            if (sniffing) {
+                Map<String, Object> sniffingConfig = new LinkedHashMap<>();
+                sniffingConfig.put("enabled", sniffing);
+                sniffingConfig.put("ttl_seconds", sniffingTtlSeconds);
+                result.put("sniffing", sniffingConfig);
+            }
+
+            if (responseCacheSizeMb != DEFAULT_RESPONSE_CACHE_SIZE_MB) {
+                Map<String, Object> responseCacheConfig = new LinkedHashMap<>();
+                responseCacheConfig.put("max_size_mb", responseCacheSizeMb);
+                result.put("response_cache", responseCacheConfig);
+            }
+
             return result;
         }
 
@@ -130,10 +203,97 @@ public class SgctlConfig {
             return port;
         }
 
+        /**
+         * Returns the addresses of all nodes which can be used to connect to the cluster in the format host:port. The node specified by server
+         * and port is always the first element.
+         */
+        public List<String> getNodes() {
+            List<String> result = new ArrayList<>();
+            result.add(server + ":" + port);
+
+            if (nodes != null) {
+                for (String node : nodes) {
+                    if (!result.contains(node)) {
+                        result.add(node);
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        public Cluster nodes(List<String> nodes) {
+            this.nodes = nodes;
+            return this;
+        }
+
         public TLSConfig getTlsConfig() {
             return tlsConfig;
         }
 
+        /**
+         * If true, the server may send gzip compressed responses.
+         */
+        public boolean isAcceptGzip() {
+            return acceptGzip;
+        }
+
+        /**
+         * Request bodies with at least this number of bytes are sent gzip compressed. A negative value disables compression of requests.
+         */
+        public int getGzipRequestThreshold() {
+            return gzipRequestThreshold;
+        }
+
+        public Cluster compression(boolean acceptGzip, int gzipRequestThreshold) {
+            this.acceptGzip = acceptGzip;
+            this.gzipRequestThreshold = gzipRequestThreshold;
+            return this;
+        }
+
+        /**
+         * If true, the nodes of the cluster are discovered using the _nodes/http API. The discovered nodes are cached for getSniffingTtlSeconds().
+         */
+        public boolean isSniffing() {
+            return sniffing;
+        }
+
+        public int getSniffingTtlSeconds() {
+            return sniffingTtlSeconds;
+        }
+
+        public Cluster sniffing(boolean sniffing, int sniffingTtlSeconds) {
+            this.sniffing = sniffing;
+            this.sniffingTtlSeconds = sniffingTtlSeconds;
+            return this;
+        }
+
+        /**
+         * The maximum size of the cache for GET responses in megabytes. 0 disables the cache.
+         */
+        public int getResponseCacheSizeMb() {
+            return responseCacheSizeMb;
+        }
+
+        public Cluster responseCache(int responseCacheSizeMb) {
+            this.responseCacheSizeMb = responseCacheSizeMb;
+            return this;
+        }
+
+        /**
+         * The directory which caches GET responses of the cluster. It is located next to the cluster config file.
+         */
+        public static File getResponseCacheDir(File configDir, String clusterId) {
+            return new File(configDir, "cluster_" + clusterId + "_cache");
+        }
+
+        /**
+         * The file which caches the nodes discovered by sniffing. It is located next to the cluster config file.
+         */
+        public static File getNodesCacheFile(File configDir, String clusterId) {
+            return new File(configDir, "cluster_" + clusterId + "_nodes.yml");
+        }
+
         public String getClusterId() {
             return clusterId;
         }
@@ -24,9 +24,14 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import com.floragunn.searchguard.sgctl.commands.RestCommand;
 import com.floragunn.searchguard.sgctl.commands.ComponentState;
 import com.floragunn.searchguard.sgctl.commands.Connect;
+import com.floragunn.searchguard.sgctl.commands.DiffConfig;
+import com.floragunn.searchguard.sgctl.commands.ListSnapshots;
+import com.floragunn.searchguard.sgctl.commands.RestoreSnapshot;
+import com.floragunn.searchguard.sgctl.commands.DaemonCommand;
 import com.floragunn.searchguard.sgctl.commands.GetConfig;
 import com.floragunn.searchguard.sgctl.commands.MigrateConfig;
 import com.floragunn.searchguard.sgctl.commands.SetCommand;
+import com.floragunn.searchguard.sgctl.commands.ShellCommand;
 import com.floragunn.searchguard.sgctl.commands.ShowLicenses;
 import com.floragunn.searchguard.sgctl.commands.ShowVersion;
 import com.floragunn.searchguard.sgctl.commands.UpdateConfig;
@@ -39,13 +44,16 @@ import com.floragunn.searchguard.sgctl.commands.user.UpdateUser;
 import com.floragunn.searchguard.sgctl.commands.vars.AddConfigVar;
 import com.floragunn.searchguard.sgctl.commands.vars.DeleteConfigVar;
 import com.floragunn.searchguard.sgctl.commands.vars.UpdateConfigVar;
+import com.floragunn.searchguard.sgctl.instrumentation.FlightRecording;
+import com.floragunn.searchguard.sgctl.instrumentation.Timings;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
-@Command(name = "sgctl", subcommands = { Connect.class, GetConfig.class, UpdateConfig.class, MigrateConfig.class, ComponentState.class,
-        ShowLicenses.class, ShowVersion.class, AddUserLocal.class, AddUser.class, UpdateUser.class, DeleteUser.class, AddConfigVar.class,
-        UpdateConfigVar.class, DeleteConfigVar.class, SetCommand.class, UpdateSgLicense.class, RestCommand.class, SpecialCommand.class }, description = "Remote control tool for Search Guard")
+@Command(name = "sgctl", subcommands = { Connect.class, GetConfig.class, UpdateConfig.class, DiffConfig.class, ListSnapshots.class,
+        RestoreSnapshot.class, MigrateConfig.class, ComponentState.class, ShowLicenses.class, ShowVersion.class, AddUserLocal.class, AddUser.class,
+        UpdateUser.class, DeleteUser.class, AddConfigVar.class, UpdateConfigVar.class, DeleteConfigVar.class, SetCommand.class, UpdateSgLicense.class,
+        RestCommand.class, SpecialCommand.class, ShellCommand.class, DaemonCommand.class }, description = "Remote control tool for Search Guard")
 public class SgctlTool {
 
     static {
@@ -60,7 +68,22 @@ public class SgctlTool {
     }
 
     public static int exec(String... args) {
-        return new CommandLine(new SgctlTool()).execute(args);
+        return exec(new CommandLine(new SgctlTool()), args);
+    }
+
+    /**
+     * Executes a command using the given command line. If requested by the --timings option, the timings of the command are printed to
+     * standard error afterwards. A flight recording started by the --jfr option is written when the command has finished.
+     */
+    public static int exec(CommandLine commandLine, String... args) {
+        Timings.commandStarted();
+
+        try {
+            return commandLine.execute(args);
+        } finally {
+            Timings.finish(System.err);
+            FlightRecording.finish(System.err);
+        }
     }
 
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Streaming gzip compression of request and response bodies. The entities count the transferred bytes in order to be able to report the
+ * compression ratio in debug mode.
+ */
+class GzipCompression {
+
+    static final String GZIP = "gzip";
+
+    /**
+     * Returns a compressing entity if the given entity has at least the given size. For entities with unknown length, the entity is written to
+     * a buffer until the threshold is reached. If the entity turns out to be smaller, the buffered copy is returned.
+     */
+    static HttpEntity compressIfLarge(HttpEntity entity, int threshold) throws IOException {
+        if (entity == null || threshold < 0 || entity.getContentEncoding() != null) {
+            return entity;
+        }
+
+        long length = entity.getContentLength();
+
+        if (length < 0) {
+            if (!entity.isRepeatable()) {
+                return entity;
+            }
+
+            ThresholdBuffer buffer = new ThresholdBuffer(threshold);
+
+            try {
+                entity.writeTo(buffer);
+                return new ByteArrayEntity(buffer.toByteArray(),
+                        entity.getContentType() != null ? ContentType.parse(entity.getContentType().getValue()) : null);
+            } catch (ThresholdBuffer.ThresholdExceededException e) {
+                return new CompressingEntity(entity);
+            }
+        } else if (length >= threshold) {
+            return new CompressingEntity(entity);
+        } else {
+            return entity;
+        }
+    }
+
+    static boolean isGzip(HttpEntity entity) {
+        return entity != null && entity.getContentEncoding() != null && GZIP.equalsIgnoreCase(entity.getContentEncoding().getValue());
+    }
+
+    static String describe(long uncompressed, long compressed) {
+        long ratio = uncompressed > 0 ? compressed * 100 / uncompressed : 100;
+        return uncompressed + " bytes; gzip compressed " + compressed + " bytes (" + ratio + "%); saved " + (uncompressed - compressed) + " bytes";
+    }
+
+    static class CompressingEntity extends HttpEntityWrapper {
+        private long uncompressedBytes;
+        private long compressedBytes;
+
+        CompressingEntity(HttpEntity wrappedEntity) {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return new BasicHeader("Content-Encoding", GZIP);
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return true;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeTo(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            CountingOutputStream compressed = new CountingOutputStream(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // The stream belongs to the HTTP client
+                    flush();
+                }
+            });
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192);
+            CountingOutputStream uncompressed = new CountingOutputStream(gzip);
+
+            wrappedEntity.writeTo(uncompressed);
+            gzip.finish();
+            gzip.flush();
+
+            this.uncompressedBytes = uncompressed.getCount();
+            this.compressedBytes = compressed.getCount();
+        }
+
+        String describe() {
+            return GzipCompression.describe(uncompressedBytes, compressedBytes);
+        }
+    }
+
+    static class DecompressingEntity extends HttpEntityWrapper {
+        private CountingInputStream compressed;
+        private CountingInputStream uncompressed;
+
+        DecompressingEntity(HttpEntity wrappedEntity) {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException {
+            if (uncompressed == null) {
+                compressed = new CountingInputStream(wrappedEntity.getContent());
+                uncompressed = new CountingInputStream(new GZIPInputStream(compressed, 8192));
+            }
+
+            return uncompressed;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                ByteStreams.copy(in, out);
+            }
+        }
+
+        synchronized String describe() {
+            if (uncompressed == null) {
+                return "not read";
+            }
+
+            return GzipCompression.describe(uncompressed.getCount(), compressed.getCount());
+        }
+    }
+
+    /**
+     * Buffers written data until the threshold is reached; then, a ThresholdExceededException is thrown.
+     */
+    static class ThresholdBuffer extends ByteArrayOutputStream {
+        private final int threshold;
+
+        ThresholdBuffer(int threshold) {
+            super(Math.min(threshold, 8192));
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) {
+            checkThreshold(1);
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            checkThreshold(len);
+            super.write(b, off, len);
+        }
+
+        private void checkThreshold(int len) {
+            if (count + len >= threshold) {
+                throw new ThresholdExceededException();
+            }
+        }
+
+        static class ThresholdExceededException extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            ThresholdExceededException() {
+                super(null, null, false, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.protocol.HttpContext;
+
+import com.floragunn.searchguard.sgctl.instrumentation.HttpRequestEvent;
+import com.floragunn.searchguard.sgctl.instrumentation.Timings;
+
+/**
+ * Wrappers for the HTTP client which measure the phases of establishing connections and the transfer of request and response bodies. The
+ * connection wrappers are always installed and only record if timings are enabled; the body wrappers are only used if timings or JFR events
+ * are recorded.
+ */
+class InstrumentedConnections {
+
+    static class DnsResolver extends SystemDefaultDnsResolver {
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            long start = System.nanoTime();
+
+            try {
+                return super.resolve(host);
+            } finally {
+                Timings.record("DNS lookup", System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Establishes the TCP connection separately from the TLS handshake in order to be able to measure both.
+     */
+    static class SocketFactory implements LayeredConnectionSocketFactory {
+        private final LayeredConnectionSocketFactory delegate;
+
+        SocketFactory(LayeredConnectionSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return new Socket();
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                HttpContext context) throws IOException {
+            Socket plainSocket = socket != null ? socket : createSocket(context);
+
+            if (localAddress != null) {
+                plainSocket.bind(localAddress);
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                plainSocket.connect(remoteAddress, connectTimeout);
+            } catch (IOException e) {
+                plainSocket.close();
+                throw e;
+            }
+
+            Timings.record("TCP connect", System.nanoTime() - start);
+
+            start = System.nanoTime();
+
+            try {
+                return delegate.createLayeredSocket(plainSocket, host.getHostName(), remoteAddress.getPort(), context);
+            } finally {
+                Timings.record("TLS handshake", System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            return delegate.createLayeredSocket(socket, target, port, context);
+        }
+    }
+
+    /**
+     * Collects the measurements of a single request for the --timings report and for JFR. Both are optional; if neither is active, no Exchange
+     * object is created.
+     */
+    static class Exchange {
+        private final Timings.Request timing;
+        private final HttpRequestEvent event;
+        private final long start = System.nanoTime();
+        private boolean finished;
+
+        private Exchange(Timings.Request timing, HttpRequestEvent event) {
+            this.timing = timing;
+            this.event = event;
+        }
+
+        /**
+         * Returns null if neither timings nor JFR events are recorded.
+         */
+        static Exchange start(String method, String path) {
+            Timings.Request timing = Timings.request(method, path);
+            HttpRequestEvent event = HttpRequestEvent.start(method, path);
+
+            return timing != null || event != null ? new Exchange(timing, event) : null;
+        }
+
+        void uploadFinished(long uploadNanos, long bytesSent) {
+            if (timing != null) {
+                timing.getBytesSent().set(bytesSent);
+                timing.uploadFinished(uploadNanos);
+            }
+
+            if (event != null) {
+                event.setBytesSent(bytesSent);
+            }
+        }
+
+        void responseReceived(int status) {
+            if (timing != null) {
+                timing.responseReceived(status, start);
+            }
+
+            if (event != null) {
+                event.setStatus(status);
+            }
+        }
+
+        void bytesReceived(long bytes) {
+            if (timing != null) {
+                timing.getBytesReceived().addAndGet(bytes);
+            }
+
+            if (event != null) {
+                event.addBytesReceived(bytes);
+            }
+        }
+
+        /**
+         * Called when the response body has been read or if the request failed
+         */
+        synchronized void finish() {
+            if (!finished) {
+                finished = true;
+
+                if (event != null) {
+                    event.finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Measures the time needed for sending the request body and counts the sent bytes.
+     */
+    static class RequestEntity extends HttpEntityWrapper {
+        private final Exchange exchange;
+
+        RequestEntity(HttpEntity wrappedEntity, Exchange exchange) {
+            super(wrappedEntity);
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            long start = System.nanoTime();
+            long[] bytesSent = new long[1];
+
+            wrappedEntity.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    bytesSent[0]++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    bytesSent[0] += len;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // The stream belongs to the HTTP client
+                    flush();
+                }
+            });
+
+            exchange.uploadFinished(System.nanoTime() - start, bytesSent[0]);
+        }
+    }
+
+    /**
+     * Counts the bytes of the response body as they are read. The exchange is finished when the body stream is closed.
+     */
+    static class ResponseEntity extends HttpEntityWrapper {
+        private final Exchange exchange;
+
+        ResponseEntity(HttpEntity wrappedEntity, Exchange exchange) {
+            super(wrappedEntity);
+            this.exchange = exchange;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(wrappedEntity.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int result = super.read();
+
+                    if (result != -1) {
+                        exchange.bytesReceived(1);
+                    }
+
+                    return result;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int result = super.read(b, off, len);
+
+                    if (result > 0) {
+                        exchange.bytesReceived(result);
+                    }
+
+                    return result;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        exchange.finish();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                in.transferTo(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import com.floragunn.codova.documents.DocWriter;
+import com.floragunn.codova.documents.Document;
+
+/**
+ * An HTTP entity which serializes a document tree to JSON while it is being sent. Thus, large serialized documents are never kept in memory
+ * as a whole. As the length of such an entity is not known in advance, it is sent using chunked transfer encoding. Small documents are
+ * serialized in advance and sent with a Content-Length header instead.
+ */
+public class JsonEntity extends AbstractHttpEntity {
+
+    /**
+     * Documents smaller than this are serialized in advance. Documents containing streaming documents are always serialized while being sent.
+     */
+    static final int MAX_BUFFERED_LENGTH = 64 * 1024;
+
+    private final Object document;
+    private byte[] bufferedContent;
+    private boolean bufferingAttempted;
+
+    public JsonEntity(Object document) {
+        this.document = document;
+        setContentType(ContentType.APPLICATION_JSON.toString());
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return getBufferedContent() == null;
+    }
+
+    @Override
+    public long getContentLength() {
+        byte[] bufferedContent = getBufferedContent();
+        return bufferedContent != null ? bufferedContent.length : -1;
+    }
+
+    /**
+     * Only for consumers which cannot handle writeTo(); for large documents, this materializes the whole document in memory.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        byte[] bufferedContent = getBufferedContent();
+
+        if (bufferedContent != null) {
+            return new ByteArrayInputStream(bufferedContent);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] bufferedContent = getBufferedContent();
+
+        if (bufferedContent != null) {
+            out.write(bufferedContent);
+        } else {
+            writeDocumentTo(out);
+        }
+    }
+
+    private void writeDocumentTo(OutputStream out) throws IOException {
+        // The stream belongs to the HTTP client; it must not be closed by the generator
+        Writer writer = new FilterWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        write(writer, document);
+        writer.flush();
+    }
+
+    /**
+     * Returns the serialized document if it is smaller than MAX_BUFFERED_LENGTH and does not contain streaming documents; otherwise null.
+     */
+    private synchronized byte[] getBufferedContent() {
+        if (!bufferingAttempted) {
+            bufferingAttempted = true;
+
+            if (!(document instanceof StreamingDocument) && !(document instanceof Map && containsStreamingDocument((Map<?, ?>) document))) {
+                GzipCompression.ThresholdBuffer buffer = new GzipCompression.ThresholdBuffer(MAX_BUFFERED_LENGTH);
+
+                try {
+                    writeDocumentTo(buffer);
+                    bufferedContent = buffer.toByteArray();
+                } catch (GzipCompression.ThresholdBuffer.ThresholdExceededException e) {
+                    // Too large; the document is serialized while being sent
+                } catch (IOException e) {
+                    // The error will occur again and be reported when the document is sent
+                }
+            }
+        }
+
+        return bufferedContent;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Maps which contain streaming documents are written attribute by attribute; everything else is serialized by DocWriter.
+     */
+    private static void write(Writer writer, Object value) throws IOException {
+        if (value instanceof StreamingDocument) {
+            ((StreamingDocument) value).writeJsonTo(writer);
+        } else if (value instanceof Map && containsStreamingDocument((Map<?, ?>) value)) {
+            boolean first = true;
+            writer.write('{');
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+
+                first = false;
+                writer.write(DocWriter.json().writeAsString(String.valueOf(entry.getKey())));
+                writer.write(':');
+                write(writer, entry.getValue());
+            }
+
+            writer.write('}');
+        } else {
+            DocWriter.json().write(writer, value);
+        }
+    }
+
+    private static boolean containsStreamingDocument(Map<?, ?> map) {
+        for (Object value : map.values()) {
+            if (value instanceof StreamingDocument) {
+                return true;
+            } else if (value instanceof Map && !(value instanceof Document) && containsStreamingDocument((Map<?, ?>) value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * A document which is not kept in memory, but written directly from its source, for example a large file. Can be used as value in the
+     * maps passed to JsonEntity. As JsonEntity is repeatable, the document must support being written several times.
+     */
+    public interface StreamingDocument {
+        void writeJsonTo(Writer writer) throws IOException;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+
+/**
+ * Keeps track of the latency, the requests in flight and the failures of the nodes of a cluster. Requests are routed to the healthy node with
+ * the lowest latency, weighted by the number of requests in flight. Thus, concurrent requests are spread over the nodes. Nodes which have not
+ * been used yet are preferred in order to get latency measurements for them. Failed nodes are avoided for a period of time which grows with
+ * the number of subsequent failures.
+ */
+public class NodeSelector {
+
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    public NodeSelector(Collection<HttpHost> hosts) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one host is required");
+        }
+
+        for (HttpHost host : hosts) {
+            nodes.add(new Node(host));
+        }
+    }
+
+    /**
+     * Returns the best node which is not contained in the excluded hosts. Returns null if all nodes are excluded.
+     */
+    public synchronized HttpHost select(Collection<HttpHost> excluded) {
+        long now = System.nanoTime();
+        Node best = null;
+
+        for (Node node : nodes) {
+            if (excluded.contains(node.host)) {
+                continue;
+            }
+
+            if (best == null || node.isBetterThan(best, now)) {
+                best = node;
+            }
+        }
+
+        return best != null ? best.host : null;
+    }
+
+    /**
+     * Must be called when a request is sent to the given host. Each call must be followed by a call to onSuccess() or onFailure().
+     */
+    public synchronized void onStart(HttpHost host) {
+        Node node = getNode(host);
+
+        if (node != null) {
+            node.inFlight++;
+        }
+    }
+
+    public synchronized void onSuccess(HttpHost host, long latencyNanos) {
+        Node node = getNode(host);
+
+        if (node != null) {
+            node.inFlight = Math.max(node.inFlight - 1, 0);
+            node.latencyNanos = node.latencyNanos == 0 ? latencyNanos : (long) (node.latencyNanos * 0.7 + latencyNanos * 0.3);
+            node.failures = 0;
+            node.deadUntilNanos = 0;
+        }
+    }
+
+    public synchronized void onFailure(HttpHost host) {
+        Node node = getNode(host);
+
+        if (node != null) {
+            node.inFlight = Math.max(node.inFlight - 1, 0);
+            node.failures++;
+            node.deadUntilNanos = System.nanoTime() + Math.min(INITIAL_BACKOFF_NANOS << Math.min(node.failures - 1, 10), MAX_BACKOFF_NANOS);
+        }
+    }
+
+    /**
+     * Adds the given hosts, unless they are already known.
+     */
+    public synchronized void addHosts(Collection<HttpHost> hosts) {
+        for (HttpHost host : hosts) {
+            if (getNode(host) == null) {
+                nodes.add(new Node(host));
+            }
+        }
+    }
+
+    public synchronized boolean isHealthy(HttpHost host) {
+        Node node = getNode(host);
+        return node != null && node.isHealthy(System.nanoTime());
+    }
+
+    public synchronized List<HttpHost> getHosts() {
+        List<HttpHost> result = new ArrayList<>(nodes.size());
+
+        for (Node node : nodes) {
+            result.add(node.host);
+        }
+
+        return result;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private Node getNode(HttpHost host) {
+        for (Node node : nodes) {
+            if (node.host.equals(host)) {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    private static class Node {
+        private final HttpHost host;
+        private long latencyNanos;
+        private int failures;
+        private long deadUntilNanos;
+        private int inFlight;
+
+        Node(HttpHost host) {
+            this.host = host;
+        }
+
+        boolean isHealthy(long now) {
+            return failures == 0 || now - deadUntilNanos >= 0;
+        }
+
+        boolean isBetterThan(Node other, long now) {
+            boolean healthy = isHealthy(now);
+
+            if (healthy != other.isHealthy(now)) {
+                return healthy;
+            } else if (!healthy) {
+                // If all nodes failed, try the one which will recover first
+                return deadUntilNanos - other.deadUntilNanos < 0;
+            }
+
+            long score = latencyNanos * (inFlight + 1);
+            long otherScore = other.latencyNanos * (other.inFlight + 1);
+
+            if (score != otherScore) {
+                return score < otherScore;
+            } else {
+                return inFlight < other.inFlight;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpHost;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.DocWriter;
+import com.google.common.net.InetAddresses;
+
+/**
+ * Discovers the HTTP addresses of the nodes of a cluster using the _nodes/http API. Only nodes with a data or ingest role and coordinating only
+ * nodes are used; other nodes, like dedicated master or machine learning nodes, should not be used for coordinating requests.
+ *
+ * The nodes are connected using the published IP address, but the TLS certificate is verified using the host name sgctl is configured with,
+ * unless the node publishes a host name itself.
+ *
+ * The found nodes can be cached in a file in order to avoid sniffing for each sgctl call.
+ */
+public class NodeSniffer {
+
+    public static List<HttpHost> sniff(SearchGuardRestClient client)
+            throws FailedConnectionException, InvalidResponseException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        String configuredHostName = client.getHttpHost().getHostName();
+        return client.get("/_nodes/http").parseResponseBy((response) -> parseNodesResponse(response.asDocNode(), configuredHostName));
+    }
+
+    static List<HttpHost> parseNodesResponse(DocNode nodesResponse, String configuredHostName) {
+        List<HttpHost> result = new ArrayList<>();
+
+        if (!(nodesResponse.get("nodes") instanceof Map)) {
+            return result;
+        }
+
+        for (Object nodeObject : ((Map<?, ?>) nodesResponse.get("nodes")).values()) {
+            if (!(nodeObject instanceof Map)) {
+                continue;
+            }
+
+            DocNode node = DocNode.wrap(nodeObject);
+            List<?> roles = node.get("roles") instanceof List ? (List<?>) node.get("roles") : null;
+
+            if (roles != null && !roles.isEmpty() && !isDataOrIngestNode(roles)) {
+                continue;
+            }
+
+            Object http = node.get("http");
+            Object publishAddress = http instanceof Map ? ((Map<?, ?>) http).get("publish_address") : null;
+
+            if (publishAddress instanceof String) {
+                HttpHost host = parsePublishAddress((String) publishAddress, configuredHostName);
+
+                if (host != null && !result.contains(host)) {
+                    result.add(host);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isDataOrIngestNode(List<?> roles) {
+        for (Object role : roles) {
+            // Besides data, there are specialized data roles like data_hot or data_content
+            if ("ingest".equals(role) || "data".equals(role) || (role instanceof String && ((String) role).startsWith("data_"))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parses publish addresses in the formats ip:port, hostname/ip:port and [ipv6]:port. If the address contains an IP address, the returned
+     * host is connected using this address. The host name, which is used for verifying the TLS certificate, is taken from the address; if it
+     * has none, the given configured host name is used. If that is null as well, the IP address is used as host name.
+     */
+    static HttpHost parsePublishAddress(String publishAddress, String configuredHostName) {
+        int slash = publishAddress.indexOf('/');
+        int colon = publishAddress.lastIndexOf(':');
+
+        if (colon == -1 || colon < slash || publishAddress.lastIndexOf(']') > colon) {
+            return null;
+        }
+
+        int port;
+
+        try {
+            port = Integer.parseInt(publishAddress.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        String hostName = slash > 0 ? publishAddress.substring(0, slash) : configuredHostName;
+        String address = publishAddress.substring(slash + 1, colon);
+
+        if (address.startsWith("[") && address.endsWith("]")) {
+            address = address.substring(1, address.length() - 1);
+        }
+
+        if (address.isEmpty()) {
+            return hostName != null ? new HttpHost(hostName, port, "https") : null;
+        }
+
+        if (!InetAddresses.isInetAddress(address)) {
+            return new HttpHost(slash > 0 ? hostName : address, port, "https");
+        }
+
+        InetAddress inetAddress = InetAddresses.forString(address);
+
+        if (hostName == null) {
+            hostName = inetAddress instanceof Inet6Address ? "[" + address + "]" : address;
+        }
+
+        return new HttpHost(inetAddress, hostName, port, "https");
+    }
+
+    /**
+     * Returns the nodes stored in the cache file, or null if the file does not exist or is older than maxAge.
+     */
+    public static List<HttpHost> readCache(File cacheFile, Duration maxAge) {
+        if (!cacheFile.exists() || System.currentTimeMillis() - cacheFile.lastModified() > maxAge.toMillis()) {
+            return null;
+        }
+
+        try {
+            DocNode cache = DocNode.wrap(DocReader.yaml().readObject(cacheFile));
+            List<HttpHost> result = new ArrayList<>();
+
+            for (String node : cache.getAsListOfStrings("nodes")) {
+                HttpHost host = parsePublishAddress(node, null);
+
+                if (host != null) {
+                    result.add(host);
+                }
+            }
+
+            return result;
+        } catch (Exception e) {
+            // An unreadable cache will be re-created
+            return null;
+        }
+    }
+
+    public static void writeCache(File cacheFile, List<HttpHost> hosts) throws IOException {
+        List<String> nodes = new ArrayList<>(hosts.size());
+
+        for (HttpHost host : hosts) {
+            if (host.getAddress() != null) {
+                nodes.add(host.getHostName() + "/" + InetAddresses.toUriString(host.getAddress()) + ":" + host.getPort());
+            } else {
+                nodes.add(host.getHostName() + ":" + host.getPort());
+            }
+        }
+
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("nodes", nodes);
+
+        DocWriter.yaml().write(cacheFile, cache);
+    }
+}
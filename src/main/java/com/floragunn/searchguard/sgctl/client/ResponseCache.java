@@ -0,0 +1,540 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.DocWriter;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Keeps the bodies of GET responses which carry an ETag in a directory. The client sends the ETag of a cached response as If-None-Match
+ * header; if the server replies with 304 Not Modified, the body is taken from the cache.
+ *
+ * Each response is stored in a separate file, which starts with the metadata of the response, followed by the unmodified body. Responses are
+ * written to the cache while they are read by the client; they are never kept completely in memory. Responses may contain sensitive data;
+ * thus, the directory and the files are only accessible by the owner.
+ *
+ * If the files exceed the maximum size, the least recently used ones are removed. Errors while accessing the cache are logged, but never
+ * fail a request; the request is then just executed without the cache.
+ */
+public class ResponseCache {
+    private static final Logger log = Logger.getLogger(ResponseCache.class.getName());
+    private static final String FILE_SUFFIX = ".cache";
+    private static final Set<PosixFilePermission> DIR_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private final File dir;
+    private final long maxBytes;
+
+    public ResponseCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached response for the given URI or null if there is none.
+     */
+    public Entry get(String uri) {
+        File file = getFile(uri);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            Entry entry = readEntry(file);
+
+            if (!uri.equals(entry.uri)) {
+                // Hash collision
+                return null;
+            }
+
+            // The modification time is used to determine the least recently used entries
+            file.setLastModified(System.currentTimeMillis());
+
+            return entry;
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Error while reading " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns an entity which writes the body of the given response entity to the cache while it is read. The response is only added to the
+     * cache if the body was read completely and does not exceed the maximum size. If the cache cannot be written, the given entity is returned.
+     */
+    public HttpEntity put(String uri, String eTag, String searchGuardVersion, HttpEntity entity) {
+        if (entity.getContentLength() > maxBytes) {
+            return entity;
+        }
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("uri", uri);
+        metadata.put("etag", eTag);
+        metadata.put("content_type", entity.getContentType() != null ? entity.getContentType().getValue() : null);
+        metadata.put("search_guard_version", searchGuardVersion);
+
+        File file = getFile(uri);
+        Path temp = new File(dir, "." + file.getName() + "." + UUID.randomUUID() + ".tmp").toPath();
+
+        try {
+            createDirectory();
+            createPrivateFile(temp);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.WRITE)));
+
+            try {
+                byte[] metadataBytes = DocWriter.json().writeAsString(metadata).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(metadataBytes.length);
+                out.write(metadataBytes);
+            } catch (IOException | RuntimeException e) {
+                out.close();
+                throw e;
+            }
+
+            return new CachingEntity(entity, new PendingEntry(file.toPath(), temp, out));
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Error while writing " + file, e);
+            deleteQuietly(temp);
+            return entity;
+        }
+    }
+
+    /**
+     * Removes all entries. This is called after requests which might have modified resources on the server.
+     */
+    public void invalidate() {
+        File[] files = listFiles();
+
+        for (File file : files) {
+            if (!file.delete() && file.exists()) {
+                log.warning("Could not delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the total size of the entries is below the maximum size.
+     */
+    private void evict() {
+        File[] files = listFiles();
+        long size = 0;
+
+        for (File file : files) {
+            size += file.length();
+        }
+
+        if (size <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        for (File file : files) {
+            if (size <= maxBytes) {
+                break;
+            }
+
+            long length = file.length();
+
+            // Another process might have removed the file already
+            if (file.delete() || !file.exists()) {
+                size -= length;
+            }
+        }
+    }
+
+    private void createDirectory() throws IOException {
+        if (dir.isDirectory()) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(dir.toPath(), PosixFilePermissions.asFileAttribute(DIR_PERMISSIONS));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+            Files.createDirectories(dir.toPath());
+        }
+    }
+
+    private static void createPrivateFile(Path path) throws IOException {
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+            Files.createFile(path);
+        }
+    }
+
+    private static Entry readEntry(File file) throws Exception {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int metadataLength = in.readInt();
+
+            if (metadataLength <= 0 || metadataLength > file.length() - 4) {
+                throw new IOException("Invalid cache entry");
+            }
+
+            byte[] metadataBytes = new byte[metadataLength];
+            in.readFully(metadataBytes);
+            DocNode metadata = DocNode.wrap(DocReader.json().read(metadataBytes));
+
+            return new Entry(metadata.getAsString("uri"), metadata.getAsString("etag"), metadata.getAsString("content_type"),
+                    metadata.getAsString("search_guard_version"), file, 4 + metadataLength);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not delete " + path, e);
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = dir.listFiles((file) -> file.getName().endsWith(FILE_SUFFIX));
+        return files != null ? files : new File[0];
+    }
+
+    private File getFile(String uri) {
+        return new File(dir, Hashing.sha256().hashString(uri, StandardCharsets.UTF_8).toString() + FILE_SUFFIX);
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static class Entry {
+        private final String uri;
+        private final String eTag;
+        private final String contentType;
+        private final String searchGuardVersion;
+        private final File file;
+        private final long bodyOffset;
+
+        Entry(String uri, String eTag, String contentType, String searchGuardVersion, File file, long bodyOffset) {
+            this.uri = uri;
+            this.eTag = eTag;
+            this.contentType = contentType;
+            this.searchGuardVersion = searchGuardVersion;
+            this.file = file;
+            this.bodyOffset = bodyOffset;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getSearchGuardVersion() {
+            return searchGuardVersion;
+        }
+
+        /**
+         * Returns an entity which streams the cached body from the file.
+         */
+        public HttpEntity getBody() {
+            return new CachedEntity(this);
+        }
+    }
+
+    /**
+     * A response which is currently written to a temporary file. It replaces the cache entry when the body was read completely.
+     */
+    private class PendingEntry {
+        private final Path target;
+        private final Path temp;
+        private final OutputStream out;
+        private long size;
+        private boolean done;
+
+        PendingEntry(Path target, Path temp, OutputStream out) {
+            this.target = target;
+            this.temp = temp;
+            this.out = out;
+        }
+
+        void write(byte[] b, int off, int len) {
+            if (done) {
+                return;
+            }
+
+            size += len;
+
+            if (size > maxBytes) {
+                abort();
+                return;
+            }
+
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Error while writing " + temp, e);
+                abort();
+            }
+        }
+
+        void commit() {
+            if (done) {
+                return;
+            }
+
+            done = true;
+
+            try {
+                out.close();
+
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                evict();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Error while writing " + target, e);
+                deleteQuietly(temp);
+            }
+        }
+
+        void abort() {
+            if (done) {
+                return;
+            }
+
+            done = true;
+
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Ignore; the file is deleted anyway
+            }
+
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Passes the body of a response through to the client and writes it to a pending cache entry at the same time.
+     */
+    static class CachingEntity extends HttpEntityWrapper {
+        private final PendingEntry pendingEntry;
+        private InputStream content;
+
+        CachingEntity(HttpEntity wrappedEntity, PendingEntry pendingEntry) {
+            super(wrappedEntity);
+            this.pendingEntry = pendingEntry;
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException {
+            if (content == null) {
+                content = new TeeInputStream(wrappedEntity.getContent(), pendingEntry);
+            }
+
+            return content;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return true;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                ByteStreams.copy(in, out);
+            }
+        }
+    }
+
+    private static class TeeInputStream extends FilterInputStream {
+        private final PendingEntry pendingEntry;
+
+        TeeInputStream(InputStream in, PendingEntry pendingEntry) {
+            super(in);
+            this.pendingEntry = pendingEntry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+
+            try {
+                n = in.read(b, off, len);
+            } catch (IOException e) {
+                pendingEntry.abort();
+                throw e;
+            }
+
+            if (n == -1) {
+                pendingEntry.commit();
+            } else {
+                pendingEntry.write(b, off, n);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes need to be written to the cache as well
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return read == -1 ? 0 : read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // Parsers might stop before the end of the body; the connection is drained anyway when it is released
+                byte[] buffer = new byte[8192];
+
+                while (read(buffer, 0, buffer.length) != -1) {
+                    // Continue until the end
+                }
+            } finally {
+                pendingEntry.abort();
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Streams a cached body from the cache file.
+     */
+    static class CachedEntity extends AbstractHttpEntity {
+        private final Entry entry;
+        private InputStream content;
+
+        CachedEntity(Entry entry) {
+            this.entry = entry;
+            setContentType(entry.contentType);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return entry.file.length() - entry.bodyOffset;
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException {
+            if (content == null) {
+                try {
+                    Entry current = readEntry(entry.file);
+
+                    if (!entry.eTag.equals(current.eTag) || entry.bodyOffset != current.bodyOffset) {
+                        throw new IOException("Cache entry " + entry.file + " was replaced concurrently");
+                    }
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Error while reading " + entry.file, e);
+                }
+
+                InputStream in = new BufferedInputStream(new FileInputStream(entry.file));
+
+                try {
+                    ByteStreams.skipFully(in, entry.bodyOffset);
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+
+                content = in;
+            }
+
+            return content;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                ByteStreams.copy(in, out);
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            // Makes sure that the file is closed when the response is released
+            return true;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Defines how often and with which delays requests are repeated if they failed due to a temporary condition. This applies to requests which
+ * were answered with 503 Service Unavailable or 429 Too Many Requests, to requests which could not connect to any node and to operations which
+ * failed due to a concurrency conflict.
+ *
+ * The delay grows exponentially with each attempt, starting at the base delay and limited by the maximum delay. A random fraction of the delay,
+ * determined by the jitter, is subtracted in order to avoid several clients retrying at the same time. If the server specifies a Retry-After
+ * header, it takes precedence, but is still limited by the maximum delay.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, Duration.ofMillis(500), Duration.ofSeconds(30), 0.5);
+    public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO, 0);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final double jitter;
+
+    /**
+     * @param maxAttempts the total number of attempts, including the first one
+     * @param baseDelay the delay before the second attempt
+     * @param maxDelay the upper limit for delays
+     * @param jitter the maximum fraction of the delay which is randomly subtracted; must be between 0 and 1
+     */
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, double jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = Math.max(baseDelay.toMillis(), 0);
+        this.maxDelayMillis = Math.max(maxDelay.toMillis(), baseDelayMillis);
+        this.jitter = jitter;
+    }
+
+    /**
+     * Returns true if another attempt may be made after the given number of failed attempts.
+     */
+    public boolean canRetry(int failedAttempts) {
+        return failedAttempts < maxAttempts;
+    }
+
+    public boolean isRetryable(int statusCode) {
+        return statusCode == 503 || statusCode == 429;
+    }
+
+    /**
+     * Returns the number of milliseconds to wait before the next attempt after the given number of failed attempts. The response of the last
+     * attempt may be null.
+     */
+    public long getDelayMillis(int failedAttempts, HttpResponse response) {
+        long retryAfter = getRetryAfterMillis(response);
+
+        if (retryAfter >= 0) {
+            return Math.min(retryAfter, maxDelayMillis);
+        }
+
+        long delay = Math.min(baseDelayMillis << Math.min(failedAttempts - 1, 20), maxDelayMillis);
+
+        if (jitter > 0 && delay > 0) {
+            delay -= (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+        }
+
+        return delay;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Parses the Retry-After header, which may either specify a number of seconds or an HTTP date. Returns -1 if there is no valid header.
+     */
+    private static long getRetryAfterMillis(HttpResponse response) {
+        Header header = response != null ? response.getFirstHeader("Retry-After") : null;
+
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+
+        String value = header.getValue().trim();
+
+        try {
+            return Math.max(Long.parseLong(value) * 1000, 0);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+
+            return date != null ? Math.max(date.getTime() - System.currentTimeMillis(), 0) : -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy [maxAttempts=" + maxAttempts + ", baseDelayMillis=" + baseDelayMillis + ", maxDelayMillis=" + maxDelayMillis + ", jitter="
+                + jitter + "]";
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.entity.ContentType;
+
+import com.floragunn.codova.config.net.TLSConfig;
+import com.floragunn.codova.documents.patch.DocPatch;
+import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient.Response;
+import com.floragunn.searchguard.sgctl.client.api.AuthInfoResponse;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+import com.floragunn.searchguard.sgctl.client.api.GetSgLicenseResponse;
+import com.floragunn.searchguard.sgctl.client.api.GetUserResponse;
+
+/**
+ * Asynchronous variant of {@link SearchGuardRestClient}. The methods mirror the methods of SearchGuardRestClient; instead of throwing
+ * exceptions, the returned futures complete exceptionally with the same exceptions.
+ *
+ * Requests are executed by a pool of threads, each of which uses one connection of a shared connection pool. Thus, the number of requests in
+ * flight is limited by the parallelism of the client.
+ */
+public class SearchGuardAsyncRestClient implements AutoCloseable {
+
+    private final SearchGuardRestClient client;
+    private final ExecutorService executor;
+
+    public SearchGuardAsyncRestClient(HttpHost httpHost, TLSConfig tlsConfig, int parallelism) {
+        this(new SearchGuardRestClient(httpHost, tlsConfig, parallelism), parallelism);
+    }
+
+    /**
+     * Creates an asynchronous client which uses the given client with the given number of threads. The client should be able to keep at least
+     * as many connections open.
+     */
+    public SearchGuardAsyncRestClient(SearchGuardRestClient client, int parallelism) {
+        this(client, Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory()));
+    }
+
+    /**
+     * Creates an asynchronous client using the given client and executor. Both will be closed when the asynchronous client is closed.
+     */
+    public SearchGuardAsyncRestClient(SearchGuardRestClient client, ExecutorService executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<AuthInfoResponse> authInfo() {
+        return submit((client) -> client.authInfo());
+    }
+
+    public CompletableFuture<BasicResponse> putConfigBulk(Map<String, Map<String, ?>> configTypeToConfigMap) {
+        return submit((client) -> client.putConfigBulk(configTypeToConfigMap));
+    }
+
+    public CompletableFuture<GetBulkConfigResponse> getConfigBulk() {
+        return submit((client) -> client.getConfigBulk());
+    }
+
+    public CompletableFuture<GetBulkConfigResponse.ConfigDocument> getConfig(ConfigType configType) {
+        return submit((client) -> client.getConfig(configType));
+    }
+
+    public CompletableFuture<BasicResponse> patchConfig(ConfigType configType, DocPatch patch, Header... headers) {
+        return submit((client) -> client.patchConfig(configType, patch, headers));
+    }
+
+    public CompletableFuture<GetUserResponse> getUser(String userName) {
+        return submit((client) -> client.getUser(userName));
+    }
+
+    public CompletableFuture<BasicResponse> deleteUser(String userName) {
+        return submit((client) -> client.deleteUser(userName));
+    }
+
+    public CompletableFuture<BasicResponse> putUser(String userName, Map<String, Object> newUserData) {
+        return submit((client) -> client.putUser(userName, newUserData));
+    }
+
+    public CompletableFuture<BasicResponse> patchUser(String userName, DocPatch patch, Header... headers) {
+        return submit((client) -> client.patchUser(userName, patch, headers));
+    }
+
+    public CompletableFuture<BasicResponse> putConfigVar(String id, Object value, String scope, boolean encrypt, Header... headers) {
+        return submit((client) -> client.putConfigVar(id, value, scope, encrypt, headers));
+    }
+
+    public CompletableFuture<BasicResponse> deleteConfigVar(String id) {
+        return submit((client) -> client.deleteConfigVar(id));
+    }
+
+    public CompletableFuture<BasicResponse> getAllConfigVars() {
+        return submit((client) -> client.getAllConfigVars());
+    }
+
+    public CompletableFuture<BasicResponse> putSgConfig(Map<String, Object> body) {
+        return submit((client) -> client.putSgConfig(body));
+    }
+
+    public CompletableFuture<BasicResponse> reloadHttpCerts() {
+        return submit((client) -> client.reloadHttpCerts());
+    }
+
+    public CompletableFuture<BasicResponse> reloadTransportCerts() {
+        return submit((client) -> client.reloadTransportCerts());
+    }
+
+    public CompletableFuture<BasicResponse> getComponentState(String componentId, boolean verbose) {
+        return submit((client) -> client.getComponentState(componentId, verbose));
+    }
+
+    public CompletableFuture<GetSgLicenseResponse> getSgLicense() {
+        return submit((client) -> client.getSgLicense());
+    }
+
+    public CompletableFuture<BasicResponse> putSgLicense(Map<String, Object> body) {
+        return submit((client) -> client.putSgLicense(body));
+    }
+
+    public CompletableFuture<Response> get(String path) {
+        return submit((client) -> client.get(path));
+    }
+
+    public CompletableFuture<Response> post(String path) {
+        return submit((client) -> client.post(path));
+    }
+
+    public CompletableFuture<Response> post(String path, String body, ContentType contentType) {
+        return submit((client) -> client.post(path, body, contentType));
+    }
+
+    public CompletableFuture<Response> post(String path, HttpEntity entity) {
+        return submit((client) -> client.post(path, entity));
+    }
+
+    public CompletableFuture<Response> put(String path, String body, ContentType contentType, Header... headers) {
+        return submit((client) -> client.put(path, body, contentType, headers));
+    }
+
+    public CompletableFuture<Response> put(String path, HttpEntity entity, Header... headers) {
+        return submit((client) -> client.put(path, entity, headers));
+    }
+
+    public CompletableFuture<Response> patch(String path, DocPatch patch, Header... headers) {
+        return submit((client) -> client.patch(path, patch, headers));
+    }
+
+    public CompletableFuture<Response> patch(String path, String body, ContentType contentType, Header... headers) {
+        return submit((client) -> client.patch(path, body, contentType, headers));
+    }
+
+    public CompletableFuture<Response> patch(String path, HttpEntity entity, Header... headers) {
+        return submit((client) -> client.patch(path, entity, headers));
+    }
+
+    public CompletableFuture<Response> delete(String path) {
+        return submit((client) -> client.delete(path));
+    }
+
+    /**
+     * Executes the given call using the underlying blocking client on one of the threads of this client.
+     */
+    public <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(call.call(client));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    public SearchGuardRestClient getBlockingClient() {
+        return client;
+    }
+
+    public HttpHost getHttpHost() {
+        return client.getHttpHost();
+    }
+
+    public SearchGuardAsyncRestClient debug(boolean debug) {
+        client.debug(debug);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        client.close();
+    }
+
+    @FunctionalInterface
+    public static interface Call<T> {
+        T call(SearchGuardRestClient client) throws Exception;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "sgctl-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
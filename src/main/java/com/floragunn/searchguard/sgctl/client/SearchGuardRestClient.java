@@ -18,15 +18,27 @@
 package com.floragunn.searchguard.sgctl.client;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,25 +47,32 @@ import javax.net.ssl.SSLHandshakeException;
 import com.floragunn.searchguard.sgctl.client.api.GetSgLicenseResponse;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpOptions;
 import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
 
 import com.floragunn.codova.config.net.TLSConfig;
 import com.floragunn.codova.documents.DocNode;
 import com.floragunn.codova.documents.DocReader;
 import com.floragunn.codova.documents.DocUtils;
-import com.floragunn.codova.documents.DocWriter;
 import com.floragunn.codova.documents.DocumentParseException;
 import com.floragunn.codova.documents.Format;
 import com.floragunn.codova.documents.Format.UnknownDocTypeException;
@@ -63,32 +82,98 @@ import com.floragunn.codova.validation.ConfigValidationException;
 import com.floragunn.codova.validation.ValidatingFunction;
 import com.floragunn.codova.validation.ValidationErrors;
 import com.floragunn.searchguard.sgctl.client.api.AuthInfoResponse;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
 import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
 import com.floragunn.searchguard.sgctl.client.api.GetUserResponse;
+import com.floragunn.searchguard.sgctl.instrumentation.DocumentParseEvent;
+import com.floragunn.searchguard.sgctl.instrumentation.Timings;
 import com.google.common.base.Charsets;
 import com.google.common.io.CharStreams;
+import com.google.common.io.CountingInputStream;
 
 public class SearchGuardRestClient implements AutoCloseable {
     private static final Logger log = Logger.getLogger(SearchGuardRestClient.class.getName());
 
     private final HttpHost httpHost;
+    private final NodeSelector nodeSelector;
     private final TLSConfig tlsConfig;
     private CloseableHttpClient client;
     private boolean debug;
+    private boolean sharedClient;
+    private boolean acceptGzip = true;
+    private int gzipRequestThreshold = -1;
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private ResponseCache responseCache;
+    private PrintStream debugOutput;
+    private final Set<HttpUriRequest> activeRequests = ConcurrentHashMap.newKeySet();
+    private volatile boolean aborted;
 
     public SearchGuardRestClient(HttpHost httpHost, TLSConfig tlsConfig) {
-        this(httpHost, tlsConfig, HttpClientBuilder.create().setSSLSocketFactory(tlsConfig.toSSLConnectionSocketFactory()).build());
+        this(Collections.singletonList(httpHost), tlsConfig);
+    }
+
+    /**
+     * Creates a client which sends requests to the given nodes of a cluster. Requests are routed to the fastest healthy node; if a node
+     * cannot be reached or is unavailable, the request is repeated on another node.
+     */
+    public SearchGuardRestClient(List<HttpHost> httpHosts, TLSConfig tlsConfig) {
+        this(new NodeSelector(httpHosts), tlsConfig, createHttpClient(tlsConfig, -1));
+    }
+
+    /**
+     * Creates a client which keeps up to maxConnections connections to the host open. This is useful if the client is used by several threads
+     * concurrently.
+     */
+    public SearchGuardRestClient(HttpHost httpHost, TLSConfig tlsConfig, int maxConnections) {
+        this(Collections.singletonList(httpHost), tlsConfig, maxConnections);
+    }
+
+    public SearchGuardRestClient(List<HttpHost> httpHosts, TLSConfig tlsConfig, int maxConnections) {
+        this(new NodeSelector(httpHosts), tlsConfig, createHttpClient(tlsConfig, maxConnections));
     }
 
     /**
      * For testing purposes only
      */
     SearchGuardRestClient(HttpHost httpHost, TLSConfig tlsConfig, CloseableHttpClient client) {
-        this.httpHost = httpHost;
+        this(new NodeSelector(Collections.singletonList(httpHost)), tlsConfig, client);
+    }
+
+    SearchGuardRestClient(NodeSelector nodeSelector, TLSConfig tlsConfig, CloseableHttpClient client) {
+        this.nodeSelector = nodeSelector;
+        this.httpHost = nodeSelector.getHosts().get(0);
         this.tlsConfig = tlsConfig;
         this.client = client;
     }
 
+    private static CloseableHttpClient createHttpClient(TLSConfig tlsConfig, int maxConnections) {
+        // The instrumentation is always installed, as clients can be reused by later commands of a shell or daemon which enable timings.
+        // Timings.record() is a no-op if no recording is active.
+        HttpClientBuilder builder = HttpClientBuilder.create().disableContentCompression()
+                .setSSLSocketFactory(new InstrumentedConnections.SocketFactory(tlsConfig.toSSLConnectionSocketFactory()))
+                .setDnsResolver(new InstrumentedConnections.DnsResolver());
+
+        if (maxConnections > 0) {
+            builder.setMaxConnPerRoute(maxConnections).setMaxConnTotal(maxConnections);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Returns a client which uses the same connection pool as this client. Closing the returned client does not close the connection pool.
+     */
+    public SearchGuardRestClient session() {
+        SearchGuardRestClient result = new SearchGuardRestClient(nodeSelector, tlsConfig, client);
+        result.sharedClient = true;
+        result.debug = debug;
+        result.acceptGzip = acceptGzip;
+        result.gzipRequestThreshold = gzipRequestThreshold;
+        result.retryPolicy = retryPolicy;
+        result.responseCache = responseCache;
+        return result;
+    }
+
     public AuthInfoResponse authInfo()
             throws InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
         return get("/_searchguard/authinfo").parseResponseBy(AuthInfoResponse::new);
@@ -104,6 +189,22 @@ public class SearchGuardRestClient implements AutoCloseable {
         return get("/_searchguard/config").parseResponseBy(GetBulkConfigResponse::new);
     }
 
+    public GetBulkConfigResponse.ConfigDocument getConfig(ConfigType configType)
+            throws InvalidResponseException, ServiceUnavailableException, UnauthorizedException, ApiException, FailedConnectionException {
+        // Unlike the entries of the bulk API, the etag of a single configuration type is only sent as header
+        return get("/_searchguard/config/" + configType.getApiName()).parseResponseBy((response) -> {
+            DocNode docNode = response.asDocNode();
+
+            return new GetBulkConfigResponse.ConfigDocument(configType, docNode.hasNonNull("content") ? docNode.getAsNode("content") : DocNode.EMPTY,
+                    response.getETag(), response.getHttpResponse().getStatusLine().getStatusCode() == 200, response.getSearchGuardVersion());
+        });
+    }
+
+    public BasicResponse patchConfig(ConfigType configType, DocPatch patch, Header... headers)
+            throws InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        return patch("/_searchguard/config/" + configType.getApiName(), patch, headers).parseResponseBy(BasicResponse::new);
+    }
+
     public GetUserResponse getUser(String userName)
             throws InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
         userName = encodeUserName(userName);
@@ -191,80 +292,49 @@ public class SearchGuardRestClient implements AutoCloseable {
     }
 
     public Response get(String path) throws FailedConnectionException, InvalidResponseException {
-        try {
-            return new Response(client.execute(httpHost, new HttpGet(path)));
-        } catch (ClientProtocolException e) {
-            throw new FailedConnectionException(e);
-        } catch (ConnectException e) {
-            throw new FailedConnectionException(e.getMessage(), e);
-        } catch (SSLHandshakeException e) {
-            throw new FailedConnectionException("TLS handshake failed while creating new connection: " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new FailedConnectionException(e);
-        }
+        return execute(new HttpGet(path));
     }
 
     public Response post(String path, String body, ContentType contentType) throws FailedConnectionException, InvalidResponseException {
-        try {
-            HttpPost httpPost = new HttpPost(path);
-            httpPost.setEntity(new StringEntity(body, contentType));
-            httpPost.setHeader(HttpHeaders.CONTENT_TYPE, contentType.getMimeType());
-            return new Response(client.execute(httpHost, httpPost));
-        } catch (ClientProtocolException e) {
-            throw new FailedConnectionException(e);
-        } catch (ConnectException e) {
-            throw new FailedConnectionException(e.getMessage(), e);
-        } catch (SSLHandshakeException e) {
-            throw new FailedConnectionException("TLS handshake failed while creating new connection: " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new FailedConnectionException(e);
-        }
+        HttpPost httpPost = new HttpPost(path);
+        httpPost.setEntity(new StringEntity(body, contentType));
+        httpPost.setHeader(HttpHeaders.CONTENT_TYPE, contentType.getMimeType());
+        return execute(httpPost);
+    }
+
+    public Response post(String path, HttpEntity entity) throws FailedConnectionException, InvalidResponseException {
+        HttpPost httpPost = new HttpPost(path);
+        httpPost.setEntity(entity);
+        return execute(httpPost);
     }
 
     protected Response postJson(String path, Map<String, Object> body) throws FailedConnectionException, InvalidResponseException {
-        return post(path, DocWriter.json().writeAsString(body), ContentType.APPLICATION_JSON);
+        return post(path, new JsonEntity(body));
     }
 
     public Response post(String path) throws FailedConnectionException, InvalidResponseException {
-        try {
-            HttpPost httpPost = new HttpPost(path);
-            return new Response(client.execute(httpHost, httpPost));
-        } catch (ClientProtocolException e) {
-            throw new FailedConnectionException(e);
-        } catch (ConnectException e) {
-            throw new FailedConnectionException(e.getMessage(), e);
-        } catch (SSLHandshakeException e) {
-            throw new FailedConnectionException("TLS handshake failed while creating new connection: " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new FailedConnectionException(e);
-        }
+        return execute(new HttpPost(path));
     }
 
     public Response put(String path, String body, ContentType contentType, Header... headers)
             throws FailedConnectionException, InvalidResponseException {
-        try {
-            HttpPut httpPut = new HttpPut(path);
-
-            if (headers != null) {
-                httpPut.setHeaders(headers);
-            }
+        return put(path, new StringEntity(body, contentType), headers);
+    }
 
-            httpPut.setEntity(new StringEntity(body, contentType));
+    public Response put(String path, HttpEntity entity, Header... headers) throws FailedConnectionException, InvalidResponseException {
+        HttpPut httpPut = new HttpPut(path);
 
-            return new Response(client.execute(httpHost, httpPut));
-        } catch (ClientProtocolException e) {
-            throw new FailedConnectionException(e);
-        } catch (ConnectException e) {
-            throw new FailedConnectionException(e.getMessage(), e);
-        } catch (SSLHandshakeException e) {
-            throw new FailedConnectionException("TLS handshake failed while creating new connection: " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new FailedConnectionException(e);
+        if (headers != null) {
+            httpPut.setHeaders(headers);
         }
+
+        httpPut.setEntity(entity);
+
+        return execute(httpPut);
     }
 
     protected Response putJson(String path, Map<String, ?> body, Header... headers) throws FailedConnectionException, InvalidResponseException {
-        return put(path, DocWriter.json().writeAsString(body), ContentType.APPLICATION_JSON, headers);
+        return put(path, new JsonEntity(body), headers);
     }
 
     public Response patch(String path, DocPatch patch, Header... headers) throws FailedConnectionException, InvalidResponseException {
@@ -273,16 +343,114 @@ public class SearchGuardRestClient implements AutoCloseable {
 
     public Response patch(String path, String body, ContentType contentType, Header... headers)
             throws FailedConnectionException, InvalidResponseException {
+        return patch(path, new StringEntity(body, contentType), headers);
+    }
+
+    public Response patch(String path, HttpEntity entity, Header... headers) throws FailedConnectionException, InvalidResponseException {
+        HttpPatch httpPatch = new HttpPatch(path);
+
+        if (headers != null) {
+            httpPatch.setHeaders(headers);
+        }
+
+        httpPatch.setEntity(entity);
+
+        return execute(httpPatch);
+    }
+
+    public Response delete(String path) throws FailedConnectionException, InvalidResponseException {
+        return execute(new HttpDelete(path));
+    }
+
+    private Response execute(HttpUriRequest request) throws FailedConnectionException, InvalidResponseException {
+        activeRequests.add(request);
+
+        try {
+            if (aborted) {
+                throw new FailedConnectionException("The request was aborted");
+            }
+
+            return executeRequest(request);
+        } finally {
+            activeRequests.remove(request);
+        }
+    }
+
+    private Response executeRequest(HttpUriRequest request) throws FailedConnectionException, InvalidResponseException {
+        InstrumentedConnections.Exchange exchange = InstrumentedConnections.Exchange.start(request.getMethod(), request.getURI().toString());
+        Response response = null;
+
         try {
-            HttpPatch httpPatch = new HttpPatch(path);
+            HttpEntity requestEntity = null;
+            ResponseCache.Entry cacheEntry = null;
+
+            if (acceptGzip) {
+                request.setHeader(HttpHeaders.ACCEPT_ENCODING, GzipCompression.GZIP);
+            }
+
+            if (responseCache != null && request instanceof HttpGet) {
+                cacheEntry = responseCache.get(request.getURI().toString());
+
+                if (cacheEntry != null) {
+                    request.setHeader(HttpHeaders.IF_NONE_MATCH, cacheEntry.getETag());
+                }
+            }
 
-            if (headers != null) {
-                httpPatch.setHeaders(headers);
+            if (request instanceof HttpEntityEnclosingRequest) {
+                HttpEntityEnclosingRequest entityEnclosingRequest = (HttpEntityEnclosingRequest) request;
+                requestEntity = GzipCompression.compressIfLarge(entityEnclosingRequest.getEntity(), gzipRequestThreshold);
+                entityEnclosingRequest.setEntity(
+                        exchange != null && requestEntity != null ? new InstrumentedConnections.RequestEntity(requestEntity, exchange) : requestEntity);
             }
 
-            httpPatch.setEntity(new StringEntity(body, contentType));
+            boolean repeatable = requestEntity == null || requestEntity.isRepeatable();
+            HttpResponse httpResponse;
 
-            return new Response(client.execute(httpHost, httpPatch));
+            for (int attempt = 1;; attempt++) {
+                try {
+                    httpResponse = executeOnAnyNode(request, repeatable);
+                } catch (ConnectException e) {
+                    if (!repeatable || !retryPolicy.canRetry(attempt)) {
+                        throw e;
+                    }
+
+                    waitBeforeRetry(attempt, null, e.getMessage());
+                    continue;
+                }
+
+                if (repeatable && retryPolicy.isRetryable(httpResponse.getStatusLine().getStatusCode()) && retryPolicy.canRetry(attempt)) {
+                    EntityUtils.consumeQuietly(httpResponse.getEntity());
+                    waitBeforeRetry(attempt, httpResponse, httpResponse.getStatusLine().toString());
+                    continue;
+                }
+
+                break;
+            }
+
+            if (exchange != null) {
+                exchange.responseReceived(httpResponse.getStatusLine().getStatusCode());
+
+                if (httpResponse.getEntity() != null) {
+                    httpResponse.setEntity(new InstrumentedConnections.ResponseEntity(httpResponse.getEntity(), exchange));
+                } else {
+                    exchange.finish();
+                }
+            }
+
+            if (debug && requestEntity instanceof GzipCompression.CompressingEntity) {
+                debugOut().println("Request body: " + ((GzipCompression.CompressingEntity) requestEntity).describe());
+            }
+
+            if (GzipCompression.isGzip(httpResponse.getEntity())) {
+                httpResponse.setEntity(new GzipCompression.DecompressingEntity(httpResponse.getEntity()));
+            }
+
+            if (responseCache != null) {
+                httpResponse = applyResponseCache(request, httpResponse, cacheEntry);
+            }
+
+            response = new Response(httpResponse);
+            return response;
         } catch (ClientProtocolException e) {
             throw new FailedConnectionException(e);
         } catch (ConnectException e) {
@@ -291,33 +459,181 @@ public class SearchGuardRestClient implements AutoCloseable {
             throw new FailedConnectionException("TLS handshake failed while creating new connection: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new FailedConnectionException(e);
+        } finally {
+            if (exchange != null && response == null) {
+                exchange.finish();
+            }
         }
     }
 
-    public Response delete(String path) throws FailedConnectionException, InvalidResponseException {
+    /**
+     * Serves a 304 Not Modified response from the cache and stores successful GET responses with an ETag in the cache. Any other request
+     * might modify resources on the server; thus, the cache is invalidated.
+     */
+    private HttpResponse applyResponseCache(HttpUriRequest request, HttpResponse httpResponse, ResponseCache.Entry cacheEntry) {
+        if (!(request instanceof HttpGet)) {
+            responseCache.invalidate();
+            return httpResponse;
+        }
+
+        int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+        if (statusCode == HttpStatus.SC_NOT_MODIFIED && cacheEntry != null) {
+            EntityUtils.consumeQuietly(httpResponse.getEntity());
+
+            if (debug) {
+                debugOut().println("Response not modified; using cached response with ETag " + cacheEntry.getETag());
+            }
+
+            BasicHttpResponse cachedResponse = new BasicHttpResponse(httpResponse.getStatusLine().getProtocolVersion(), HttpStatus.SC_OK, "OK");
+            cachedResponse.setHeader("ETag", cacheEntry.getETag());
+
+            if (cacheEntry.getSearchGuardVersion() != null) {
+                cachedResponse.setHeader("X-Search-Guard-Version", cacheEntry.getSearchGuardVersion());
+            }
+
+            cachedResponse.setEntity(cacheEntry.getBody());
+
+            return cachedResponse;
+        }
+
+        if (statusCode == HttpStatus.SC_OK && httpResponse.containsHeader("ETag") && httpResponse.getEntity() != null) {
+            // The body is written to the cache while it is read by the caller
+            String searchGuardVersion = httpResponse.containsHeader("X-Search-Guard-Version")
+                    ? httpResponse.getFirstHeader("X-Search-Guard-Version").getValue()
+                    : null;
+
+            httpResponse.setEntity(responseCache.put(request.getURI().toString(), httpResponse.getFirstHeader("ETag").getValue(),
+                    searchGuardVersion, httpResponse.getEntity()));
+        }
+
+        return httpResponse;
+    }
+
+    /**
+     * Executes the request on the best available node. If a node cannot be reached or is unavailable, the request is repeated on the other
+     * nodes. Requests which might modify resources are only repeated if it is certain that the failed node did not process them. If all nodes
+     * fail, the last failure is returned or thrown.
+     */
+    private HttpResponse executeOnAnyNode(HttpUriRequest request, boolean repeatable) throws IOException {
+        Set<HttpHost> triedHosts = new HashSet<>();
+
+        for (;;) {
+            HttpHost host = nodeSelector.select(triedHosts);
+            triedHosts.add(host);
+            boolean lastAttempt = !repeatable || nodeSelector.select(triedHosts) == null;
+            long start = System.nanoTime();
+            nodeSelector.onStart(host);
+            HttpResponse httpResponse;
+
+            try {
+                httpResponse = client.execute(host, request);
+            } catch (IOException e) {
+                nodeSelector.onFailure(host);
+
+                if (lastAttempt || !(isIdempotent(request) || isConnectionFailure(e))) {
+                    throw e;
+                }
+
+                if (debug) {
+                    debugOut().println("Request to " + host + " failed: " + e + "; trying next node");
+                }
+
+                continue;
+            }
+
+            int statusCode = httpResponse.getStatusLine().getStatusCode();
+
+            if (statusCode == 503 || statusCode == 502 || statusCode == 504) {
+                nodeSelector.onFailure(host);
+
+                // A 503 response is sent before a request is processed. After 502 and 504 responses of proxies, the request might still be
+                // processed by the cluster
+                if (!lastAttempt && (statusCode == 503 || (statusCode == 502 && isIdempotent(request)))) {
+                    if (debug) {
+                        debugOut().println(host + " is unavailable: " + httpResponse.getStatusLine() + "; trying next node");
+                    }
+
+                    EntityUtils.consumeQuietly(httpResponse.getEntity());
+                    continue;
+                }
+            } else {
+                nodeSelector.onSuccess(host, System.nanoTime() - start);
+            }
+
+            return httpResponse;
+        }
+    }
+
+    private static boolean isIdempotent(HttpUriRequest request) {
+        return request instanceof HttpGet || request instanceof HttpHead || request instanceof HttpOptions;
+    }
+
+    /**
+     * Returns true if the exception indicates that no connection to the node could be established; the request was then not sent.
+     */
+    private static boolean isConnectionFailure(IOException e) {
+        return e instanceof ConnectException || e instanceof ConnectTimeoutException || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException || e instanceof SSLHandshakeException;
+    }
+
+    private void waitBeforeRetry(int failedAttempts, HttpResponse httpResponse, String reason) throws InterruptedIOException {
+        long delay = retryPolicy.getDelayMillis(failedAttempts, httpResponse);
+
+        if (debug) {
+            debugOut().println("Request failed: " + reason + "; retrying in " + delay + " ms (attempt " + (failedAttempts + 1) + " of "
+                    + retryPolicy.getMaxAttempts() + ")");
+        }
+
         try {
-            return new Response(client.execute(httpHost, new HttpDelete(path)));
-        } catch (ClientProtocolException e) {
-            throw new FailedConnectionException(e);
-        } catch (ConnectException e) {
-            throw new FailedConnectionException(e.getMessage(), e);
-        } catch (SSLHandshakeException e) {
-            throw new FailedConnectionException("TLS handshake failed while creating new connection: " + e.getMessage(), e);
-        } catch (IOException e) {
-            throw new FailedConnectionException(e);
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for retry");
         }
     }
 
+    /**
+     * Returns the first configured node
+     */
     public HttpHost getHttpHost() {
         return httpHost;
     }
 
+    public List<HttpHost> getHttpHosts() {
+        return nodeSelector.getHosts();
+    }
+
+    /**
+     * Makes the client also use the given nodes, for example nodes found by {@link NodeSniffer}.
+     */
+    public void addHttpHosts(Collection<HttpHost> httpHosts) {
+        nodeSelector.addHosts(httpHosts);
+    }
+
     public TLSConfig getTlsConfig() {
         return tlsConfig;
     }
 
+    /**
+     * Aborts the requests which are currently executed by this client and makes all further requests fail. Requests of other sessions using the
+     * same connection pool are not affected. Requests which are aborted while their body is sent might have been processed by the cluster
+     * anyway.
+     */
+    public void abort() {
+        aborted = true;
+
+        for (HttpUriRequest request : activeRequests) {
+            request.abort();
+        }
+    }
+
     @Override
     public void close() {
+        if (sharedClient) {
+            return;
+        }
+
         try {
             client.close();
         } catch (IOException e) {
@@ -325,12 +641,17 @@ public class SearchGuardRestClient implements AutoCloseable {
         }
     }
 
+    /**
+     * A response of the Search Guard REST API. Unless debug mode is enabled, the body is not read when the response is received; rather, it is
+     * parsed directly from the HTTP entity when it is requested. The body can be consumed only once.
+     */
     public class Response {
         private final HttpResponse httpResponse;
-        private final String bodyAsString;
         private final String contentType;
         private final String eTag;
         private final String searchGuardVersion;
+        private String bodyAsString;
+        private boolean bodyConsumed;
 
         Response(HttpResponse httpResponse) throws InvalidResponseException {
             this.httpResponse = httpResponse;
@@ -341,26 +662,98 @@ public class SearchGuardRestClient implements AutoCloseable {
                     : null;
 
             if (debug) {
-                System.out.println("------------------------------------------------");
-                System.out.println(this.httpResponse.getStatusLine());
-                System.out.println("Content-Type: " + this.contentType);
+                debugOut().println("------------------------------------------------");
+                debugOut().println(this.httpResponse.getStatusLine());
+                debugOut().println("Content-Type: " + this.contentType);
+
+                String bodyAsString = getBodyAsString();
+
+                if (bodyAsString != null && bodyAsString.length() > 0) {
+                    debugOut().println(abbreviate(bodyAsString, 240));
+                }
+
+                if (httpResponse.getEntity() instanceof GzipCompression.DecompressingEntity) {
+                    debugOut().println("Response body: " + ((GzipCompression.DecompressingEntity) httpResponse.getEntity()).describe());
+                }
+
+                debugOut().println("------------------------------------------------");
             }
+        }
 
-            try {
-                this.bodyAsString = getEntityAsString(httpResponse);
+        private String getBodyAsString() throws InvalidResponseException {
+            if (bodyAsString == null && !bodyConsumed) {
+                bodyConsumed = true;
 
-                if (debug && this.bodyAsString != null && this.bodyAsString.length() > 0) {
-                    System.out.println(abbreviate(bodyAsString, 240));
+                try {
+                    bodyAsString = getEntityAsString(httpResponse);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException | IOException e) {
+                    throw new InvalidResponseException(e);
+                } finally {
+                    release();
                 }
+            }
 
-                if (debug) {
-                    System.out.println("------------------------------------------------");
+            return bodyAsString;
+        }
+
+        /**
+         * Writes the body of a successful response to the given stream without keeping it in memory. For error responses, the same exceptions
+         * as by parseResponseBy() are thrown and nothing is written. Errors while receiving the body are reported as FailedConnectionException;
+         * errors while writing to the given stream as IOException.
+         */
+        public void writeBodyTo(OutputStream out) throws IOException, FailedConnectionException, InvalidResponseException,
+                ServiceUnavailableException, UnauthorizedException, ApiException {
+            checkStatus();
+
+            try {
+                if (bodyAsString != null) {
+                    out.write(bodyAsString.getBytes(getContentEncoding(httpResponse.getEntity())));
+                } else if (httpResponse.getEntity() != null && !bodyConsumed) {
+                    bodyConsumed = true;
+                    copyBody(out);
+                }
+            } finally {
+                release();
+            }
+        }
+
+        private void copyBody(OutputStream out) throws IOException, FailedConnectionException {
+            try (InputStream in = getBodyContent()) {
+                byte[] buffer = new byte[8192];
+
+                for (;;) {
+                    int read;
+
+                    try {
+                        read = in.read(buffer);
+                    } catch (IOException e) {
+                        throw new FailedConnectionException("Error while receiving response: " + e.getMessage(), e);
+                    }
+
+                    if (read == -1) {
+                        break;
+                    }
+
+                    out.write(buffer, 0, read);
                 }
-            } catch (IllegalCharsetNameException | UnsupportedCharsetException | IOException e) {
-                throw new InvalidResponseException(e);
             }
         }
 
+        private InputStream getBodyContent() throws FailedConnectionException {
+            try {
+                return httpResponse.getEntity().getContent();
+            } catch (IOException e) {
+                throw new FailedConnectionException("Error while receiving response: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Makes sure that the connection used for this response can be re-used
+         */
+        private void release() {
+            EntityUtils.consumeQuietly(httpResponse.getEntity());
+        }
+
         private String abbreviate(String string, int length) {
             if (string.length() <= length) {
                 return string;
@@ -373,21 +766,58 @@ public class SearchGuardRestClient implements AutoCloseable {
                 throws InvalidResponseException, ServiceUnavailableException, UnauthorizedException, ApiException, PreconditionFailedException {
             checkStatus();
             try {
-                return DocReader.format(Format.getByContentType(contentType)).readObject(bodyAsString);
+                return DocReader.format(Format.getByContentType(contentType)).readObject(getBodyAsString());
             } catch (UnknownDocTypeException | UnexpectedDocumentStructureException | DocumentParseException e) {
                 throw new InvalidResponseException(e);
             }
         }
 
         public DocNode asDocNode() throws InvalidResponseException {
+            try (Timings.Phase phase = Timings.phase("Response parsing")) {
+                return parseDocNode();
+            }
+        }
+
+        private DocNode parseDocNode() throws InvalidResponseException {
+            Format docType = Format.peekByContentType(contentType);
+
+            if (bodyAsString == null && !bodyConsumed && docType != null && httpResponse.getEntity() != null
+                    && httpResponse.getEntity().getContentLength() != 0) {
+                // Parse directly from the stream in order to avoid a copy of the body as String
+                bodyConsumed = true;
+
+                DocumentParseEvent event = DocumentParseEvent.start(docType, "HTTP response");
+
+                try (CountingInputStream in = new CountingInputStream(httpResponse.getEntity().getContent())) {
+                    DocNode result = DocNode.wrap(DocReader.format(docType).read(in));
+
+                    if (event != null) {
+                        event.finish(in.getCount());
+                    }
+
+                    return result;
+                } catch (DocumentParseException | IOException e) {
+                    throw new InvalidResponseException(e);
+                } finally {
+                    release();
+                }
+            }
+
+            String bodyAsString = getBodyAsString();
+
             if (bodyAsString == null) {
                 return DocNode.EMPTY;
             }
             try {
-                Format docType = Format.peekByContentType(contentType);
-
                 if (docType != null) {
-                    return DocNode.wrap(DocReader.format(docType).read(bodyAsString));
+                    DocumentParseEvent event = DocumentParseEvent.start(docType, "HTTP response");
+                    DocNode result = DocNode.wrap(DocReader.format(docType).read(bodyAsString));
+
+                    if (event != null) {
+                        event.finish(bodyAsString.length());
+                    }
+
+                    return result;
                 } else {
                     return DocNode.wrap(bodyAsString);
                 }
@@ -402,7 +832,7 @@ public class SearchGuardRestClient implements AutoCloseable {
             checkStatus();
 
             try {
-                return parser.apply(bodyAsString);
+                return parser.apply(getBodyAsString());
             } catch (ConfigValidationException e) {
                 throw new InvalidResponseException(e);
             } catch (Exception e) {
@@ -421,6 +851,8 @@ public class SearchGuardRestClient implements AutoCloseable {
                 throw new InvalidResponseException(e);
             } catch (Exception e) {
                 throw new InvalidResponseException(e);
+            } finally {
+                release();
             }
         }
 
@@ -428,9 +860,17 @@ public class SearchGuardRestClient implements AutoCloseable {
             return httpResponse;
         }
 
-        private void checkStatus() throws ServiceUnavailableException, UnauthorizedException, ApiException, InvalidResponseException {
+        /**
+         * Throws the exception corresponding to the status code if the response is not successful.
+         */
+        public void checkStatus() throws ServiceUnavailableException, UnauthorizedException, ApiException, InvalidResponseException {
             int statusCode = httpResponse.getStatusLine().getStatusCode();
 
+            if (statusCode >= 400) {
+                // Error responses are small; the body is needed for the error message
+                getBodyAsString();
+            }
+
             if (statusCode == 500) {
                 String message = getStatusMessage("Service unavailable: Internal server error");
 
@@ -608,9 +1048,56 @@ public class SearchGuardRestClient implements AutoCloseable {
         return debug;
     }
 
+    /**
+     * Makes the client write debug information to the given stream. Null means System.out.
+     */
+    public SearchGuardRestClient debugOutput(PrintStream debugOutput) {
+        this.debugOutput = debugOutput;
+        return this;
+    }
+
+    private PrintStream debugOut() {
+        return debugOutput != null ? debugOutput : System.out;
+    }
+
     public SearchGuardRestClient debug(boolean debug) {
         this.debug = debug;
         return this;
     }
 
+    /**
+     * Configures gzip compression. If acceptGzip is true, the server may send compressed responses. Request bodies are compressed if they have
+     * at least gzipRequestThreshold bytes; a negative value disables compression of request bodies.
+     */
+    public SearchGuardRestClient compression(boolean acceptGzip, int gzipRequestThreshold) {
+        this.acceptGzip = acceptGzip;
+        this.gzipRequestThreshold = gzipRequestThreshold;
+        return this;
+    }
+
+    /**
+     * Configures how requests are repeated which failed due to temporary unavailability of the cluster.
+     */
+    public SearchGuardRestClient retryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Configures a cache for GET responses. Cached responses are validated by the server using the If-None-Match header. Null disables the
+     * cache.
+     */
+    public SearchGuardRestClient responseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
 }
@@ -45,7 +45,7 @@ public class GetBulkConfigResponse implements Iterable<GetBulkConfigResponse.Con
                 continue;
             }
 
-            configMap.put(configType, new ConfigDocument(configType, DocNode.wrap(entry.getValue())));
+            configMap.put(configType, new ConfigDocument(configType, DocNode.wrap(entry.getValue()), searchGuardVersion));
         }
     }
 
@@ -67,12 +67,26 @@ public class GetBulkConfigResponse implements Iterable<GetBulkConfigResponse.Con
         private DocNode content;
         private String etag;
         private boolean exists;
+        private String searchGuardVersion;
 
         public ConfigDocument(ConfigType configType, DocNode docNode) {
+            this(configType, docNode, null);
+        }
+
+        public ConfigDocument(ConfigType configType, DocNode docNode, String searchGuardVersion) {
             this.content = docNode.hasNonNull("content") ? docNode.getAsNode("content") : DocNode.EMPTY;
             this.configType = configType;
             this.etag = docNode.getAsString("_etag");
             this.exists = Boolean.TRUE.equals(docNode.get("exists"));
+            this.searchGuardVersion = searchGuardVersion;
+        }
+
+        public ConfigDocument(ConfigType configType, DocNode content, String etag, boolean exists, String searchGuardVersion) {
+            this.content = content;
+            this.configType = configType;
+            this.etag = etag;
+            this.exists = exists;
+            this.searchGuardVersion = searchGuardVersion;
         }
 
         public DocNode getContent() {
@@ -91,6 +105,13 @@ public class GetBulkConfigResponse implements Iterable<GetBulkConfigResponse.Con
             return exists;
         }
 
+        /**
+         * Returns the Search Guard version reported by the server which sent this document or null if it is unknown.
+         */
+        public String getSearchGuardVersion() {
+            return searchGuardVersion;
+        }
+
     }
 
     public String getSearchGuardVersion() {
@@ -20,6 +20,7 @@ package com.floragunn.searchguard.sgctl.commands;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.PrintStream;
 
 import com.floragunn.codova.documents.UnexpectedDocumentStructureException;
 import com.floragunn.codova.validation.ValidationErrors;
@@ -29,14 +30,17 @@ import com.floragunn.searchguard.sgctl.client.ApiException;
 import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
 import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
 import com.floragunn.searchguard.sgctl.client.PreconditionFailedException;
+import com.floragunn.searchguard.sgctl.client.RetryPolicy;
 import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
 import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
+import com.floragunn.searchguard.sgctl.instrumentation.FlightRecording;
+import com.floragunn.searchguard.sgctl.instrumentation.Timings;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 
 import picocli.CommandLine.Option;
 
-public class BaseCommand {
+public class BaseCommand implements Cloneable {
 
     static final File DEFAULT_CONFIG_DIR = new File(System.getProperty("user.home"), ".searchguard");
 
@@ -52,7 +56,31 @@ public class BaseCommand {
     @Option(names = { "--sgctl-config-dir" }, description = "The directory where sgctl reads from and writes to its configuration")
     File customConfigDir;
 
-    protected final ValidationErrors validationErrors = new ValidationErrors();
+    @Option(names = { "--timings" }, arity = "0..1", fallbackValue = "table", paramLabel = "<format>",
+            description = "Print the time spent in the phases of this command and the transferred bytes when the command has finished. "
+                    + "Format: table (default) or json")
+    void setTimings(Timings.Format format) {
+        if (format != null) {
+            Timings.enable(format);
+        }
+    }
+
+    @Option(names = { "--jfr" }, paramLabel = "<file>",
+            description = "Record the execution of this command with Java Flight Recorder and write the recording to the given file")
+    void setJfrFile(File file) {
+        if (file != null) {
+            try {
+                FlightRecording.start(file);
+            } catch (Exception e) {
+                err().println("Could not start flight recording: " + e.getMessage());
+            }
+        }
+    }
+
+    protected ValidationErrors validationErrors = new ValidationErrors();
+
+    private PrintStream out;
+    private PrintStream err;
 
     private String selectedClusterId;
     private boolean selectedClusterIdInitialized;
@@ -70,7 +98,7 @@ public class BaseCommand {
                     selectedClusterIdInitialized = true;
 
                     if (verbose || debug) {
-                        System.out.println("Selected cluster: " + selectedClusterId);
+                        out().println("Selected cluster: " + selectedClusterId);
                     }
 
                 } catch (FileNotFoundException e) {
@@ -115,26 +143,89 @@ public class BaseCommand {
         }
     }
 
+    /**
+     * Repeats the given procedure if it fails due to a concurrency conflict. The number of attempts and the delays between them are defined by
+     * getRetryPolicy().
+     */
     protected void retryOnConcurrencyConflict(RetryableProcedure retryableProcedure) throws SgctlException, InvalidResponseException,
             FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException, UnexpectedDocumentStructureException {
-        int maxRetries = 3;
-        int retry = 1;
+        RetryPolicy retryPolicy = getRetryPolicy();
 
-        for (;;) {
+        for (int attempt = 1;; attempt++) {
             try {
                 retryableProcedure.run();
                 break;
             } catch (PreconditionFailedException e) {
-                retry++;
-
-                if (retry > maxRetries) {
+                if (!retryPolicy.canRetry(attempt)) {
                     throw new PreconditionFailedException(
-                            "Could not perform operation due to concurrency conflict. Retried " + maxRetries + " times. Giving up now.", e);
+                            "Could not perform operation due to concurrency conflict. Tried " + attempt + " times. Giving up now.", e);
+                }
+
+                long delay = retryPolicy.getDelayMillis(attempt, e.getHttpResponse());
+
+                if (verbose || debug) {
+                    out().println("Concurrency conflict; retrying in " + delay + " ms");
+                }
+
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e1) {
+                    Thread.currentThread().interrupt();
+                    throw new SgctlException("Interrupted while waiting for retry", e1);
                 }
             }
         }
     }
 
+    /**
+     * The stream for the regular output of this command. This is System.out unless the command was redirected using redirectOutput().
+     */
+    protected PrintStream out() {
+        return out != null ? out : System.out;
+    }
+
+    /**
+     * The stream for the error messages of this command. This is System.err unless the command was redirected using redirectOutput().
+     */
+    protected PrintStream err() {
+        return err != null ? err : System.err;
+    }
+
+    /**
+     * Makes this command write its output to the given streams instead of System.out and System.err.
+     */
+    void redirectOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Returns the stream set by redirectOutput() or null if the command writes to System.out
+     */
+    PrintStream getRedirectedOut() {
+        return out;
+    }
+
+    protected RetryPolicy getRetryPolicy() {
+        return RetryPolicy.DEFAULT;
+    }
+
+    /**
+     * Returns a copy of this command with the same options, but without the state of a previous execution. This allows to execute the command
+     * several times concurrently, for example for different clusters.
+     */
+    protected BaseCommand copy() {
+        try {
+            BaseCommand result = (BaseCommand) super.clone();
+            result.validationErrors = new ValidationErrors();
+            result.selectedClusterId = null;
+            result.selectedClusterIdInitialized = false;
+            return result;
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @FunctionalInterface
     protected static interface RetryableProcedure {
         void run() throws SgctlException, InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException,
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.DocWriter;
+import com.floragunn.codova.documents.DocumentParseException;
+import com.floragunn.codova.documents.Format;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+import com.floragunn.searchguard.sgctl.util.AtomicFiles;
+
+/**
+ * A single file containing the complete Search Guard configuration in the binary Smile format. The file starts with a magic number and an
+ * index, which records the metadata of the bundle and for each configuration type its etag and the position of its document. Thus, single
+ * configuration types can be read without decoding the other ones.
+ *
+ * Layout: magic number (4 bytes), length of the index (4 bytes), index (Smile), documents (Smile). The offsets in the index are relative to
+ * the end of the index.
+ */
+public class ConfigBundle {
+
+    public static final String FILE_EXTENSION = ".sgb";
+
+    private static final byte[] MAGIC = { 'S', 'G', 'B', 1 };
+    private static final int MAX_INDEX_LENGTH = 1024 * 1024;
+
+    private final File file;
+    private final String searchGuardVersion;
+    private final String clusterName;
+    private final String created;
+    private final Map<ConfigType, Entry> entries;
+    private final long dataOffset;
+
+    private ConfigBundle(File file, String searchGuardVersion, String clusterName, String created, Map<ConfigType, Entry> entries,
+            long dataOffset) {
+        this.file = file;
+        this.searchGuardVersion = searchGuardVersion;
+        this.clusterName = clusterName;
+        this.created = created;
+        this.entries = entries;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Writes the configuration contained in the given response to a bundle file. Configuration types which do not exist on the server are
+     * omitted.
+     */
+    public static void write(File file, GetBulkConfigResponse response, String clusterName) throws SgctlException {
+        List<byte[]> documents = new ArrayList<>();
+        Map<String, Object> types = new LinkedHashMap<>();
+        long offset = 0;
+
+        for (GetBulkConfigResponse.ConfigDocument config : response) {
+            if (!config.isExists() && config.getConfigType() != ConfigType.CONFIG_VARS) {
+                continue;
+            }
+
+            byte[] document = DocWriter.format(Format.SMILE).writeAsBytes(config.getContent());
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("offset", offset);
+            entry.put("length", document.length);
+
+            if (config.getEtag() != null) {
+                entry.put("etag", config.getEtag());
+            }
+
+            types.put(config.getConfigType().getApiName(), entry);
+            documents.add(document);
+            offset += document.length;
+        }
+
+        Map<String, Object> index = new LinkedHashMap<>();
+        index.put("search_guard_version", response.getSearchGuardVersion());
+
+        if (clusterName != null) {
+            index.put("cluster_name", clusterName);
+        }
+
+        index.put("created", Instant.now().toString());
+        index.put("types", types);
+
+        byte[] indexBytes = DocWriter.format(Format.SMILE).writeAsBytes(index);
+
+        try {
+            AtomicFiles.writeBinary(file, (out) -> {
+                DataOutputStream dataOut = new DataOutputStream(out);
+                dataOut.write(MAGIC);
+                dataOut.writeInt(indexBytes.length);
+                dataOut.write(indexBytes);
+
+                for (byte[] document : documents) {
+                    dataOut.write(document);
+                }
+
+                dataOut.flush();
+            });
+        } catch (IOException e) {
+            throw new SgctlException("Error while writing " + file + ": " + e, e);
+        }
+    }
+
+    /**
+     * Reads the index of the given bundle file. The configuration documents are only read by getContent().
+     */
+    public static ConfigBundle read(File file) throws SgctlException {
+        return read(file, System.err);
+    }
+
+    /**
+     * Like read(File), but warnings are written to the given stream.
+     */
+    public static ConfigBundle read(File file, PrintStream err) throws SgctlException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new SgctlException("File " + file + " is not a Search Guard configuration bundle");
+            }
+
+            int indexLength = in.readInt();
+
+            if (indexLength < 0 || indexLength > MAX_INDEX_LENGTH) {
+                throw new SgctlException("File " + file + " is invalid: Bad index length " + indexLength);
+            }
+
+            byte[] indexBytes = new byte[indexLength];
+            in.readFully(indexBytes);
+
+            DocNode index = DocNode.wrap(DocReader.format(Format.SMILE).read(indexBytes));
+            Map<ConfigType, Entry> entries = new LinkedHashMap<>();
+
+            if (index.hasNonNull("types")) {
+                for (Map.Entry<String, Object> entry : index.getAsNode("types").toMap().entrySet()) {
+                    DocNode node = DocNode.wrap(entry.getValue());
+                    ConfigType configType;
+
+                    try {
+                        configType = ConfigType.get(entry.getKey());
+                    } catch (IllegalArgumentException e) {
+                        err.println("Ignoring unknown config type " + entry.getKey() + " in " + file);
+                        continue;
+                    }
+
+                    if (!(node.get("offset") instanceof Number) || !(node.get("length") instanceof Number)) {
+                        throw new SgctlException("File " + file + " is invalid: Bad index entry for " + entry.getKey());
+                    }
+
+                    entries.put(configType, new Entry(((Number) node.get("offset")).longValue(), ((Number) node.get("length")).intValue(),
+                            node.getAsString("etag")));
+                }
+            }
+
+            return new ConfigBundle(file, index.getAsString("search_guard_version"), index.getAsString("cluster_name"),
+                    index.getAsString("created"), entries, MAGIC.length + 4 + indexLength);
+        } catch (DocumentParseException e) {
+            throw new SgctlException("File " + file + " is invalid: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + file + ": " + e, e);
+        }
+    }
+
+    /**
+     * Returns true if the given file starts with the magic number of a bundle.
+     */
+    public static boolean isBundle(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] magic = new byte[MAGIC.length];
+            return in.readNBytes(magic, 0, magic.length) == magic.length && Arrays.equals(magic, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads and decodes the document of the given configuration type. Returns null if the bundle does not contain the type.
+     */
+    public DocNode getContent(ConfigType configType) throws SgctlException {
+        Entry entry = entries.get(configType);
+
+        if (entry == null) {
+            return null;
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] document = new byte[entry.length];
+            in.seek(dataOffset + entry.offset);
+            in.readFully(document);
+
+            return DocNode.wrap(DocReader.format(Format.SMILE).read(document));
+        } catch (DocumentParseException e) {
+            throw new SgctlException("File " + file + " is invalid: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + file + ": " + e, e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getSearchGuardVersion() {
+        return searchGuardVersion;
+    }
+
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    public String getCreated() {
+        return created;
+    }
+
+    public List<ConfigType> getConfigTypes() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    public String getEtag(ConfigType configType) {
+        Entry entry = entries.get(configType);
+        return entry != null ? entry.etag : null;
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+        private final String etag;
+
+        Entry(long offset, int length, String etag) {
+            this.offset = offset;
+            this.length = length;
+            this.etag = etag;
+        }
+    }
+}
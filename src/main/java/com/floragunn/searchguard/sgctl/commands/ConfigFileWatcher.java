@@ -0,0 +1,136 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches configuration files for changes. Editors often write a file in several steps and several files are often saved at once; thus,
+ * changes are only reported when no further change was seen for the debounce period.
+ */
+class ConfigFileWatcher implements AutoCloseable {
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> files;
+    private final long debounceMillis;
+
+    /**
+     * Watches the given files. If the files are null, all Search Guard configuration files in the given directory are watched, including
+     * files which are created later.
+     */
+    ConfigFileWatcher(File dir, List<File> files, long debounceMillis) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceMillis = debounceMillis;
+
+        if (files == null) {
+            this.files = null;
+            register(dir.toPath());
+        } else {
+            this.files = new HashSet<>();
+
+            for (File file : files) {
+                Path path = file.toPath().toAbsolutePath().normalize();
+                this.files.add(path);
+                register(path.getParent());
+            }
+        }
+    }
+
+    /**
+     * Blocks until watched files were changed and returns these. Deleted files are not returned.
+     */
+    List<File> awaitChanges() throws InterruptedException {
+        Set<Path> changedFiles = new LinkedHashSet<>();
+
+        while (changedFiles.isEmpty()) {
+            collectChanges(watchService.take(), changedFiles);
+        }
+
+        WatchKey key;
+
+        while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+            collectChanges(key, changedFiles);
+        }
+
+        return changedFiles.stream().filter(Files::isRegularFile).map(Path::toFile).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void register(Path dir) throws IOException {
+        Path absoluteDir = dir.toAbsolutePath().normalize();
+
+        if (!directories.containsValue(absoluteDir)) {
+            directories.put(absoluteDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY),
+                    absoluteDir);
+        }
+    }
+
+    private void collectChanges(WatchKey key, Set<Path> changedFiles) {
+        Path dir = directories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; thus, all files are considered to be changed
+                try (Stream<Path> stream = Files.list(dir)) {
+                    stream.filter(this::isWatched).forEach(changedFiles::add);
+                } catch (IOException e) {
+                    System.err.println("Error while listing " + dir + ": " + e);
+                }
+            } else {
+                Path file = dir.resolve((Path) event.context());
+
+                if (isWatched(file)) {
+                    changedFiles.add(file);
+                }
+            }
+        }
+
+        key.reset();
+    }
+
+    private boolean isWatched(Path file) {
+        if (files != null) {
+            return files.contains(file);
+        }
+
+        String name = file.getFileName().toString();
+        return name.startsWith("sg_") && name.endsWith(".yml");
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.DocWriter;
+import com.floragunn.codova.documents.Document;
+import com.floragunn.codova.documents.DocumentParseException;
+import com.floragunn.codova.documents.UnexpectedDocumentStructureException;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.util.AtomicFiles;
+import com.google.common.hash.Hashing;
+
+/**
+ * Records the state of the configuration files in a directory as written by get-config: For each configuration type, the name of the file, a
+ * hash of its content and the etag of the configuration on the server. This allows update-config to detect which files were changed locally.
+ */
+public class ConfigManifest implements Document<ConfigManifest> {
+
+    public static final String FILE_NAME = ".sgctl_manifest.yml";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public static ConfigManifest read(File dir) throws SgctlException {
+        File file = new File(dir, FILE_NAME);
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            DocNode config = DocNode.wrap(DocReader.yaml().readObject(file));
+            ConfigManifest result = new ConfigManifest();
+
+            if (config.hasNonNull("types")) {
+                for (Map.Entry<String, Object> entry : config.getAsNode("types").toMap().entrySet()) {
+                    DocNode node = DocNode.wrap(entry.getValue());
+                    result.entries.put(entry.getKey(), new Entry(node.getAsString("file"), node.getAsString("sha256"), node.getAsString("etag")));
+                }
+            }
+
+            return result;
+        } catch (DocumentParseException | UnexpectedDocumentStructureException e) {
+            throw new SgctlException("File " + file + " is invalid: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + file + ": " + e, e);
+        }
+    }
+
+    public void write(File dir) throws SgctlException {
+        File file = new File(dir, FILE_NAME);
+
+        try {
+            AtomicFiles.write(file, (writer) -> DocWriter.yaml().write(writer, toBasicObject()));
+        } catch (IOException e) {
+            throw new SgctlException("Error while writing " + file + ": " + e, e);
+        }
+    }
+
+    public Entry get(String configType) {
+        return entries.get(configType);
+    }
+
+    public void put(String configType, String fileName, String content, String etag) {
+        putHash(configType, fileName, hash(content), etag);
+    }
+
+    /**
+     * Records a file whose SHA-256 hash was computed by the caller, for example while the file was written.
+     */
+    public void putHash(String configType, String fileName, String contentHash, String etag) {
+        entries.put(configType, new Entry(fileName, contentHash, etag));
+    }
+
+    /**
+     * Returns true if the given hash of the file content and etag match the state recorded for the configuration type.
+     */
+    public boolean isUnchanged(String configType, String contentHash, String etag) {
+        Entry entry = entries.get(configType);
+
+        return entry != null && entry.hash != null && entry.hash.equals(contentHash) && Objects.equals(entry.etag, etag);
+    }
+
+    static String hash(String content) {
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+    }
+
+    @Override
+    public Object toBasicObject() {
+        Map<String, Object> types = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("file", entry.getValue().fileName);
+            map.put("sha256", entry.getValue().hash);
+
+            if (entry.getValue().etag != null) {
+                map.put("etag", entry.getValue().etag);
+            }
+
+            types.put(entry.getKey(), map);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("types", types);
+        return result;
+    }
+
+    public static class Entry {
+        private final String fileName;
+        private final String hash;
+        private final String etag;
+
+        Entry(String fileName, String hash, String etag) {
+            this.fileName = fileName;
+            this.hash = hash;
+            this.etag = etag;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -17,19 +17,40 @@
 
 package com.floragunn.searchguard.sgctl.commands;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
+import org.apache.http.HttpHost;
+
 import com.floragunn.searchguard.sgctl.SgctlConfig;
 import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.ResponseCache;
 import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 @Command(name = "connect", description = "Tries to connect to a cluster and persists this connection for subsequent commands")
 public class Connect extends ConnectingCommand implements Callable<Integer> {
-    @Parameters(index = "0", arity = "0..1", description = "Name of the server to connect to.")
-    String server;
+    @Parameters(index = "0", arity = "0..*", description = "Name of the server to connect to. Specify several servers to enable failover.")
+    List<String> servers;
+
+    @Option(names = { "--gzip-responses" }, arity = "1", description = "Whether the cluster may send gzip compressed responses. Default: true")
+    Boolean gzipResponses;
+
+    @Option(names = { "--gzip-request-threshold" }, description = "Compress request bodies with at least this number of bytes using gzip. Default: -1 (disabled)")
+    Integer gzipRequestThreshold;
+
+    @Option(names = { "--sniff" }, arity = "1", description = "Whether to discover further nodes of the cluster using the _nodes/http API. Default: false")
+    Boolean sniff;
+
+    @Option(names = { "--sniff-ttl" }, description = "Number of seconds for which discovered nodes are cached. Default: 300")
+    Integer sniffTtl;
+
+    @Option(names = { "--response-cache-size" }, description = "Maximum size in megabytes of the local cache for responses of the cluster. 0 disables the cache. Default: 0")
+    Integer responseCacheSize;
 
     @Override
     public Integer call() {
@@ -41,11 +62,40 @@ public class Connect extends ConnectingCommand implements Callable<Integer> {
             String clusterConfigId = getSelectedClusterId();
 
             if (clusterConfigId == null) {
-                clusterConfigId = getHost();
+                clusterConfigId = client.getHttpHost().getHostName();
             }
 
             cluster.setClusterId(clusterConfigId);
 
+            SgctlConfig.Cluster existingCluster = getExistingClusterConfig(clusterConfigId);
+
+            if (getHosts() == null && existingCluster != null) {
+                // The client might also know sniffed nodes; these are not persisted in the cluster config
+                cluster.nodes(existingCluster.getNodes());
+            } else {
+                List<String> nodes = new ArrayList<>();
+
+                for (HttpHost httpHost : client.getHttpHosts()) {
+                    nodes.add(httpHost.getHostName() + ":" + httpHost.getPort());
+                }
+
+                cluster.nodes(nodes);
+            }
+
+            cluster.compression(
+                    gzipResponses != null ? gzipResponses.booleanValue() : existingCluster != null ? existingCluster.isAcceptGzip() : true,
+                    gzipRequestThreshold != null ? gzipRequestThreshold.intValue()
+                            : existingCluster != null ? existingCluster.getGzipRequestThreshold() : -1);
+            cluster.sniffing(sniff != null ? sniff.booleanValue() : existingCluster != null ? existingCluster.isSniffing() : false,
+                    sniffTtl != null ? sniffTtl.intValue() : existingCluster != null ? existingCluster.getSniffingTtlSeconds() : 300);
+            cluster.responseCache(responseCacheSize != null ? Math.max(responseCacheSize.intValue(), 0)
+                    : existingCluster != null ? existingCluster.getResponseCacheSizeMb() : SgctlConfig.Cluster.DEFAULT_RESPONSE_CACHE_SIZE_MB);
+
+            if (cluster.getResponseCacheSizeMb() == 0) {
+                // Do not keep responses which might contain secrets after the cache was disabled
+                new ResponseCache(SgctlConfig.Cluster.getResponseCacheDir(getConfigDir(), clusterConfigId), 0).invalidate();
+            }
+
             cluster.write(getConfigDir());
 
             writeSelectedClusterId(clusterConfigId);
@@ -62,12 +112,27 @@ public class Connect extends ConnectingCommand implements Callable<Integer> {
         }
     }
 
+    private SgctlConfig.Cluster getExistingClusterConfig(String clusterConfigId) {
+        if (clusterConfigId == null) {
+            return null;
+        }
+
+        try {
+            return SgctlConfig.Cluster.read(getConfigDir(), clusterConfigId);
+        } catch (SgctlException e) {
+            // The existing config will be overwritten anyway
+            return null;
+        }
+    }
+
     @Override
     protected String getHost() {
         if (host != null) {
             return host;
+        } else if (servers != null) {
+            return String.join(",", servers);
         } else {
-            return server;
+            return null;
         }
     }
 
@@ -21,11 +21,15 @@ import java.io.File;
 import java.net.SocketException;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
@@ -40,16 +44,20 @@ import com.floragunn.searchguard.sgctl.SgctlException;
 import com.floragunn.searchguard.sgctl.client.ApiException;
 import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
 import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
+import com.floragunn.searchguard.sgctl.client.NodeSniffer;
+import com.floragunn.searchguard.sgctl.client.ResponseCache;
+import com.floragunn.searchguard.sgctl.client.RetryPolicy;
 import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
 import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
 import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
 import com.floragunn.searchguard.sgctl.client.api.AuthInfoResponse;
+import com.floragunn.searchguard.sgctl.instrumentation.Timings;
 
 import picocli.CommandLine.Option;
 
 public abstract class ConnectingCommand extends BaseCommand {
 
-    @Option(names = { "-h", "--host" }, description = "Hostname of the node to connect to")
+    @Option(names = { "-h", "--host" }, description = "Hostname of the node to connect to. Use a comma separated list of host:port to specify several nodes")
     String host;
 
     @Option(names = { "-E", "--cert" }, description = "Client certificate for admin authentication")
@@ -78,50 +86,130 @@ public abstract class ConnectingCommand extends BaseCommand {
 
     @Option(names = { "--skip-connection-check" }, description = "Skips initial REST API call to check the connection")
     boolean skipInitialConnectionCheck;
+
+    @Option(names = { "--retry-attempts" }, description = "Maximum number of attempts for requests which fail because the cluster is temporarily unavailable or because of concurrency conflicts. Default: 3")
+    Integer retryAttempts;
+
+    @Option(names = { "--retry-delay" }, description = "Delay in milliseconds before the first retry. The delay doubles with each further retry. Default: 500")
+    Integer retryDelay;
+
+    @Option(names = { "--retry-max-delay" }, description = "Maximum delay in milliseconds between retries. Also limits the delays requested by the server. Default: 30000")
+    Integer retryMaxDelay;
     
+    /**
+     * The number of connections which are kept open by default; this corresponds to the default of the Apache HTTP client
+     */
+    static final int DEFAULT_MAX_CONNECTIONS = 2;
+
     private String connectedClusterName;
 
+    private SearchGuardRestClient sessionClient;
+    private String sessionClusterName;
+    private ConnectionCache connectionCache;
+    private List<SearchGuardRestClient> clients = new CopyOnWriteArrayList<>();
+
     public SearchGuardRestClient getClient() throws SgctlException {
+        if (sessionClient != null && !hasConnectionOptions() && getMaxConnections() <= DEFAULT_MAX_CONNECTIONS) {
+            connectedClusterName = sessionClusterName;
+            return track(sessionClient.session().debug(debug).retryPolicy(getRetryPolicy()));
+        }
 
         try {
-            SgctlConfig.Cluster clusterConfig = getSelectedClusterConfig();
-            TLSConfig tlsConfig = getTlsConfig(clusterConfig);
+            SgctlConfig.Cluster clusterConfig;
+            TLSConfig tlsConfig;
 
-            String server = getHost();
-            Integer serverPort = this.serverPort;
+            try (Timings.Phase phase = Timings.phase("Cluster configuration")) {
+                clusterConfig = getSelectedClusterConfig();
+            }
 
-            if (clusterConfig != null && server == null) {
-                server = clusterConfig.getServer();
+            try (Timings.Phase phase = Timings.phase("TLS configuration")) {
+                tlsConfig = getTlsConfig(clusterConfig);
             }
 
-            if (clusterConfig != null && serverPort == null) {
-                serverPort = clusterConfig.getPort();
+            List<String> nodes = getHosts();
+
+            if (nodes == null && clusterConfig != null) {
+                nodes = this.serverPort == null ? clusterConfig.getNodes() : Collections.singletonList(clusterConfig.getServer());
             }
 
-            if (server == null) {
+            if (nodes == null) {
                 throw new SgctlException("You must specify the server on the command line");
             }
 
-            if (serverPort == null) {
-                serverPort = 9200;
+            int defaultPort = this.serverPort != null ? this.serverPort : clusterConfig != null ? clusterConfig.getPort() : 9200;
+            List<HttpHost> httpHosts = new ArrayList<>(nodes.size());
+
+            for (String node : nodes) {
+                httpHosts.add(parseNode(node, defaultPort));
+            }
+
+            String server = httpHosts.get(0).getHostName();
+            int serverPort = httpHosts.get(0).getPort();
+
+            // The TLS config of the cluster config is only used as is if there are no TLS options on the command line
+            boolean cacheable = connectionCache != null && clusterConfig != null && tlsConfig == clusterConfig.getTlsConfig()
+                    && getMaxConnections() <= DEFAULT_MAX_CONNECTIONS;
+
+            if (cacheable) {
+                ConnectionCache.Connection connection = connectionCache.getConnection(clusterConfig, server, serverPort);
+
+                if (connection != null) {
+                    if (verbose) {
+                        out().println("Re-using connection to " + server + ":" + serverPort);
+                    }
+
+                    connectedClusterName = connection.getClusterName();
+                    return track(connection.getClient().session().debug(debug).retryPolicy(getRetryPolicy()));
+                }
             }
 
             if (verbose) {
-                System.out.println("Connecting to " + server + ":" + serverPort + " with certificate "
+                out().println("Connecting to " + server + ":" + serverPort + " with certificate "
                         + getCertificateInfo(tlsConfig.getClientCertAuthConfig().getCertificateChain()));
             }
 
             try {
-                SearchGuardRestClient client = new SearchGuardRestClient(new HttpHost(server, serverPort, "https"), tlsConfig);
-                client.debug(debug);
+                SearchGuardRestClient client;
+
+                try (Timings.Phase phase = Timings.phase("HTTP client setup")) {
+                    client = new SearchGuardRestClient(httpHosts, tlsConfig, getMaxConnections());
+                }
+
+                track(client);
+
+                client.debug(debug).retryPolicy(getRetryPolicy());
+
+                if (clusterConfig != null) {
+                    client.compression(clusterConfig.isAcceptGzip(), clusterConfig.getGzipRequestThreshold());
+
+                    // Responses depend on the permissions of the user; thus, the cache is only used with the certificate of the cluster config
+                    if (clusterConfig.getResponseCacheSizeMb() > 0 && tlsConfig == clusterConfig.getTlsConfig()) {
+                        client.responseCache(new ResponseCache(SgctlConfig.Cluster.getResponseCacheDir(getConfigDir(), clusterConfig.getClusterId()),
+                                clusterConfig.getResponseCacheSizeMb() * 1024L * 1024L));
+                    }
+
+                    if (clusterConfig.isSniffing() && getHosts() == null) {
+                        sniffNodes(client, clusterConfig);
+                    }
+                }
 
                 if (!skipInitialConnectionCheck) {
-                    AuthInfoResponse authInfoResponse = client.authInfo();
-                    System.out.println("Successfully connected to cluster " + authInfoResponse.getClusterName() + " (" + server + ") as user "
+                    AuthInfoResponse authInfoResponse;
+
+                    try (Timings.Phase phase = Timings.phase("Connection check (authinfo)")) {
+                        authInfoResponse = client.authInfo();
+                    }
+
+                    out().println("Successfully connected to cluster " + authInfoResponse.getClusterName() + " (" + server + ") as user "
                             + authInfoResponse.getUserName());
                     connectedClusterName = authInfoResponse.getClusterName();
                 }
-                
+
+                if (cacheable) {
+                    connectionCache.putConnection(clusterConfig, server, serverPort, client, connectedClusterName);
+                    return track(client.session().debug(debug).retryPolicy(getRetryPolicy()));
+                }
+
                 return client;
             } catch (FailedConnectionException e) {
                 throw new SgctlException(getHumanReadableErrorMessage(e), e);
@@ -224,6 +312,124 @@ public abstract class ConnectingCommand extends BaseCommand {
         return null;
     }
 
+    /**
+     * Returns the number of connections the client should keep open. Commands which send requests concurrently should override this.
+     */
+    protected int getMaxConnections() {
+        return DEFAULT_MAX_CONNECTIONS;
+    }
+
+    @Override
+    protected RetryPolicy getRetryPolicy() {
+        if (retryAttempts == null && retryDelay == null && retryMaxDelay == null) {
+            return RetryPolicy.DEFAULT;
+        }
+
+        RetryPolicy defaultPolicy = RetryPolicy.DEFAULT;
+
+        return new RetryPolicy(retryAttempts != null ? Math.max(retryAttempts, 1) : defaultPolicy.getMaxAttempts(),
+                Duration.ofMillis(retryDelay != null ? retryDelay : defaultPolicy.getBaseDelayMillis()),
+                Duration.ofMillis(retryMaxDelay != null ? retryMaxDelay : defaultPolicy.getMaxDelayMillis()), defaultPolicy.getJitter());
+    }
+
+    @Override
+    protected ConnectingCommand copy() {
+        ConnectingCommand result = (ConnectingCommand) super.copy();
+        result.connectedClusterName = null;
+        result.clients = new CopyOnWriteArrayList<>();
+        return result;
+    }
+
+    /**
+     * Aborts the requests which are currently executed by the clients of this command. Further requests of these clients fail.
+     */
+    void abortRequests() {
+        for (SearchGuardRestClient client : clients) {
+            client.abort();
+        }
+    }
+
+    private SearchGuardRestClient track(SearchGuardRestClient client) {
+        clients.add(client);
+        return client.debugOutput(getRedirectedOut());
+    }
+
+    /**
+     * Makes this command re-use the connection of an already connected client, unless connection options are specified on the command line.
+     */
+    void attachSession(SearchGuardRestClient sessionClient, String sessionClusterName) {
+        this.sessionClient = sessionClient;
+        this.sessionClusterName = sessionClusterName;
+    }
+
+    /**
+     * Makes this command re-use connections and cluster configurations kept in the given cache.
+     */
+    public void attachConnectionCache(ConnectionCache connectionCache) {
+        this.connectionCache = connectionCache;
+    }
+
+    @Override
+    protected SgctlConfig.Cluster getSelectedClusterConfig() throws SgctlException {
+        if (connectionCache == null) {
+            return super.getSelectedClusterConfig();
+        }
+
+        String selectedClusterId = getSelectedClusterId();
+
+        if (selectedClusterId == null || "none".equals(selectedClusterId)) {
+            return null;
+        }
+
+        return connectionCache.getClusterConfig(getConfigDir(), selectedClusterId);
+    }
+
+    private boolean hasConnectionOptions() {
+        return clusterIdOption != null || getHost() != null || serverPort != null || clientCert != null || clientKey != null || clientKeyPass != null
+                || caCert != null || insecure != null || ciphers != null || tls != null;
+    }
+
+    /**
+     * Adds the nodes discovered by sniffing to the client. The nodes are read from a cache file if it is not older than the configured TTL.
+     * Failures are not fatal, as the configured nodes can still be used.
+     */
+    private void sniffNodes(SearchGuardRestClient client, SgctlConfig.Cluster clusterConfig) {
+        try {
+            File cacheFile = SgctlConfig.Cluster.getNodesCacheFile(getConfigDir(), clusterConfig.getClusterId());
+            List<HttpHost> sniffedHosts = NodeSniffer.readCache(cacheFile, Duration.ofSeconds(clusterConfig.getSniffingTtlSeconds()));
+
+            if (sniffedHosts == null) {
+                sniffedHosts = NodeSniffer.sniff(client);
+                NodeSniffer.writeCache(cacheFile, sniffedHosts);
+
+                if (verbose) {
+                    out().println("Discovered nodes: " + sniffedHosts);
+                }
+            }
+
+            client.addHttpHosts(sniffedHosts);
+        } catch (Exception e) {
+            if (verbose) {
+                out().println("Node sniffing failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static HttpHost parseNode(String node, int defaultPort) throws SgctlException {
+        int colon = node.lastIndexOf(':');
+
+        if (colon == -1 || node.indexOf(':') != colon) {
+            // No port or an IPv6 address without port
+            return new HttpHost(node, defaultPort, "https");
+        }
+
+        try {
+            return new HttpHost(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)), "https");
+        } catch (NumberFormatException e) {
+            throw new SgctlException("Invalid node address " + node + ": The port must be a number");
+        }
+    }
+
     private String getHumanReadableErrorMessage(FailedConnectionException e) {
         if (e.getCause() instanceof SSLHandshakeException) {
             if (e.getMessage().contains("unable to find valid certification path to requested target")) {
@@ -263,6 +469,27 @@ public abstract class ConnectingCommand extends BaseCommand {
         return this.host;
     }
 
+    /**
+     * Returns the nodes specified on the command line. Several nodes can be specified as comma separated list in the format host:port.
+     */
+    protected List<String> getHosts() {
+        String host = getHost();
+
+        if (host == null) {
+            return null;
+        }
+
+        List<String> result = new ArrayList<>();
+
+        for (String node : host.split(",")) {
+            if (node.trim().length() != 0) {
+                result.add(node.trim());
+            }
+        }
+
+        return result.isEmpty() ? null : result;
+    }
+
     protected String getConnectedClusterName() {
         return connectedClusterName;
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.floragunn.searchguard.sgctl.SgctlConfig;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
+
+/**
+ * Keeps parsed cluster configurations and connected clients across several command executions. Cluster configurations are re-read
+ * when the corresponding cluster_*.yml file changes; connections which were made using an outdated cluster configuration are discarded.
+ */
+public class ConnectionCache implements AutoCloseable {
+
+    private final Map<File, CachedClusterConfig> clusterConfigs = new HashMap<>();
+    private final Map<String, Connection> connections = new HashMap<>();
+
+    synchronized SgctlConfig.Cluster getClusterConfig(File configDir, String clusterId) throws SgctlException {
+        File configFile = SgctlConfig.Cluster.getConfigFile(configDir, clusterId).getAbsoluteFile();
+        long lastModified = configFile.lastModified();
+        CachedClusterConfig cached = clusterConfigs.get(configFile);
+
+        if (cached != null && lastModified != 0 && cached.lastModified == lastModified) {
+            return cached.cluster;
+        }
+
+        SgctlConfig.Cluster cluster = SgctlConfig.Cluster.read(configDir, clusterId);
+
+        if (cluster != null) {
+            clusterConfigs.put(configFile, new CachedClusterConfig(cluster, lastModified));
+        } else {
+            clusterConfigs.remove(configFile);
+        }
+
+        return cluster;
+    }
+
+    synchronized Connection getConnection(SgctlConfig.Cluster cluster, String server, int port) {
+        Connection connection = connections.get(getKey(cluster, server, port));
+
+        if (connection != null && connection.cluster == cluster) {
+            return connection;
+        } else {
+            return null;
+        }
+    }
+
+    synchronized void putConnection(SgctlConfig.Cluster cluster, String server, int port, SearchGuardRestClient client, String clusterName) {
+        Connection replaced = connections.put(getKey(cluster, server, port), new Connection(cluster, client, clusterName));
+
+        if (replaced != null) {
+            replaced.client.close();
+        }
+    }
+
+    public synchronized int size() {
+        return connections.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Connection connection : connections.values()) {
+            connection.client.close();
+        }
+
+        connections.clear();
+        clusterConfigs.clear();
+    }
+
+    private static String getKey(SgctlConfig.Cluster cluster, String server, int port) {
+        return cluster.getClusterId() + "@" + server + ":" + port;
+    }
+
+    static class Connection {
+        private final SgctlConfig.Cluster cluster;
+        private final SearchGuardRestClient client;
+        private final String clusterName;
+
+        Connection(SgctlConfig.Cluster cluster, SearchGuardRestClient client, String clusterName) {
+            this.cluster = cluster;
+            this.client = client;
+            this.clusterName = clusterName;
+        }
+
+        SearchGuardRestClient getClient() {
+            return client;
+        }
+
+        String getClusterName() {
+            return clusterName;
+        }
+    }
+
+    private static class CachedClusterConfig {
+        private final SgctlConfig.Cluster cluster;
+        private final long lastModified;
+
+        CachedClusterConfig(SgctlConfig.Cluster cluster, long lastModified) {
+            this.cluster = cluster;
+            this.lastModified = lastModified;
+        }
+    }
+}
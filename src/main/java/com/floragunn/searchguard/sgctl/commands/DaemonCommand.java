@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.daemon.DaemonProtocol;
+import com.floragunn.searchguard.sgctl.daemon.SgctlDaemon;
+import com.floragunn.searchguard.sgctl.daemon.SgctlLauncher;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(name = "daemon", description = "Runs the sgctl daemon which keeps connections open for subsequent sgctl calls. Use SGCTL_DAEMON=true sgctl.sh to use it.")
+public class DaemonCommand implements Callable<Integer> {
+
+    @Option(names = { "--socket" }, description = "The Unix domain socket the daemon listens on. Defaults to ~/.searchguard/sgctl-daemon.sock")
+    File socketFile;
+
+    @Option(names = { "--idle-timeout" }, description = "Shut down the daemon after this number of minutes without requests", defaultValue = "180")
+    int idleTimeoutMinutes;
+
+    @Option(names = { "--stop" }, description = "Stops a running daemon")
+    boolean stop;
+
+    @Option(names = { "--status" }, description = "Shows information about a running daemon")
+    boolean status;
+
+    @Override
+    public Integer call() {
+        File socketFile = this.socketFile != null ? this.socketFile : DaemonProtocol.getSocketFile();
+
+        if (stop || status) {
+            SocketChannel channel = SgctlLauncher.connect(socketFile);
+
+            if (channel == null) {
+                System.err.println("No sgctl daemon is listening on " + socketFile);
+                return 1;
+            }
+
+            return SgctlLauncher.forward(channel, "daemon", stop ? "--stop" : "--status");
+        }
+
+        try (SgctlDaemon daemon = new SgctlDaemon(socketFile, Duration.ofMinutes(idleTimeoutMinutes))) {
+            daemon.run();
+            return 0;
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+}
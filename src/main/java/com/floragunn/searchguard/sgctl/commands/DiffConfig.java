@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.floragunn.codova.documents.DocWriter;
+import com.floragunn.codova.validation.ConfigValidationException;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.ApiException;
+import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
+import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
+import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
+import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
+import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+import com.floragunn.searchguard.sgctl.util.DocDiff;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Shows the changes which update-config would apply to the configuration on the server. Attributes are listed with + if they only exist
+ * locally, with - if they only exist on the server and with ~ if they have different values.
+ */
+@Command(name = "diff-config", description = "Compares local configuration files with the configuration on the server")
+public class DiffConfig extends ConnectingCommand implements Callable<Integer> {
+
+    private static final int MAX_VALUE_LENGTH = 80;
+
+    @Parameters(arity = "1..*", description = "Search Guard configuration files like sg_authc.yml or a directory containing these files")
+    List<File> files;
+
+    @Option(names = { "--exit-code" }, description = "Exit with status 2 if differences were found")
+    boolean exitCode;
+
+    @Override
+    public Integer call() {
+        try {
+            if (files.size() == 1 && files.get(0).isDirectory()) {
+                files = LocalConfigFile.listConfigFiles(files.get(0), System.err);
+            }
+
+            Map<ConfigType, LocalConfigFile> localConfig = LocalConfigFile.readAll(files, validationErrors);
+            validationErrors.throwExceptionForPresentErrors();
+
+            GetBulkConfigResponse response;
+
+            try (SearchGuardRestClient client = getClient().debug(debug)) {
+                response = client.getConfigBulk();
+            }
+
+            int differentFiles = 0;
+
+            for (LocalConfigFile configFile : localConfig.values()) {
+                GetBulkConfigResponse.ConfigDocument serverConfig = response.get(configFile.getConfigType());
+                Object serverContent = serverConfig != null ? serverConfig.getContent().toBasicObject() : Collections.emptyMap();
+                List<DocDiff.Change> changes = DocDiff.diff(serverContent, configFile.getContent().toBasicObject());
+
+                if (changes.isEmpty()) {
+                    if (verbose || debug) {
+                        System.out.println(configFile.getFile().getPath() + ": no differences");
+                    }
+                    continue;
+                }
+
+                differentFiles++;
+
+                System.out.println(configFile.getFile().getPath() + " (" + configFile.getConfigType().getApiName() + "):");
+
+                for (DocDiff.Change change : changes) {
+                    String path = change.getPath().isEmpty() ? "/" : change.getPath();
+
+                    switch (change.getType()) {
+                    case ADDED:
+                        System.out.println("  + " + path + ": " + format(change.getNewValue()));
+                        break;
+                    case REMOVED:
+                        System.out.println("  - " + path + ": " + format(change.getOldValue()));
+                        break;
+                    case CHANGED:
+                        System.out.println("  ~ " + path + ": " + format(change.getOldValue()) + " -> " + format(change.getNewValue()));
+                        break;
+                    }
+                }
+
+                System.out.println();
+            }
+
+            if (differentFiles == 0) {
+                System.out.println("The local configuration is identical to the configuration on the server");
+                return 0;
+            } else {
+                return exitCode ? 2 : 0;
+            }
+        } catch (ConfigValidationException e) {
+            System.err.println("Invalid config files:\n" + e.getValidationErrors());
+            return 1;
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (InvalidResponseException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (FailedConnectionException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (ServiceUnavailableException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (UnauthorizedException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (ApiException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    private static String format(Object value) {
+        String result = DocWriter.json().writeAsString(value);
+
+        if (result.length() > MAX_VALUE_LENGTH) {
+            return result.substring(0, MAX_VALUE_LENGTH - 3) + "...";
+        } else {
+            return result;
+        }
+    }
+}
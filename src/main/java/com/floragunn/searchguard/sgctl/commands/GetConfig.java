@@ -19,100 +19,339 @@ package com.floragunn.searchguard.sgctl.commands;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
+import com.floragunn.codova.documents.DocWriter;
 import com.floragunn.searchguard.sgctl.SgctlException;
 import com.floragunn.searchguard.sgctl.client.ApiException;
 import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
 import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
+import com.floragunn.searchguard.sgctl.client.SearchGuardAsyncRestClient;
 import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
 import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
 import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
 import com.floragunn.searchguard.sgctl.client.api.ConfigType;
 import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
+import com.floragunn.searchguard.sgctl.instrumentation.ConfigFileIOEvent;
+import com.floragunn.searchguard.sgctl.instrumentation.Timings;
+import com.floragunn.searchguard.sgctl.util.AtomicFiles;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 @Command(name = "get-config", description = "Retrieves Search Guard configuration from the server to local files")
-public class GetConfig extends ConnectingCommand implements Callable<Integer> {
+public class GetConfig extends MultiClusterCommand implements Callable<Integer> {
 
-    @Option(names = { "-o", "--output" }, required = true, arity = "1", description = "Directory to write configuration to")
+    @Option(names = { "-o", "--output" }, arity = "1", description = "Directory to write configuration to")
     File outputDir;
 
+    @Option(names = { "--snapshot" }, description = "Store a snapshot of the configuration in the snapshot store in the sgctl configuration directory")
+    boolean snapshot;
+
+    @Option(names = { "--bundle" }, description = "Write the configuration to a single binary bundle file, which can be uploaded with update-config")
+    File bundleFile;
+
+    @Option(names = { "--type" }, split = ",", description = "Retrieve only the configuration of the given types, for example roles,rolesmapping")
+    List<String> types;
+
     @Override
     public Integer call() {
+        if (outputDir == null && bundleFile == null && !snapshot) {
+            err().println("Please specify an output directory with --output, a bundle file with --bundle or use --snapshot");
+            return 1;
+        }
+
+        if (isMultiCluster()) {
+            return callForClusters();
+        }
+
+        if (types != null && (snapshot || bundleFile != null)) {
+            err().println("--type cannot be combined with --snapshot or --bundle, as these always contain the complete configuration");
+            return 1;
+        }
+
+        if (types != null && outputDir == null) {
+            err().println("Please specify an output directory with --output");
+            return 1;
+        }
+
         try (SearchGuardRestClient client = getClient().debug(debug)) {
+            if (types != null) {
+                fetchConfigFiles(client, getConfigTypes());
+                return 0;
+            }
+
             if (debug || verbose) {
-                System.out.println("Retrieving Search Guard configuration");
+                out().println("Retrieving Search Guard configuration");
             }
 
             GetBulkConfigResponse response = client.getConfigBulk();
 
-            if (!outputDir.exists()) {
-                if (debug || verbose) {
-                    System.out.println("Creating directory " + outputDir);
-                }
+            if (snapshot) {
+                SnapshotStore.Snapshot createdSnapshot = new SnapshotStore(getConfigDir()).create(getSelectedClusterId(), getConnectedClusterName(),
+                        response);
 
-                if (!outputDir.mkdirs()) {
-                    throw new SgctlException("Could not create directory " + outputDir);
-                }
+                out().println("Stored snapshot " + createdSnapshot.getId());
             }
 
-            for (GetBulkConfigResponse.ConfigDocument config : response) {
-                if (!config.isExists() && config.getConfigType() != ConfigType.CONFIG_VARS) {
-                    continue;
-                }
-                
-                File outputFile = new File(outputDir, config.getConfigType().getFileName());
-
-                StringBuilder header = new StringBuilder();
-                
-                header.append("# sg_" + config.getConfigType().getApiName());
-                header.append(" v:" + response.getSearchGuardVersion());
-                
-                if (getConnectedClusterName() != null) {
-                    header.append(" cluster:" + getConnectedClusterName());                    
-                }
-                
-                if (config.getEtag() != null) {
-                    header.append(" etag:" + config.getEtag());
-                }
-                
-                header.append("\n");
-                
-                try {
-                    String result = header + config.getContent().toYamlString();
-                    Files.asCharSink(outputFile, Charsets.UTF_8).write(result);
-                } catch (IOException e) {
-                    throw new SgctlException("Error while writing " + outputFile + ": " + e.getMessage(), e);
-                }
+            if (bundleFile != null) {
+                ConfigBundle.write(bundleFile, response, getConnectedClusterName());
+                out().println("Wrote configuration bundle to " + bundleFile);
             }
 
-            System.out.println("Wrote configuration to " + outputDir);
+            if (outputDir != null) {
+                writeConfigFiles(response);
+            }
 
             return 0;
         } catch (SgctlException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (InvalidResponseException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (FailedConnectionException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (ServiceUnavailableException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (UnauthorizedException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (ApiException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         }
     }
 
+    /**
+     * Each cluster gets its own sub-directory of the output directory and its own bundle file
+     */
+    @Override
+    protected void prepareForCluster(String clusterId) {
+        if (outputDir != null) {
+            outputDir = new File(outputDir, clusterId);
+        }
+
+        if (bundleFile != null) {
+            String name = bundleFile.getName();
+            int dot = name.lastIndexOf('.');
+            String clusterFileName = dot > 0 ? name.substring(0, dot) + "_" + clusterId + name.substring(dot) : name + "_" + clusterId;
+            bundleFile = new File(bundleFile.getAbsoluteFile().getParentFile(), clusterFileName);
+        }
+    }
+
+    private void writeConfigFiles(GetBulkConfigResponse response) throws SgctlException {
+        createOutputDir();
+
+        List<GetBulkConfigResponse.ConfigDocument> configs = new ArrayList<>();
+
+        for (GetBulkConfigResponse.ConfigDocument config : response) {
+            if (!config.isExists() && config.getConfigType() != ConfigType.CONFIG_VARS) {
+                continue;
+            }
+
+            configs.add(config);
+        }
+
+        // The files are rendered and written in parallel; the results are processed in a stable order
+        List<WrittenFile> writtenFiles = configs.parallelStream().map(this::writeConfigFile).collect(Collectors.toList());
+
+        finishWrite(new ConfigManifest(), writtenFiles, null);
+    }
+
+    /**
+     * Retrieves the given configuration types concurrently using the per-type endpoints. Each file is written as soon as its configuration has
+     * arrived. The manifest keeps the entries of the other types, as their files are not touched.
+     */
+    private void fetchConfigFiles(SearchGuardRestClient client, List<ConfigType> configTypes) throws SgctlException {
+        createOutputDir();
+
+        if (debug || verbose) {
+            out().println("Retrieving Search Guard configuration of types "
+                    + configTypes.stream().map(ConfigType::getApiName).collect(Collectors.joining(", ")));
+        }
+
+        ConfigManifest manifest = ConfigManifest.read(outputDir);
+        List<CompletableFuture<WrittenFile>> futures = new ArrayList<>(configTypes.size());
+        List<WrittenFile> writtenFiles = new ArrayList<>(configTypes.size());
+        SgctlException error = null;
+
+        try (SearchGuardAsyncRestClient asyncClient = new SearchGuardAsyncRestClient(client, configTypes.size())) {
+            for (ConfigType configType : configTypes) {
+                futures.add(asyncClient.submit((workerClient) -> {
+                    GetBulkConfigResponse.ConfigDocument config = workerClient.getConfig(configType);
+
+                    if (!config.isExists() && configType != ConfigType.CONFIG_VARS) {
+                        err().println("The configuration of type " + configType.getApiName() + " does not exist on the server");
+                        return null;
+                    }
+
+                    return writeConfigFile(config);
+                }));
+            }
+
+            // All requests are awaited before an error is reported, so that no request is still writing files when the command finishes
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    WrittenFile writtenFile = futures.get(i).join();
+
+                    if (writtenFile != null) {
+                        writtenFiles.add(writtenFile);
+                    }
+                } catch (CompletionException e) {
+                    if (error == null) {
+                        error = new SgctlException("Error while retrieving configuration of type " + configTypes.get(i).getApiName() + ": "
+                                + e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            }
+        }
+
+        // The files of the other types have already been written; thus, the manifest must be updated even if a type failed
+        finishWrite(manifest != null ? manifest : new ConfigManifest(), writtenFiles, error);
+    }
+
+    private void createOutputDir() throws SgctlException {
+        if (!outputDir.exists()) {
+            if (debug || verbose) {
+                out().println("Creating directory " + outputDir);
+            }
+
+            if (!outputDir.mkdirs()) {
+                throw new SgctlException("Could not create directory " + outputDir);
+            }
+        }
+    }
+
+    /**
+     * Records the successfully written files in the manifest. If an error occurred while retrieving or writing any of the files, it is thrown
+     * after the manifest has been written.
+     */
+    private void finishWrite(ConfigManifest manifest, List<WrittenFile> writtenFiles, SgctlException error) throws SgctlException {
+        int changedFiles = 0;
+
+        for (WrittenFile writtenFile : writtenFiles) {
+            if (writtenFile.exception != null) {
+                if (error == null) {
+                    error = new SgctlException("Error while writing " + writtenFile.file + ": " + writtenFile.exception.getMessage(),
+                            writtenFile.exception);
+                }
+
+                continue;
+            }
+
+            if (writtenFile.result.isChanged()) {
+                changedFiles++;
+            } else if (debug || verbose) {
+                out().println("File " + writtenFile.file + " is unchanged");
+            }
+
+            manifest.putHash(writtenFile.config.getConfigType().getApiName(), writtenFile.file.getName(), writtenFile.result.getHash(),
+                    writtenFile.config.getEtag());
+        }
+
+        manifest.write(outputDir);
+
+        if (error != null) {
+            throw error;
+        }
+
+        if (changedFiles == writtenFiles.size()) {
+            out().println("Wrote configuration to " + outputDir);
+        } else {
+            out().println("Wrote configuration to " + outputDir + " (" + changedFiles + " of " + writtenFiles.size() + " files changed)");
+        }
+    }
+
+    private String getHeader(GetBulkConfigResponse.ConfigDocument config) {
+        StringBuilder header = new StringBuilder();
+
+        header.append("# sg_" + config.getConfigType().getApiName());
+        header.append(" v:" + config.getSearchGuardVersion());
+
+        if (getConnectedClusterName() != null) {
+            header.append(" cluster:" + getConnectedClusterName());
+        }
+
+        if (config.getEtag() != null) {
+            header.append(" etag:" + config.getEtag());
+        }
+
+        header.append("\n");
+
+        return header.toString();
+    }
+
+    private List<ConfigType> getConfigTypes() throws SgctlException {
+        List<ConfigType> result = new ArrayList<>(types.size());
+
+        for (String type : types) {
+            ConfigType configType;
+
+            try {
+                configType = ConfigType.get(type.trim());
+            } catch (IllegalArgumentException e) {
+                throw new SgctlException("Unknown configuration type " + type + ". Valid types are: "
+                        + Arrays.asList(ConfigType.values()).stream().map(ConfigType::getApiName).collect(Collectors.joining(", ")));
+            }
+
+            if (!result.contains(configType)) {
+                result.add(configType);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    protected int getMaxConnections() {
+        return types != null ? Math.max(types.size(), DEFAULT_MAX_CONNECTIONS) : DEFAULT_MAX_CONNECTIONS;
+    }
+
+    private WrittenFile writeConfigFile(GetBulkConfigResponse.ConfigDocument config) {
+        File outputFile = new File(outputDir, config.getConfigType().getFileName());
+        String header = getHeader(config);
+
+        try {
+            ConfigFileIOEvent writeEvent = ConfigFileIOEvent.start(outputFile, ConfigFileIOEvent.WRITE);
+
+            AtomicFiles.WriteResult result = AtomicFiles.write(outputFile, (writer) -> {
+                writer.write(header);
+
+                try (Timings.Phase phase = Timings.phase("YAML rendering")) {
+                    DocWriter.yaml().write(writer, config.getContent());
+                }
+            });
+
+            if (writeEvent != null) {
+                writeEvent.finish(outputFile.length());
+            }
+
+            return new WrittenFile(config, outputFile, result, null);
+        } catch (IOException e) {
+            return new WrittenFile(config, outputFile, null, e);
+        }
+    }
+
+    private static class WrittenFile {
+        private final GetBulkConfigResponse.ConfigDocument config;
+        private final File file;
+        private final AtomicFiles.WriteResult result;
+        private final IOException exception;
+
+        WrittenFile(GetBulkConfigResponse.ConfigDocument config, File file, AtomicFiles.WriteResult result, IOException exception) {
+            this.config = config;
+            this.file = file;
+            this.result = result;
+            this.exception = exception;
+        }
+    }
 }
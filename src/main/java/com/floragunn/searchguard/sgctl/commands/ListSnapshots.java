@@ -0,0 +1,57 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.floragunn.searchguard.sgctl.SgctlException;
+
+import picocli.CommandLine.Command;
+
+@Command(name = "list-snapshots", description = "Lists the configuration snapshots created by get-config --snapshot")
+public class ListSnapshots extends BaseCommand implements Callable<Integer> {
+
+    @Override
+    public Integer call() {
+        try {
+            List<SnapshotStore.Snapshot> snapshots = new SnapshotStore(getConfigDir()).list();
+
+            if (clusterIdOption != null) {
+                snapshots.removeIf((snapshot) -> !clusterIdOption.equals(snapshot.getCluster()));
+            }
+
+            if (snapshots.isEmpty()) {
+                System.out.println("No snapshots found");
+                return 0;
+            }
+
+            System.out.println(String.format("%-40s %-24s %-20s %-12s %s", "ID", "Time", "Cluster name", "SG version", "Types"));
+
+            for (SnapshotStore.Snapshot snapshot : snapshots) {
+                System.out.println(String.format("%-40s %-24s %-20s %-12s %s", snapshot.getId(), snapshot.getTimestamp(),
+                        snapshot.getClusterName() != null ? snapshot.getClusterName() : "-", snapshot.getSearchGuardVersion(),
+                        String.join(",", snapshot.getTypes().keySet())));
+            }
+
+            return 0;
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+}
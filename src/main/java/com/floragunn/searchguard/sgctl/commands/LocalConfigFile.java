@@ -0,0 +1,363 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.Format;
+import com.floragunn.codova.validation.ConfigValidationException;
+import com.floragunn.codova.validation.ValidationErrors;
+import com.floragunn.codova.validation.errors.FileDoesNotExist;
+import com.floragunn.codova.validation.errors.ValidationError;
+import com.floragunn.fluent.collections.ImmutableMap;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.JsonEntity;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+import com.floragunn.searchguard.sgctl.instrumentation.ConfigFileIOEvent;
+import com.floragunn.searchguard.sgctl.instrumentation.DocumentParseEvent;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * A local Search Guard configuration file, as read by update-config and diff-config.
+ */
+class LocalConfigFile {
+
+    private static final Pattern ETAG_HEADER_PATTERN = Pattern.compile("^#\\s*.*etag:([a-z0-9\\.]+)");
+    private static final Pattern CLUSTER_HEADER_PATTERN = Pattern.compile("^#\\s*.*cluster:(\\S+)");
+
+    private final File file;
+    private final String rawContent;
+    private final DocNode content;
+    private final ConfigType configType;
+    private final boolean streaming;
+
+    private LocalConfigFile(File file, String rawContent, DocNode content, ConfigType configType, boolean streaming) {
+        this.file = file;
+        this.rawContent = rawContent;
+        this.content = content;
+        this.configType = configType;
+        this.streaming = streaming;
+    }
+
+    static LocalConfigFile read(File file) throws IOException, ConfigValidationException {
+        Format format = Format.getByFileName(file.getName(), Format.YAML);
+        ConfigFileIOEvent readEvent = ConfigFileIOEvent.start(file, ConfigFileIOEvent.READ);
+        // The file is only read once; the headers are extracted from the same string which is parsed
+        String rawContent = Files.asCharSource(file, Charsets.UTF_8).read();
+
+        if (readEvent != null) {
+            readEvent.finish(file.length());
+        }
+
+        DocumentParseEvent parseEvent = DocumentParseEvent.start(format, file.getPath());
+        DocNode content = DocNode.wrap(DocReader.format(format).fallbackForEmptyDocuments(ImmutableMap.empty()).readObject(rawContent));
+
+        if (parseEvent != null) {
+            parseEvent.finish(rawContent.length());
+        }
+
+        return new LocalConfigFile(file, rawContent, content, ConfigType.getFor(file, content, rawContent), false);
+    }
+
+    /**
+     * Reads files of the given types without keeping their content in memory. The type is determined from the header line or the file name;
+     * files whose type can only be determined from their content are read completely.
+     */
+    static LocalConfigFile read(File file, Set<ConfigType> streamingTypes) throws IOException, ConfigValidationException {
+        if (!streamingTypes.isEmpty()) {
+            String header = Files.asCharSource(file, Charsets.UTF_8).readFirstLine();
+            ConfigType configType;
+
+            try {
+                configType = ConfigType.getFor(file, DocNode.EMPTY, header != null ? header : "");
+            } catch (ConfigValidationException e) {
+                configType = null;
+            }
+
+            if (streamingTypes.contains(configType)) {
+                validateEntries(file);
+                return new LocalConfigFile(file, header != null ? header : "", null, configType, true);
+            }
+        }
+
+        return read(file);
+    }
+
+    /**
+     * Checks the content of a streamed file entry by entry. Each entry must be an object; errors are reported with the line of the entry.
+     */
+    private static void validateEntries(File file) throws IOException, ConfigValidationException {
+        Format format = Format.getByFileName(file.getName(), Format.YAML);
+        ValidationErrors validationErrors = new ValidationErrors();
+        DocumentParseEvent parseEvent = DocumentParseEvent.start(format, file.getPath());
+
+        try (JsonParser parser = format.getJsonFactory().createParser(file)) {
+            JsonToken token = parser.nextToken();
+
+            if (token != null && token != JsonToken.START_OBJECT) {
+                throw new ConfigValidationException(new ValidationError(null, "The configuration must be an object"));
+            }
+
+            while (token != null && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                int line = parser.currentLocation().getLineNr();
+
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    validationErrors.add(new ValidationError(name, "Must be an object (line " + line + ")"));
+                }
+
+                parser.skipChildren();
+            }
+        }
+
+        if (parseEvent != null) {
+            parseEvent.finish(file.length());
+        }
+
+        validationErrors.throwExceptionForPresentErrors();
+    }
+
+    /**
+     * Reads the given files concurrently. Errors are added to the given ValidationErrors object; files with errors are not contained in the
+     * result. Only one file per configuration type is allowed.
+     */
+    static Map<ConfigType, LocalConfigFile> readAll(List<File> files, ValidationErrors validationErrors) {
+        return readAll(files, Collections.emptySet(), validationErrors);
+    }
+
+    /**
+     * Like readAll(), but files of the given types are only validated and not kept in memory.
+     */
+    static Map<ConfigType, LocalConfigFile> readAll(List<File> files, Set<ConfigType> streamingTypes, ValidationErrors validationErrors) {
+        Map<ConfigType, LocalConfigFile> result = new LinkedHashMap<>();
+        // The files are parsed in parallel; the results are processed in the order of the files, so that errors are reported in a stable order
+        List<ReadResult> readResults = files.parallelStream().map((file) -> ReadResult.read(file, streamingTypes)).collect(Collectors.toList());
+
+        for (ReadResult readResult : readResults) {
+            File file = readResult.file;
+
+            try {
+                LocalConfigFile configFile = readResult.get();
+                LocalConfigFile existing = result.get(configFile.getConfigType());
+
+                if (existing == null) {
+                    result.put(configFile.getConfigType(), configFile);
+                } else {
+                    validationErrors.add(new ValidationError(file.getPath(), "Configuration of type " + configFile.getConfigType().getApiName()
+                            + " is already specifed in file " + existing.getFile().getPath()));
+                }
+            } catch (FileNotFoundException e) {
+                validationErrors.add(new FileDoesNotExist(file.getPath(), file));
+            } catch (JsonProcessingException e) {
+                validationErrors.add(new ValidationError(file.getPath(), e.getMessage()).cause(e));
+            } catch (IOException e) {
+                validationErrors.add(new ValidationError(file.getPath(), "Error while reading: " + e).cause(e));
+            } catch (ConfigValidationException e) {
+                validationErrors.add(file.getPath(), e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the Search Guard configuration files in the given directory. Other files are reported on the given stream.
+     */
+    static List<File> listConfigFiles(File dir, PrintStream err) throws SgctlException {
+        List<File> ignoredFiles = new ArrayList<>();
+        List<File> files = Arrays.asList(Objects.requireNonNull(dir.listFiles())).stream().filter(file -> {
+            if (file.getName().startsWith("sg_") && file.getName().endsWith(".yml")) {
+                return true;
+            }
+            if (file.getName().equals(ConfigManifest.FILE_NAME)) {
+                return false;
+            }
+            ignoredFiles.add(file);
+            return false;
+        }).collect(Collectors.toList());
+
+        if (ignoredFiles.size() == 1) {
+            err.println("File " + ignoredFiles.get(0).getName() + " does not seem to be a Search Guard configuration file. Ignoring it");
+        } else if (ignoredFiles.size() > 1) {
+            err.println("Files " + ignoredFiles.stream().map(File::getName).collect(Collectors.joining(", "))
+                    + " do not seem to be Search Guard configuration files. Ignoring these");
+        }
+
+        if (files.size() == 0) {
+            throw new SgctlException("Directory " + dir + " does not contain any configuration files");
+        }
+
+        return files;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the content of the file. For streamed files, this only contains the header line.
+     */
+    String getRawContent() {
+        return rawContent;
+    }
+
+    /**
+     * Returns the parsed content. Not available for streamed files; use getUploadContent() for these.
+     */
+    DocNode getContent() {
+        if (streaming) {
+            throw new IllegalStateException("The content of " + file + " is not kept in memory");
+        }
+
+        return content;
+    }
+
+    /**
+     * Returns the content for a request body. For streamed files, this is an object which reads the file while the request is sent.
+     */
+    Object getUploadContent() {
+        return streaming ? new StreamingContent(file) : content;
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the file content, as recorded in the manifest written by get-config
+     */
+    String getContentHash() throws IOException {
+        if (streaming) {
+            return Files.asByteSource(file).hash(Hashing.sha256()).toString();
+        } else {
+            return ConfigManifest.hash(rawContent);
+        }
+    }
+
+    ConfigType getConfigType() {
+        return configType;
+    }
+
+    /**
+     * Returns the etag from the header written by get-config or null if there is none.
+     */
+    String getETag() {
+        Matcher matcher = ETAG_HEADER_PATTERN.matcher(rawContent);
+
+        if (matcher.find()) {
+            return matcher.group(1);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cluster name from the header written by get-config or null if there is none.
+     */
+    String getClusterName() {
+        Matcher matcher = CLUSTER_HEADER_PATTERN.matcher(rawContent);
+
+        if (matcher.find()) {
+            return matcher.group(1);
+        } else {
+            return null;
+        }
+    }
+
+    private static class ReadResult {
+        private final File file;
+        private final LocalConfigFile configFile;
+        private final Exception exception;
+
+        private ReadResult(File file, LocalConfigFile configFile, Exception exception) {
+            this.file = file;
+            this.configFile = configFile;
+            this.exception = exception;
+        }
+
+        static ReadResult read(File file, Set<ConfigType> streamingTypes) {
+            try {
+                return new ReadResult(file, LocalConfigFile.read(file, streamingTypes), null);
+            } catch (IOException | ConfigValidationException | RuntimeException e) {
+                return new ReadResult(file, null, e);
+            }
+        }
+
+        LocalConfigFile get() throws IOException, ConfigValidationException {
+            if (exception instanceof IOException) {
+                throw (IOException) exception;
+            } else if (exception instanceof ConfigValidationException) {
+                throw (ConfigValidationException) exception;
+            } else if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            } else {
+                return configFile;
+            }
+        }
+    }
+
+    /**
+     * Converts a YAML or JSON file to JSON token by token while it is written to a request body.
+     */
+    private static class StreamingContent implements JsonEntity.StreamingDocument {
+        private final File file;
+
+        StreamingContent(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void writeJsonTo(Writer writer) throws IOException {
+            Format format = Format.getByFileName(file.getName(), Format.YAML);
+
+            try (JsonParser parser = format.getJsonFactory().createParser(file);
+                    JsonGenerator generator = Format.JSON.getJsonFactory().createGenerator(writer)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+                if (parser.nextToken() != null) {
+                    generator.copyCurrentStructure(parser);
+                } else {
+                    generator.writeStartObject();
+                    generator.writeEndObject();
+                }
+            }
+        }
+    }
+}
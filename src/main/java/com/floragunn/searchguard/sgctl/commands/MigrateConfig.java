@@ -20,6 +20,7 @@ package com.floragunn.searchguard.sgctl.commands;
 import static java.util.stream.Collectors.toList;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
@@ -45,12 +46,15 @@ import com.floragunn.codova.documents.DocReader;
 import com.floragunn.codova.documents.DocWriter;
 import com.floragunn.codova.documents.Document;
 import com.floragunn.codova.documents.DocumentParseException;
+import com.floragunn.codova.documents.Format;
 import com.floragunn.codova.documents.UnexpectedDocumentStructureException;
 import com.floragunn.codova.validation.ValidatingDocNode;
 import com.floragunn.codova.validation.ValidationErrors;
 import com.floragunn.codova.validation.errors.MissingAttribute;
 import com.floragunn.codova.validation.errors.ValidationError;
 import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.instrumentation.ConfigFileIOEvent;
+import com.floragunn.searchguard.sgctl.instrumentation.DocumentParseEvent;
 import com.floragunn.searchguard.sgctl.util.YamlRewriter;
 import com.floragunn.searchguard.sgctl.util.YamlRewriter.Attribute;
 import com.floragunn.searchguard.sgctl.util.YamlRewriter.RewriteException;
@@ -150,7 +154,7 @@ public class MigrateConfig implements Callable<Integer> {
                 if (outputDir != null) {
                     if (backendUpdateInstructions.sgAuthc != null) {
                         try {
-                            Files.write(new File(outputDir, "sg_authc.yml").toPath(),
+                            writeFile(new File(outputDir, "sg_authc.yml"),
                                     DocWriter.yaml().writeAsString(backendUpdateInstructions.sgAuthc).getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -161,7 +165,7 @@ public class MigrateConfig implements Callable<Integer> {
 
                     if (backendUpdateInstructions.sgAuthz != null) {
                         try {
-                            Files.write(new File(outputDir, "sg_authz.yml").toPath(),
+                            writeFile(new File(outputDir, "sg_authz.yml"),
                                     DocWriter.yaml().writeAsString(backendUpdateInstructions.sgAuthz).getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -172,7 +176,7 @@ public class MigrateConfig implements Callable<Integer> {
 
                     if (backendUpdateInstructions.sgFrontendMultiTenancy != null) {
                         try {
-                            Files.write(new File(outputDir, "sg_frontend_multi_tenancy.yml").toPath(),
+                            writeFile(new File(outputDir, "sg_frontend_multi_tenancy.yml"),
                                     DocWriter.yaml().writeAsString(backendUpdateInstructions.sgFrontendMultiTenancy).getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -183,7 +187,7 @@ public class MigrateConfig implements Callable<Integer> {
 
                     if (backendUpdateInstructions.sgLicense != null) {
                         try {
-                            Files.write(new File(outputDir, "sg_license_key.yml").toPath(),
+                            writeFile(new File(outputDir, "sg_license_key.yml"),
                                     DocWriter.yaml().writeAsString(backendUpdateInstructions.sgLicense).getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -194,7 +198,7 @@ public class MigrateConfig implements Callable<Integer> {
 
                     if (backendUpdateInstructions.sgAuthTokenService != null) {
                         try {
-                            Files.write(new File(outputDir, "sg_auth_token_service.yml").toPath(),
+                            writeFile(new File(outputDir, "sg_auth_token_service.yml"),
                                     DocWriter.yaml().writeAsString(backendUpdateInstructions.sgAuthTokenService).getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -209,7 +213,7 @@ public class MigrateConfig implements Callable<Integer> {
                 if (outputDir != null) {
                     if (frontendUpdateInstructions.sgFrontendConfig != null && !frontendUpdateInstructions.sgFrontendConfig.isEmpty()) {
                         try {
-                            Files.write(new File(outputDir, "sg_frontend_authc.yml").toPath(),
+                            writeFile(new File(outputDir, "sg_frontend_authc.yml"),
                                     DocWriter.yaml().writeAsString(frontendUpdateInstructions.sgFrontendConfig).getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -220,7 +224,7 @@ public class MigrateConfig implements Callable<Integer> {
 
                     if (frontendUpdateInstructions.kibanaConfig != null) {
                         try {
-                            Files.write(new File(outputDir, dashboardConfigFileName).toPath(),
+                            writeFile(new File(outputDir, dashboardConfigFileName),
                                     frontendUpdateInstructions.kibanaConfig.getBytes(Charsets.UTF_8));
                         } catch (Exception e) {
                             System.out.flush();
@@ -335,6 +339,38 @@ public class MigrateConfig implements Callable<Integer> {
         }
     }
 
+    private static void writeFile(File file, byte[] content) throws IOException {
+        ConfigFileIOEvent event = ConfigFileIOEvent.start(file, ConfigFileIOEvent.WRITE);
+        Files.write(file.toPath(), content);
+
+        if (event != null) {
+            event.finish(content.length);
+        }
+    }
+
+    private static Map<String, Object> readLegacyConfig(File file)
+            throws FileNotFoundException, IOException, DocumentParseException, UnexpectedDocumentStructureException {
+        ConfigFileIOEvent readEvent = ConfigFileIOEvent.start(file, ConfigFileIOEvent.READ);
+        byte[] content;
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            content = in.readAllBytes();
+        }
+
+        if (readEvent != null) {
+            readEvent.finish(content.length);
+        }
+
+        DocumentParseEvent parseEvent = DocumentParseEvent.start(Format.YAML, file.getPath());
+        Map<String, Object> result = DocReader.yaml().readObject(new String(content, Charsets.UTF_8));
+
+        if (parseEvent != null) {
+            parseEvent.finish(content.length);
+        }
+
+        return result;
+    }
+
     public class ConfigMigrator {
 
         private final ValidationErrors oldSgConfigValidationErrors = new ValidationErrors();
@@ -347,9 +383,9 @@ public class MigrateConfig implements Callable<Integer> {
 
         public ConfigMigrator(File legacySgConfig, File legacyKibanaConfig, boolean publicBaseUrlAvailable, String dashboardConfigFileName)
                 throws FileNotFoundException, IOException, DocumentParseException, UnexpectedDocumentStructureException {
-            this.oldSgConfig = new ValidatingDocNode(DocReader.yaml().readObject(legacySgConfig), oldSgConfigValidationErrors);
+            this.oldSgConfig = new ValidatingDocNode(readLegacyConfig(legacySgConfig), oldSgConfigValidationErrors);
             this.oldKibanaConfig = legacyKibanaConfig != null
-                    ? new ValidatingDocNode(DocReader.yaml().readObject(legacyKibanaConfig), oldKibanaConfigValidationErrors)
+                    ? new ValidatingDocNode(readLegacyConfig(legacyKibanaConfig), oldKibanaConfigValidationErrors)
                     : null;
             this.kibanaConfigRewriter = legacyKibanaConfig != null ? new YamlRewriter(legacyKibanaConfig) : null;
             this.publicBaseUrlAvailable = publicBaseUrlAvailable;
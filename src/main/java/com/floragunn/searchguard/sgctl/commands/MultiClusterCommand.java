@@ -0,0 +1,286 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.floragunn.searchguard.sgctl.SgctlConfig;
+import com.floragunn.searchguard.sgctl.SgctlException;
+
+import picocli.CommandLine.Option;
+
+/**
+ * A command which can be executed for several clusters at once. With --clusters or --all-clusters, a copy of the command is executed for each
+ * cluster configuration on a pool of threads. Each copy writes its output to separate buffers; when all clusters are done, a table with the
+ * result for each cluster is printed.
+ */
+public abstract class MultiClusterCommand extends ConnectingCommand implements Callable<Integer> {
+
+    @Option(names = { "--clusters" }, split = ",", description = "Execute the command concurrently for the given cluster configurations")
+    List<String> clusterIds;
+
+    @Option(names = { "--all-clusters" },
+            description = "Execute the command concurrently for all cluster configurations in the sgctl configuration directory")
+    boolean allClusters;
+
+    @Option(names = { "--parallelism" },
+            description = "Maximum number of clusters processed concurrently with --clusters or --all-clusters. Default: 8")
+    int parallelism = 8;
+
+    @Option(names = { "--cluster-timeout" },
+            description = "Maximum number of seconds for processing each cluster with --clusters or --all-clusters. Requests in progress are aborted "
+                    + "and the cluster is reported as TIMEOUT; the configuration might have been applied anyway. Default: no limit")
+    Integer clusterTimeoutSeconds;
+
+    private boolean executedForSeveralClusters;
+
+    protected boolean isMultiCluster() {
+        return clusterIds != null || allClusters;
+    }
+
+    /**
+     * Returns true if this is a copy of the command which is executed for one of several clusters.
+     */
+    protected boolean isExecutedForSeveralClusters() {
+        return executedForSeveralClusters;
+    }
+
+    /**
+     * Adapts the options of a copy of this command for the given cluster, for example in order to write the output to different files.
+     */
+    protected void prepareForCluster(String clusterId) {
+    }
+
+    /**
+     * Executes copies of this command for the selected clusters and prints the results. Returns 0 if the command succeeded for all clusters.
+     */
+    protected int callForClusters() {
+        List<String> selectedClusterIds;
+
+        try {
+            selectedClusterIds = getClusterIds();
+        } catch (SgctlException e) {
+            err().println(e.getMessage());
+            return 1;
+        }
+
+        List<ClusterResult> results = new ArrayList<>(selectedClusterIds.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, selectedClusterIds.size())),
+                new DaemonThreadFactory("sgctl-cluster-"));
+        ScheduledExecutorService timer = clusterTimeoutSeconds != null
+                ? Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("sgctl-cluster-timeout-"))
+                : null;
+
+        try {
+            for (String clusterId : selectedClusterIds) {
+                ClusterResult result = new ClusterResult(clusterId);
+                MultiClusterCommand command = (MultiClusterCommand) copy();
+                command.clusterIds = null;
+                command.allClusters = false;
+                command.clusterIdOption = clusterId;
+                command.executedForSeveralClusters = true;
+                // The output of each cluster is collected separately and printed when all clusters are done
+                command.redirectOutput(new PrintStream(result.out, true, StandardCharsets.UTF_8),
+                        new PrintStream(result.err, true, StandardCharsets.UTF_8));
+                command.prepareForCluster(clusterId);
+
+                FutureTask<Integer> task = new FutureTask<>(() -> {
+                    long start = System.nanoTime();
+                    // The timeout starts when the cluster is processed, not when it is queued
+                    ScheduledFuture<?> timeout = timer != null
+                            ? timer.schedule(() -> result.timeOut(command), clusterTimeoutSeconds, TimeUnit.SECONDS)
+                            : null;
+
+                    try {
+                        return command.call();
+                    } finally {
+                        if (timeout != null) {
+                            timeout.cancel(false);
+                        }
+
+                        result.finish(System.nanoTime() - start);
+                    }
+                });
+
+                result.future = task;
+                results.add(result);
+                executor.execute(task);
+            }
+
+            for (ClusterResult result : results) {
+                try {
+                    result.exitCode = result.future.get();
+                } catch (CancellationException e) {
+                    // Cancelled by the timeout
+                } catch (ExecutionException e) {
+                    result.exception = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+        }
+
+        printResults(results);
+
+        return results.stream().allMatch(ClusterResult::isSuccess) ? 0 : 1;
+    }
+
+    private List<String> getClusterIds() throws SgctlException {
+        if (clusterIdOption != null) {
+            throw new SgctlException("--cluster cannot be combined with --clusters or --all-clusters");
+        }
+
+        List<String> result = new ArrayList<>(
+                new LinkedHashSet<>(allClusters ? SgctlConfig.Cluster.listClusterIds(getConfigDir()) : clusterIds));
+
+        if (result.isEmpty()) {
+            throw new SgctlException("No cluster configurations found in " + getConfigDir());
+        }
+
+        for (String clusterId : result) {
+            if (!SgctlConfig.Cluster.getConfigFile(getConfigDir(), clusterId).exists()) {
+                throw new SgctlException("The cluster configuration " + clusterId + " does not exist. Use sgctl connect to create it.");
+            }
+        }
+
+        return result;
+    }
+
+    private void printResults(List<ClusterResult> results) {
+        if (verbose || debug) {
+            for (ClusterResult result : results) {
+                out().println("--- " + result.clusterId);
+                out().print(result.out.toString(StandardCharsets.UTF_8));
+                out().print(result.err.toString(StandardCharsets.UTF_8));
+            }
+
+            out().println();
+        }
+
+        out().println(String.format("%-24s %-8s %10s  %s", "Cluster", "Result", "Time (ms)", "Message"));
+
+        for (ClusterResult result : results) {
+            out().println(String.format("%-24s %-8s %10s  %s", result.clusterId,
+                    result.isSuccess() ? "OK" : result.timedOut ? "TIMEOUT" : "FAILED",
+                    result.timedOut ? "-" : String.valueOf(TimeUnit.NANOSECONDS.toMillis(result.durationNanos)), result.getMessage()));
+        }
+    }
+
+    private static class ClusterResult {
+        private final String clusterId;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile long durationNanos;
+        private volatile boolean timedOut;
+        private Future<Integer> future;
+        private Integer exitCode;
+        private Throwable exception;
+
+        ClusterResult(String clusterId) {
+            this.clusterId = clusterId;
+        }
+
+        void finish(long durationNanos) {
+            if (finished.compareAndSet(false, true)) {
+                this.durationNanos = durationNanos;
+            }
+        }
+
+        /**
+         * Aborts the requests of the command which are in progress. A request which is aborted while it is sent might still be applied by the
+         * cluster; thus, the outcome for the cluster is unknown.
+         */
+        void timeOut(ConnectingCommand command) {
+            if (finished.compareAndSet(false, true)) {
+                timedOut = true;
+                command.abortRequests();
+                future.cancel(true);
+            }
+        }
+
+        boolean isSuccess() {
+            return !timedOut && exitCode != null && exitCode == 0;
+        }
+
+        /**
+         * For failed clusters, the first line written to standard error; otherwise, the last line written to standard output.
+         */
+        String getMessage() {
+            if (timedOut) {
+                return "No result within the cluster timeout; the outcome is unknown";
+            } else if (exception != null) {
+                return String.valueOf(exception);
+            } else if (!isSuccess()) {
+                String message = firstLine(err.toString(StandardCharsets.UTF_8));
+                return message != null ? message : "Exit code " + exitCode;
+            } else {
+                String message = lastLine(out.toString(StandardCharsets.UTF_8));
+                return message != null ? message : "";
+            }
+        }
+
+        private static String firstLine(String text) {
+            return text.lines().map(String::trim).filter((line) -> !line.isEmpty()).findFirst().orElse(null);
+        }
+
+        private static String lastLine(String text) {
+            return text.lines().map(String::trim).filter((line) -> !line.isEmpty()).reduce((first, second) -> second).orElse(null);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
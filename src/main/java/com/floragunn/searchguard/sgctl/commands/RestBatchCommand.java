@@ -0,0 +1,301 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.DocWriter;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.JsonEntity;
+import com.floragunn.searchguard.sgctl.client.SearchGuardAsyncRestClient;
+import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
+import com.floragunn.searchguard.sgctl.util.ClonParser;
+import com.floragunn.searchguard.sgctl.util.LatencyStats;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Executes the REST calls specified in an NDJSON file concurrently. Each line of the file is an object with the attributes method, endpoint
+ * and optionally body (a JSON value) or clon (a CLON expression or a list of CLON expressions). The results are written as NDJSON, one line
+ * per operation.
+ */
+@Command(name = "batch", description = "Executes the REST calls specified in an NDJSON file concurrently")
+public class RestBatchCommand extends ConnectingCommand implements Callable<Integer> {
+
+    @Option(names = { "-f", "--file" }, required = true, description = "NDJSON file with one operation per line")
+    File file;
+
+    @Option(names = { "--concurrency" }, description = "Maximum number of operations executed in parallel. Default: 4")
+    int concurrency = 4;
+
+    @Option(names = { "--order" }, description = "Order of the results: input or completion. Default: input")
+    ResultOrder order = ResultOrder.input;
+
+    @Option(names = { "-o", "--output" }, description = "File to write the results to. Default: standard output")
+    File outputFile;
+
+    @Override
+    public Integer call() {
+        if (concurrency < 1) {
+            System.err.println("--concurrency must be at least 1");
+            return 1;
+        }
+
+        if (!file.isFile()) {
+            System.err.println("File " + file + " does not exist");
+            return 1;
+        }
+
+        PrintStream out = System.out;
+
+        try (SearchGuardAsyncRestClient asyncClient = new SearchGuardAsyncRestClient(getClient(), concurrency);
+                BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+
+            if (outputFile != null) {
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)), false, StandardCharsets.UTF_8);
+            }
+
+            // Limits the number of operations which are read, but whose results are not written yet
+            int window = concurrency * 4;
+            Semaphore permits = new Semaphore(window);
+            ResultWriter resultWriter = new ResultWriter(out, order, permits);
+            long start = System.nanoTime();
+            int index = 0;
+            int lineNumber = 0;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                permits.acquire();
+
+                int operationIndex = index++;
+                int operationLineNumber = lineNumber;
+                String operationLine = line;
+
+                asyncClient.submit((client) -> execute(client, operationLineNumber, operationLine)).whenComplete((result, e) -> resultWriter
+                        .write(operationIndex, result != null ? result : errorResult(operationLineNumber, e)));
+            }
+
+            permits.acquire(window);
+            out.flush();
+
+            long duration = System.nanoTime() - start;
+            PrintStream summaryOut = outputFile != null ? System.out : System.err;
+
+            summaryOut.println("Executed " + index + " operations in " + LatencyStats.toMillis(duration) + " ms ("
+                    + (duration > 0 ? Math.round(index * 1_000_000_000.0 / duration) : index) + " operations/s); succeeded: "
+                    + (index - resultWriter.failed.get()) + "; failed: " + resultWriter.failed.get());
+            summaryOut.println("Latency: " + resultWriter.latencyStats);
+
+            if (outputFile != null) {
+                System.out.println("Results have been written to " + outputFile.getPath());
+            }
+
+            return resultWriter.failed.get() == 0 ? 0 : 1;
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Error while processing " + file + ": " + e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+            return 1;
+        } finally {
+            if (out != System.out) {
+                out.close();
+            }
+        }
+    }
+
+    @Override
+    protected int getMaxConnections() {
+        return Math.max(concurrency, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Executes the operation specified by the given line. Failures are reported in the result; this never throws an exception.
+     */
+    private Map<String, Object> execute(SearchGuardRestClient client, int lineNumber, String line) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("line", lineNumber);
+
+        try {
+            DocNode operation = DocNode.wrap(DocReader.json().read(line));
+            String method = operation.getAsString("method");
+            String endpoint = operation.getAsString("endpoint");
+
+            result.put("method", method);
+            result.put("endpoint", endpoint);
+
+            if (method == null || endpoint == null) {
+                throw new SgctlException("Each operation must specify a method and an endpoint");
+            }
+
+            HttpEntity entity = getEntity(operation);
+            long start = System.nanoTime();
+            SearchGuardRestClient.Response response;
+
+            switch (method.toLowerCase()) {
+            case "get":
+                response = client.get(endpoint);
+                break;
+            case "delete":
+                response = client.delete(endpoint);
+                break;
+            case "put":
+                response = client.put(endpoint, requireEntity(entity, method));
+                break;
+            case "patch":
+                response = client.patch(endpoint, requireEntity(entity, method));
+                break;
+            case "post":
+                response = entity != null ? client.post(endpoint, entity) : client.post(endpoint);
+                break;
+            default:
+                throw new SgctlException("Unsupported method: " + method);
+            }
+
+            int status = response.getHttpResponse().getStatusLine().getStatusCode();
+            Object body = response.asDocNode().toBasicObject();
+            long latency = System.nanoTime() - start;
+
+            result.put("status", status);
+            result.put("took_ms", LatencyStats.toMillis(latency));
+            result.put("latency_nanos", latency);
+            result.put("response", body);
+        } catch (Exception e) {
+            result.put("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+
+        return result;
+    }
+
+    private static HttpEntity getEntity(DocNode operation) throws SgctlException, ClonParser.ClonException {
+        Object body = operation.get("body");
+        Object clon = operation.get("clon");
+
+        if (body != null && clon != null) {
+            throw new SgctlException("Only one of body and clon may be specified");
+        } else if (body != null) {
+            return new JsonEntity(body);
+        } else if (clon instanceof String) {
+            return new JsonEntity(ClonParser.parse(Collections.singletonList((String) clon)));
+        } else if (clon instanceof List) {
+            return new JsonEntity(ClonParser.parse(operation.getAsListOfStrings("clon")));
+        } else if (clon != null) {
+            throw new SgctlException("clon must be a string or a list of strings");
+        } else {
+            return null;
+        }
+    }
+
+    private static HttpEntity requireEntity(HttpEntity entity, String method) throws SgctlException {
+        if (entity == null) {
+            throw new SgctlException("The method " + method + " requires a body or clon attribute");
+        }
+
+        return entity;
+    }
+
+    private static Map<String, Object> errorResult(int lineNumber, Throwable e) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("line", lineNumber);
+        result.put("error", String.valueOf(e));
+        return result;
+    }
+
+    enum ResultOrder {
+        input, completion
+    }
+
+    /**
+     * Writes the results either in completion order or in input order. In the latter case, results are held back until the results of all
+     * preceding operations are written.
+     */
+    private static class ResultWriter {
+        private final PrintStream out;
+        private final ResultOrder order;
+        private final Semaphore permits;
+        private final Map<Integer, Map<String, Object>> pending = new HashMap<>();
+        private final LatencyStats latencyStats = new LatencyStats();
+        private final AtomicInteger failed = new AtomicInteger();
+        private int nextIndex;
+
+        ResultWriter(PrintStream out, ResultOrder order, Semaphore permits) {
+            this.out = out;
+            this.order = order;
+            this.permits = permits;
+        }
+
+        synchronized void write(int index, Map<String, Object> result) {
+            Object latency = result.remove("latency_nanos");
+
+            if (latency instanceof Long) {
+                latencyStats.record((Long) latency);
+            }
+
+            if (!(result.get("status") instanceof Integer) || (Integer) result.get("status") >= 400) {
+                failed.incrementAndGet();
+            }
+
+            if (order == ResultOrder.completion) {
+                writeLine(result);
+                return;
+            }
+
+            pending.put(index, result);
+
+            while (pending.containsKey(nextIndex)) {
+                writeLine(pending.remove(nextIndex));
+                nextIndex++;
+            }
+        }
+
+        private void writeLine(Map<String, Object> result) {
+            out.println(DocWriter.json().writeAsString(result));
+            permits.release();
+        }
+    }
+}
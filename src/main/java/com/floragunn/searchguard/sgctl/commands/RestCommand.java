@@ -17,43 +17,61 @@
 
 package com.floragunn.searchguard.sgctl.commands;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.StringEntity;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.floragunn.codova.documents.DocReader;
 import com.floragunn.codova.documents.DocWriter;
 import com.floragunn.codova.documents.DocumentParseException;
 import com.floragunn.codova.documents.Format;
-import com.floragunn.codova.documents.UnexpectedDocumentStructureException;
 import com.floragunn.searchguard.sgctl.SgctlException;
 import com.floragunn.searchguard.sgctl.client.ApiException;
 import com.floragunn.searchguard.sgctl.client.BasicResponse;
 import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
 import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
+import com.floragunn.searchguard.sgctl.client.RetryPolicy;
+import com.floragunn.searchguard.sgctl.client.SearchGuardAsyncRestClient;
 import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
 import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
 import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
 import com.floragunn.searchguard.sgctl.util.ClonParser;
-import com.google.common.io.Files;
+import com.floragunn.searchguard.sgctl.util.LatencyStats;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.ITypeConverter;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.TypeConversionException;
 
-@Command(name = "rest", description = "REST client for administration")
+@Command(name = "rest", description = "REST client for administration", subcommands = { RestBatchCommand.class })
 public class RestCommand extends ConnectingCommand implements Callable<Integer> {
 
-    @Parameters(index = "0", arity = "1", description = "http method")
+    // The parameters are optional for picocli in order to allow the batch sub-command; they are checked in call()
+    @Parameters(index = "0", arity = "0..1", description = "http method")
     SupportedHttpMethods httpMethod;
 
-    @Parameters(index = "1", arity = "1", description = "Endpoint path")
+    @Parameters(index = "1", arity = "0..1", description = "Endpoint path")
     String endpoint;
 
     @Option(names = { "-i", "--input" }, description = "Path to a file")
@@ -65,15 +83,45 @@ public class RestCommand extends ConnectingCommand implements Callable<Integer>
     @Option(names = { "--clon" }, arity = "1..*", description = "Command Line Object Notation string")
     List<String> clonExpressions;
 
-    @Option(names = { "-o", "--output" }, description = "Custom output file path")
+    @Option(names = { "-o", "--output" }, description = "Write the response body of a successful request unchanged to the given file or directory")
     File outputFilePath;
 
+    @Option(names = { "--repeat" }, description = "Benchmark mode: Send the request the given number of times and report the latencies")
+    Long repeat;
+
+    @Option(names = { "--duration" }, converter = DurationConverter.class, description = "Benchmark mode: Send the request repeatedly for the given time, for example 60s or 5m")
+    Duration duration;
+
+    @Option(names = { "--concurrency" }, description = "Benchmark mode: Number of requests sent in parallel. Default: 1")
+    int concurrency = 1;
+
+    @Option(names = { "--rate" }, description = "Benchmark mode: Target number of requests per second. Latencies are measured from the time a request was scheduled to be sent, in order to avoid coordinated omission")
+    Double rate;
+
     @Override
     public Integer call() {
+        if (httpMethod == null || endpoint == null) {
+            System.err.println("Missing required parameters: Specify the http method and the endpoint path or use 'rest batch'");
+            return 1;
+        }
+
+        if (repeat != null || duration != null) {
+            return benchmark();
+        } else if (concurrency != 1 || rate != null) {
+            System.err.println("--concurrency and --rate require --repeat or --duration");
+            return 1;
+        }
+
         try (SearchGuardRestClient client = getClient().debug(debug)) {
-            BasicResponse basicResponse = httpMethod.handle(client, endpoint, jsonString, inputFilePath, clonExpressions);
-            System.out.println(basicResponse.toString());
-            handleFileOutput(outputFilePath, basicResponse);
+            SearchGuardRestClient.Response response = httpMethod.handle(client, endpoint, jsonString, inputFilePath, clonExpressions);
+
+            if (outputFilePath != null) {
+                File file = handleFileOutput(outputFilePath, response);
+                System.out.println("Response has been written to " + file.getPath());
+            } else {
+                System.out.println(response.parseResponseBy(BasicResponse::new).toString());
+            }
+
             return 0;
         } catch (SgctlException | UnauthorizedException | ApiException | InvalidResponseException | ServiceUnavailableException
                 | FailedConnectionException e) {
@@ -82,35 +130,190 @@ public class RestCommand extends ConnectingCommand implements Callable<Integer>
         }
     }
 
-    private static void handleFileOutput(File outputFilePath, BasicResponse response) throws SgctlException {
-        if (outputFilePath == null) {
-            return;
+    /**
+     * Sends the request repeatedly using the given concurrency and reports throughput, latencies and errors. The input is evaluated only
+     * once.
+     */
+    private int benchmark() {
+        if (concurrency < 1 || (repeat != null && repeat < 1) || (rate != null && rate <= 0)) {
+            System.err.println("--repeat, --concurrency and --rate must be positive");
+            return 1;
+        }
+
+        try {
+            SupportedHttpMethods.Input.EvaluatedInput evaluatedInput = httpMethod.prepare(jsonString, inputFilePath, clonExpressions);
+            SearchGuardRestClient client = getClient().debug(debug);
+
+            if (retryAttempts == null) {
+                // Retries would hide errors and distort the latencies
+                client.retryPolicy(RetryPolicy.NONE);
+            }
+
+            try (SearchGuardAsyncRestClient asyncClient = new SearchGuardAsyncRestClient(client, concurrency)) {
+                Benchmark benchmark = new Benchmark();
+                List<CompletableFuture<Void>> workers = new ArrayList<>(concurrency);
+
+                for (int i = 0; i < concurrency; i++) {
+                    workers.add(asyncClient.submit((workerClient) -> {
+                        benchmark.run(workerClient, evaluatedInput);
+                        return null;
+                    }));
+                }
+
+                CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+                benchmark.printReport(System.nanoTime());
+
+                return benchmark.errors.isEmpty() ? 0 : 1;
+            }
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    @Override
+    protected int getMaxConnections() {
+        return repeat != null || duration != null ? Math.max(concurrency, DEFAULT_MAX_CONNECTIONS) : DEFAULT_MAX_CONNECTIONS;
+    }
+
+    private class Benchmark {
+        private final AtomicLong scheduled = new AtomicLong();
+        private final LatencyStats serviceTimes = new LatencyStats();
+        private final LatencyStats responseTimes = new LatencyStats();
+        private final Map<String, Integer> errors = new TreeMap<>();
+        private final long start = System.nanoTime();
+        private final long deadline = duration != null ? start + duration.toNanos() : 0;
+        private final long intervalNanos = rate != null ? (long) (1_000_000_000L / rate) : 0;
+
+        void run(SearchGuardRestClient client, SupportedHttpMethods.Input.EvaluatedInput evaluatedInput) {
+            for (;;) {
+                long n = scheduled.getAndIncrement();
+
+                if (repeat != null && n >= repeat) {
+                    break;
+                }
+
+                long intendedStart = start + n * intervalNanos;
+
+                if (rate != null) {
+                    for (long wait = intendedStart - System.nanoTime(); wait > 0; wait = intendedStart - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+
+                long requestStart = System.nanoTime();
+
+                if (duration != null && requestStart - deadline >= 0) {
+                    break;
+                }
+
+                try {
+                    httpMethod.execute(client, endpoint, evaluatedInput).writeBodyTo(OutputStream.nullOutputStream());
+                } catch (Exception e) {
+                    synchronized (errors) {
+                        errors.merge(e.getClass().getSimpleName(), 1, Integer::sum);
+                    }
+                }
+
+                long requestEnd = System.nanoTime();
+                serviceTimes.record(requestEnd - requestStart);
+
+                if (rate != null) {
+                    responseTimes.record(requestEnd - intendedStart);
+                }
+            }
+        }
+
+        void printReport(long end) {
+            long total = serviceTimes.getCount();
+            long elapsed = Math.max(end - start, 1);
+            int failed = errors.values().stream().mapToInt(Integer::intValue).sum();
+
+            System.out.println("Requests: " + total + " in " + LatencyStats.toMillis(elapsed) + " ms (" + Math.round(total * 1_000_000_000.0 / elapsed)
+                    + " requests/s); concurrency: " + concurrency + (rate != null ? "; target rate: " + rate + " requests/s" : ""));
+            System.out.println("Successful: " + (total - failed) + "; failed: " + failed);
+
+            for (Map.Entry<String, Integer> entry : errors.entrySet()) {
+                System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+            }
+
+            // Without a target rate, the expected interval between requests of one worker is estimated by the median latency
+            LatencyStats corrected = rate != null ? responseTimes
+                    : serviceTimes.correctedForCoordinatedOmission(serviceTimes.getPercentile(50));
+
+            System.out.println();
+            System.out.println(String.format("%-28s %10s %10s %10s %10s %10s", "Latency (ms)", "p50", "p90", "p99", "p99.9", "max"));
+            printLatencyRow("Service time", serviceTimes);
+            printLatencyRow("Corrected for coord. omiss.", corrected);
+        }
+
+        private void printLatencyRow(String label, LatencyStats stats) {
+            System.out.println(String.format("%-28s %10.2f %10.2f %10.2f %10.2f %10.2f", label, LatencyStats.toMillis(stats.getPercentile(50)),
+                    LatencyStats.toMillis(stats.getPercentile(90)), LatencyStats.toMillis(stats.getPercentile(99)),
+                    LatencyStats.toMillis(stats.getPercentile(99.9)), LatencyStats.toMillis(stats.getMax())));
+        }
+    }
+
+    /**
+     * Converts durations like 500ms, 60s, 5m or 1h; plain numbers are interpreted as seconds.
+     */
+    static class DurationConverter implements ITypeConverter<Duration> {
+        @Override
+        public Duration convert(String value) {
+            String trimmed = value.trim().toLowerCase();
+
+            try {
+                if (trimmed.endsWith("ms")) {
+                    return Duration.ofMillis(Long.parseLong(trimmed.substring(0, trimmed.length() - 2)));
+                } else if (trimmed.endsWith("s")) {
+                    return Duration.ofSeconds(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+                } else if (trimmed.endsWith("m")) {
+                    return Duration.ofMinutes(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+                } else if (trimmed.endsWith("h")) {
+                    return Duration.ofHours(Long.parseLong(trimmed.substring(0, trimmed.length() - 1)));
+                } else {
+                    return Duration.ofSeconds(Long.parseLong(trimmed));
+                }
+            } catch (NumberFormatException e) {
+                throw new TypeConversionException("Invalid duration: " + value + ". Use a number followed by ms, s, m or h");
+            }
         }
+    }
+
+    /**
+     * Streams the response body to the output file without keeping it in memory. The body is written as received from the server. For error
+     * responses, no file is written.
+     */
+    private static File handleFileOutput(File outputFilePath, SearchGuardRestClient.Response response) throws SgctlException,
+            FailedConnectionException, InvalidResponseException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        response.checkStatus();
+
         String fileSuffix = "text/plain".equals(response.getContentType()) ? "txt" : "json";
-        String fileContent = "text/plain".equals(response.getContentType()) ? response.toString() : response.toPrettyJsonString();
 
         File file = outputFilePath;
         if (outputFilePath.isDirectory()) {
             file = new File(outputFilePath, "response-" + new SimpleDateFormat("yyyy-MM-dd--HH-mm").format(new Date()) + "." + fileSuffix);
-        } 
-        
-        try {
-            Files.asCharSink(file, Charset.defaultCharset()).write(fileContent);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            response.writeBodyTo(out);
         } catch (IOException e) {
             throw new SgctlException("Error while writing output to " + file.getPath() + ": " + e, e);
         }
+
+        return file;
     }
 
     private enum SupportedHttpMethods {
         GET("get", Input::validateEmpty, (client, endpoint, evaluatedInput) -> client.get(endpoint)),
         PUT("put", input -> input.validateExistent().validateNoDuplicate(),
-                (client, endpoint, evaluatedInput) -> client.put(endpoint, evaluatedInput.getContent(), evaluatedInput.getContentType())),
+                (client, endpoint, evaluatedInput) -> client.put(endpoint, evaluatedInput.getEntity())),
         DELETE("delete", Input::validateEmpty, (client, endpoint, evaluatedInput) -> client.delete(endpoint)),
         POST("post", Input::validateNoDuplicate,
                 (client, endpoint, evaluatedInput) -> evaluatedInput == null ? client.post(endpoint)
-                        : client.post(endpoint, evaluatedInput.getContent(), evaluatedInput.getContentType())),
+                        : client.post(endpoint, evaluatedInput.getEntity())),
         PATCH("patch", input -> input.validateExistent().validateNoDuplicate(),
-                (client, endpoint, evaluatedInput) -> client.patch(endpoint, evaluatedInput.getContent(), evaluatedInput.getContentType()));
+                (client, endpoint, evaluatedInput) -> client.patch(endpoint, evaluatedInput.getEntity()));
 
         private final String name;
         private final InputValidator validator;
@@ -127,12 +330,21 @@ public class RestCommand extends ConnectingCommand implements Callable<Integer>
             return name;
         }
 
-        public BasicResponse handle(SearchGuardRestClient client, String endpoint, String jsonString, File inputFilePath,
-                List<String> clonExpressions) throws SgctlException, FailedConnectionException, InvalidResponseException, UnauthorizedException,
-                ServiceUnavailableException, ApiException {
-            Input input = Input.create(jsonString, inputFilePath, clonExpressions);
-            SearchGuardRestClient.Response response = handler.handle(client, endpoint, validator.validate(input).evaluate());
-            return response.parseResponseBy(BasicResponse::new);
+        public SearchGuardRestClient.Response handle(SearchGuardRestClient client, String endpoint, String jsonString, File inputFilePath,
+                List<String> clonExpressions) throws SgctlException, FailedConnectionException, InvalidResponseException {
+            return execute(client, endpoint, prepare(jsonString, inputFilePath, clonExpressions));
+        }
+
+        /**
+         * Validates and evaluates the input. The result can be used for several requests.
+         */
+        public Input.EvaluatedInput prepare(String jsonString, File inputFilePath, List<String> clonExpressions) throws SgctlException {
+            return validator.validate(Input.create(jsonString, inputFilePath, clonExpressions)).evaluate();
+        }
+
+        public SearchGuardRestClient.Response execute(SearchGuardRestClient client, String endpoint, Input.EvaluatedInput evaluatedInput)
+                throws SgctlException, FailedConnectionException, InvalidResponseException {
+            return handler.handle(client, endpoint, evaluatedInput);
         }
 
         interface SupportedHttpMethodHandler {
@@ -194,11 +406,18 @@ public class RestCommand extends ConnectingCommand implements Callable<Integer>
                 }
                 try {
                     final Format format = jsonString != null || clonExpressions != null ? Format.JSON : Format.getByFileName(inputFilePath.getName());
-                    final Object content = clonExpressions != null ? ClonParser.parse(clonExpressions)
-                            : jsonString != null ? DocReader.format(format).read(jsonString)
-                                    : DocReader.format(format).readObject(inputFilePath);
-                    return new EvaluatedInput(DocWriter.format(format).writeAsString(content), ContentType.create(format.getMediaType()));
-                } catch (UnexpectedDocumentStructureException | DocumentParseException | IOException | Format.UnknownDocTypeException e) {
+                    final ContentType contentType = ContentType.create(format.getMediaType());
+
+                    if (inputFilePath != null) {
+                        // Files are sent as they are, without reading them into memory. Thus, they are only checked for syntax errors and
+                        // for containing an object.
+                        validateSyntax(format, inputFilePath);
+                        return new EvaluatedInput(new FileEntity(inputFilePath, contentType));
+                    }
+
+                    final Object content = clonExpressions != null ? ClonParser.parse(clonExpressions) : DocReader.format(format).read(jsonString);
+                    return new EvaluatedInput(new StringEntity(DocWriter.format(format).writeAsString(content), contentType));
+                } catch (DocumentParseException | IOException | Format.UnknownDocTypeException e) {
                     throw new SgctlException(
                             (jsonString != null ? "JSON input is invalid" : "Could not read file from path '" + inputFilePath + "' ") + "\n" + e, e);
                 } catch (ClonParser.ClonException e) {
@@ -206,21 +425,29 @@ public class RestCommand extends ConnectingCommand implements Callable<Integer>
                 }
             }
 
-            private static class EvaluatedInput {
-                private final String content;
-                private final ContentType contentType;
+            private static void validateSyntax(Format format, File file) throws IOException, SgctlException {
+                try (JsonParser parser = format.getJsonFactory().createParser(file)) {
+                    if (parser.nextToken() != JsonToken.START_OBJECT) {
+                        throw new SgctlException("Could not read file from path '" + file + "': The file must contain an object");
+                    }
 
-                protected EvaluatedInput(String contentString, ContentType contentType) {
-                    this.content = contentString;
-                    this.contentType = contentType;
+                    parser.skipChildren();
+
+                    while (parser.nextToken() != null) {
+                        parser.skipChildren();
+                    }
                 }
+            }
+
+            private static class EvaluatedInput {
+                private final HttpEntity entity;
 
-                public String getContent() {
-                    return content;
+                protected EvaluatedInput(HttpEntity entity) {
+                    this.entity = entity;
                 }
 
-                public ContentType getContentType() {
-                    return contentType;
+                public HttpEntity getEntity() {
+                    return entity;
                 }
             }
         }
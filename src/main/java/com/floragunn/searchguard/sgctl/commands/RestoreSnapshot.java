@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.floragunn.fluent.collections.OrderedImmutableMap;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.ApiException;
+import com.floragunn.searchguard.sgctl.client.BasicResponse;
+import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
+import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
+import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
+import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
+import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+@Command(name = "restore-snapshot", description = "Uploads the configuration stored in a snapshot to the cluster")
+public class RestoreSnapshot extends ConnectingCommand implements Callable<Integer> {
+
+    @Parameters(index = "0", arity = "1", description = "ID of the snapshot as shown by list-snapshots")
+    String snapshotId;
+
+    @Option(names = { "--types" }, split = ",", description = "Only restore the given configuration types, like roles,rolesmapping")
+    List<String> types;
+
+    @Option(names = { "-f", "--force" }, description = "Restore the snapshot even if it was taken from another cluster")
+    boolean force;
+
+    @Override
+    public Integer call() {
+        try {
+            SnapshotStore store = new SnapshotStore(getConfigDir());
+            SnapshotStore.Snapshot snapshot = store.get(snapshotId);
+            Collection<String> restoredTypes = types != null ? types : snapshot.getTypes().keySet();
+            Map<String, Map<String, ?>> configTypeToConfigMap = new LinkedHashMap<>();
+
+            for (String configType : restoredTypes) {
+                configTypeToConfigMap.put(configType, OrderedImmutableMap.of("content", store.getContent(snapshot, configType)));
+            }
+
+            try (SearchGuardRestClient client = getClient().debug(debug)) {
+                if (!force && snapshot.getClusterName() != null && getConnectedClusterName() != null
+                        && !snapshot.getClusterName().equals(getConnectedClusterName())) {
+                    throw new SgctlException("The snapshot was taken from the cluster " + snapshot.getClusterName()
+                            + ", but we are connected to the cluster " + getConnectedClusterName()
+                            + ". Use the --force switch to restore it anyway");
+                }
+
+                if (verbose || debug) {
+                    System.out.println("Restoring " + String.join(", ", configTypeToConfigMap.keySet()) + " from snapshot " + snapshot.getId());
+                }
+
+                BasicResponse basicResponse = client.putConfigBulk(configTypeToConfigMap);
+
+                System.out.println(basicResponse.getMessage());
+            }
+
+            return 0;
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (InvalidResponseException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (FailedConnectionException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (ServiceUnavailableException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (UnauthorizedException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (ApiException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.SgctlTool;
+import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+
+@Command(name = "shell", description = "Starts an interactive shell which executes sgctl commands using a single persistent connection")
+public class ShellCommand extends ConnectingCommand implements Callable<Integer> {
+
+    @Override
+    public Integer call() {
+        try (SearchGuardRestClient client = getClient().debug(debug)) {
+            SessionFactory sessionFactory = new SessionFactory(client, getConnectedClusterName());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+
+            System.out.println("Type exit or press Ctrl+D to leave the shell");
+
+            for (;;) {
+                System.out.print("sgctl> ");
+                System.out.flush();
+
+                String line = reader.readLine();
+
+                if (line == null) {
+                    System.out.println();
+                    break;
+                }
+
+                List<String> args;
+
+                try {
+                    args = parseArguments(line);
+                } catch (SgctlException e) {
+                    System.err.println(e.getMessage());
+                    continue;
+                }
+
+                if (args.isEmpty()) {
+                    continue;
+                }
+
+                if (args.get(0).equals("exit") || args.get(0).equals("quit")) {
+                    break;
+                }
+
+                if (args.get(0).equals("shell")) {
+                    System.err.println("You are already in the sgctl shell");
+                    continue;
+                }
+
+                // A fresh CommandLine instance is used for each line, as the command objects keep state from their previous execution
+                SgctlTool.exec(new CommandLine(new SgctlTool(), sessionFactory), args.toArray(new String[args.size()]));
+            }
+
+            return 0;
+        } catch (SgctlException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Error while reading from standard input: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    static List<String> parseArguments(String line) throws SgctlException {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = null;
+        char quote = 0;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+                    current.append(line.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (current != null) {
+                    result.add(current.toString());
+                    current = null;
+                }
+            } else {
+                if (current == null) {
+                    current = new StringBuilder();
+                }
+
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '\\' && i + 1 < line.length()) {
+                    current.append(line.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            }
+        }
+
+        if (quote != 0) {
+            throw new SgctlException("Unterminated quote: " + quote);
+        }
+
+        if (current != null) {
+            result.add(current.toString());
+        }
+
+        return result;
+    }
+
+    private static class SessionFactory implements CommandLine.IFactory {
+        private final SearchGuardRestClient client;
+        private final String clusterName;
+
+        SessionFactory(SearchGuardRestClient client, String clusterName) {
+            this.client = client;
+            this.clusterName = clusterName;
+        }
+
+        @Override
+        public <K> K create(Class<K> cls) throws Exception {
+            K result = CommandLine.defaultFactory().create(cls);
+
+            if (result instanceof ConnectingCommand) {
+                ((ConnectingCommand) result).attachSession(client, clusterName);
+            }
+
+            return result;
+        }
+    }
+}
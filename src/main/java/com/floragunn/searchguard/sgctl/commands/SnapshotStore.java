@@ -0,0 +1,369 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.codova.documents.DocWriter;
+import com.floragunn.codova.documents.Document;
+import com.floragunn.codova.documents.DocumentParseException;
+import com.floragunn.codova.documents.UnexpectedDocumentStructureException;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+import com.floragunn.searchguard.sgctl.util.AtomicFiles;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * A local store for snapshots of the Search Guard configuration, located in the sgctl configuration directory. Each configuration document
+ * is stored as gzip compressed blob named by the SHA-256 hash of its canonical JSON representation. Thus, documents which did not change
+ * between snapshots are only stored once. A snapshot consists of an index file which references the blobs of the configuration types.
+ */
+public class SnapshotStore {
+
+    private static final DateTimeFormatter ID_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final File blobDir;
+    private final File indexDir;
+
+    public SnapshotStore(File configDir) {
+        File dir = new File(configDir, "snapshots");
+        this.blobDir = new File(dir, "blobs");
+        this.indexDir = new File(dir, "index");
+    }
+
+    /**
+     * Stores the configuration contained in the given response as new snapshot. The cluster is the id of the sgctl cluster configuration; the
+     * cluster name is the name reported by the cluster. Both may be null.
+     */
+    public Snapshot create(String cluster, String clusterName, GetBulkConfigResponse response) throws SgctlException {
+        Instant timestamp = Instant.now();
+        Map<String, Snapshot.Entry> types = new LinkedHashMap<>();
+
+        for (GetBulkConfigResponse.ConfigDocument config : response) {
+            if (!config.isExists() && config.getConfigType() != ConfigType.CONFIG_VARS) {
+                continue;
+            }
+
+            String hash = storeBlob(config.getContent().toBasicObject());
+            types.put(config.getConfigType().getApiName(), new Snapshot.Entry(hash, config.getEtag()));
+        }
+
+        mkdirs(indexDir);
+
+        String baseId = (cluster != null ? cluster : clusterName != null ? clusterName : "unknown") + "_" + ID_TIMESTAMP_FORMAT.format(timestamp);
+        String id = baseId;
+
+        for (int i = 2; getIndexFile(id).exists(); i++) {
+            id = baseId + "-" + i;
+        }
+
+        Snapshot snapshot = new Snapshot(id, timestamp.toString(), cluster, clusterName, response.getSearchGuardVersion(), types);
+        File indexFile = getIndexFile(id);
+
+        try {
+            AtomicFiles.write(indexFile, (writer) -> DocWriter.yaml().write(writer, snapshot.toBasicObject()));
+        } catch (IOException e) {
+            throw new SgctlException("Error while writing " + indexFile + ": " + e, e);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns all snapshots, ordered by their ids
+     */
+    public List<Snapshot> list() throws SgctlException {
+        String[] indexFiles = indexDir.list((dir, name) -> name.endsWith(".yml"));
+
+        if (indexFiles == null) {
+            return Collections.emptyList();
+        }
+
+        Arrays.sort(indexFiles);
+
+        List<Snapshot> result = new ArrayList<>(indexFiles.length);
+
+        for (String indexFile : indexFiles) {
+            result.add(read(new File(indexDir, indexFile)));
+        }
+
+        return result;
+    }
+
+    public Snapshot get(String id) throws SgctlException {
+        File indexFile = getIndexFile(id);
+
+        if (!indexFile.exists()) {
+            throw new SgctlException("Snapshot " + id + " does not exist");
+        }
+
+        return read(indexFile);
+    }
+
+    /**
+     * Reads the configuration document of the given type from the blob store
+     */
+    public DocNode getContent(Snapshot snapshot, String configType) throws SgctlException {
+        Snapshot.Entry entry = snapshot.getTypes().get(configType);
+
+        if (entry == null) {
+            throw new SgctlException("Snapshot " + snapshot.getId() + " does not contain configuration of type " + configType);
+        }
+
+        File blobFile = getBlobFile(entry.getHash());
+
+        try (InputStream in = new GZIPInputStream(new FileInputStream(blobFile))) {
+            byte[] json = ByteStreams.toByteArray(in);
+
+            if (!Hashing.sha256().hashBytes(json).toString().equals(entry.getHash())) {
+                throw new SgctlException("The content of " + blobFile + " does not match its hash. The snapshot store is corrupted");
+            }
+
+            return DocNode.wrap(DocReader.json().read(json));
+        } catch (FileNotFoundException e) {
+            throw new SgctlException("The configuration of type " + configType + " is missing in the snapshot store: " + blobFile, e);
+        } catch (DocumentParseException e) {
+            throw new SgctlException("File " + blobFile + " is invalid: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + blobFile + ": " + e, e);
+        }
+    }
+
+    /**
+     * Stores the given document as blob, if there is no blob with the same content yet. Returns the hash of the document.
+     */
+    private String storeBlob(Object document) throws SgctlException {
+        byte[] json = DocWriter.json().writeAsBytes(canonicalize(document));
+        String hash = Hashing.sha256().hashBytes(json).toString();
+        File blobFile = getBlobFile(hash);
+
+        if (blobFile.exists()) {
+            return hash;
+        }
+
+        mkdirs(blobFile.getParentFile());
+
+        Path target = blobFile.toPath();
+        Path temp = target.resolveSibling("." + hash + "." + UUID.randomUUID() + ".tmp");
+
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+                out.write(json);
+            }
+
+            // Concurrent processes may store the same blob; as the content is the same, it does not matter which one wins
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new SgctlException("Error while writing " + blobFile + ": " + e, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // Only a leftover temporary file
+            }
+        }
+
+        return hash;
+    }
+
+    private File getBlobFile(String hash) {
+        return new File(new File(blobDir, hash.substring(0, 2)), hash + ".json.gz");
+    }
+
+    private File getIndexFile(String id) {
+        return new File(indexDir, id + ".yml");
+    }
+
+    private static Snapshot read(File indexFile) throws SgctlException {
+        try {
+            return Snapshot.parse(DocNode.wrap(DocReader.yaml().readObject(indexFile)));
+        } catch (DocumentParseException | UnexpectedDocumentStructureException e) {
+            throw new SgctlException("File " + indexFile + " is invalid: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + indexFile + ": " + e, e);
+        }
+    }
+
+    private static void mkdirs(File dir) throws SgctlException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new SgctlException("Could not create directory " + dir);
+        }
+    }
+
+    /**
+     * Sorts the attributes of all objects, so that equal documents have the same JSON representation regardless of attribute order
+     */
+    static Object canonicalize(Object document) {
+        if (document instanceof Map) {
+            Map<String, Object> result = new TreeMap<>();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) document).entrySet()) {
+                result.put(String.valueOf(entry.getKey()), canonicalize(entry.getValue()));
+            }
+
+            return result;
+        } else if (document instanceof List) {
+            List<Object> result = new ArrayList<>(((List<?>) document).size());
+
+            for (Object element : (List<?>) document) {
+                result.add(canonicalize(element));
+            }
+
+            return result;
+        } else {
+            return document;
+        }
+    }
+
+    public static class Snapshot implements Document<Snapshot> {
+        private final String id;
+        private final String timestamp;
+        private final String cluster;
+        private final String clusterName;
+        private final String searchGuardVersion;
+        private final Map<String, Entry> types;
+
+        Snapshot(String id, String timestamp, String cluster, String clusterName, String searchGuardVersion, Map<String, Entry> types) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.cluster = cluster;
+            this.clusterName = clusterName;
+            this.searchGuardVersion = searchGuardVersion;
+            this.types = types;
+        }
+
+        static Snapshot parse(DocNode docNode) {
+            Map<String, Entry> types = new LinkedHashMap<>();
+
+            if (docNode.hasNonNull("types")) {
+                for (Map.Entry<String, Object> entry : docNode.getAsNode("types").toMap().entrySet()) {
+                    DocNode node = DocNode.wrap(entry.getValue());
+                    types.put(entry.getKey(), new Entry(node.getAsString("sha256"), node.getAsString("etag")));
+                }
+            }
+
+            return new Snapshot(docNode.getAsString("id"), docNode.getAsString("timestamp"), docNode.getAsString("cluster"),
+                    docNode.getAsString("cluster_name"), docNode.getAsString("search_guard_version"), types);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        public String getCluster() {
+            return cluster;
+        }
+
+        public String getClusterName() {
+            return clusterName;
+        }
+
+        public String getSearchGuardVersion() {
+            return searchGuardVersion;
+        }
+
+        public Map<String, Entry> getTypes() {
+            return types;
+        }
+
+        @Override
+        public Object toBasicObject() {
+            Map<String, Object> typeMap = new LinkedHashMap<>();
+
+            for (Map.Entry<String, Entry> entry : types.entrySet()) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("sha256", entry.getValue().hash);
+
+                if (entry.getValue().etag != null) {
+                    map.put("etag", entry.getValue().etag);
+                }
+
+                typeMap.put(entry.getKey(), map);
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("id", id);
+            result.put("timestamp", timestamp);
+
+            if (cluster != null) {
+                result.put("cluster", cluster);
+            }
+
+            if (clusterName != null) {
+                result.put("cluster_name", clusterName);
+            }
+
+            result.put("search_guard_version", searchGuardVersion);
+            result.put("types", typeMap);
+            return result;
+        }
+
+        public static class Entry {
+            private final String hash;
+            private final String etag;
+
+            Entry(String hash, String etag) {
+                this.hash = hash;
+                this.etag = etag;
+            }
+
+            public String getHash() {
+                return hash;
+            }
+
+            public String getEtag() {
+                return etag;
+            }
+        }
+    }
+}
@@ -17,19 +17,16 @@
 
 package com.floragunn.searchguard.sgctl.commands;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.floragunn.codova.documents.DocNode;
-import com.floragunn.codova.documents.DocReader;
-import com.floragunn.codova.documents.Format;
+import com.floragunn.codova.documents.patch.MergePatch;
 import com.floragunn.codova.validation.ConfigValidationException;
 import com.floragunn.codova.validation.ValidationErrors;
-import com.floragunn.codova.validation.errors.FileDoesNotExist;
 import com.floragunn.codova.validation.errors.ValidationError;
-import com.floragunn.fluent.collections.ImmutableMap;
 import com.floragunn.fluent.collections.OrderedImmutableMap;
 import com.floragunn.searchguard.sgctl.SgctlException;
 import com.floragunn.searchguard.sgctl.client.ApiException;
 import com.floragunn.searchguard.sgctl.client.BasicResponse;
+import com.floragunn.searchguard.sgctl.client.ConditionalRequestHeader.IfMatch;
 import com.floragunn.searchguard.sgctl.client.FailedConnectionException;
 import com.floragunn.searchguard.sgctl.client.InvalidResponseException;
 import com.floragunn.searchguard.sgctl.client.PreconditionFailedException;
@@ -37,29 +34,31 @@ import com.floragunn.searchguard.sgctl.client.SearchGuardRestClient;
 import com.floragunn.searchguard.sgctl.client.ServiceUnavailableException;
 import com.floragunn.searchguard.sgctl.client.UnauthorizedException;
 import com.floragunn.searchguard.sgctl.client.api.ConfigType;
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+import com.floragunn.searchguard.sgctl.util.DocDiff;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Command(name = "update-config", description = "Updates Search Guard configuration on the server from local files")
-public class UpdateConfig extends ConnectingCommand implements Callable<Integer> {
+public class UpdateConfig extends MultiClusterCommand implements Callable<Integer> {
 
     @Parameters(arity = "1..*", description = "Search Guard configuration files like sg_authc.yml or a directory containing these files")
     List<File> files;
@@ -67,148 +66,566 @@ public class UpdateConfig extends ConnectingCommand implements Callable<Integer>
     @Option(names = { "-f", "--force" }, arity = "0..1", description = "Upload the configuration even if a concurrent modification is detected")
     boolean force;
 
+    @Option(names = { "--changed-only" },
+            description = "Only upload the configuration files which were changed since they were retrieved by get-config")
+    boolean changedOnly;
+
+    @Option(names = { "--patch" },
+            description = "Only send the differences to the configuration on the server as JSON merge patches. "
+                    + "This reduces the size of the requests for large configurations")
+    boolean patch;
+
+    @Option(names = { "--watch" }, description = "Keep running and upload the configuration files whenever they are changed")
+    boolean watch;
+
+    @Option(names = { "--debounce" },
+            description = "Time in milliseconds without further changes to wait before uploading changed files in watch mode. Default: 500")
+    long debounceMillis = 500;
+
     @Override
     public Integer call() {
+        if (isMultiCluster()) {
+            if (watch) {
+                err().println("--watch cannot be combined with --clusters or --all-clusters");
+                return 1;
+            }
+
+            return callForClusters();
+        }
+
         Map<String, String> configTypeToFileMap = new HashMap<>();
         Map<String, Map<String, ?>> configTypeToConfigMap = new LinkedHashMap<>();
+        Map<String, LocalConfigFile> configTypeToLocalFileMap = new HashMap<>();
+        Map<File, ConfigManifest> manifests = new HashMap<>();
+        File dir = null;
 
-        try (SearchGuardRestClient client = getClient().debug(debug)) {
+        try {
 
-            if (files.size() == 1 && files.get(0).isDirectory()) {
-                File dir = files.get(0);
-                files = Arrays.asList(Objects.requireNonNull(dir.listFiles()));
-                List<File> ignoredFiles = new ArrayList<>();
-                files = files.stream().filter(file -> {
-                    if (file.getName().startsWith("sg_") && file.getName().endsWith(".yml")) {
-                        return true;
-                    }
-                    ignoredFiles.add(file);
-                    return false;
-                }).collect(Collectors.toList());
-
-                if (ignoredFiles.size() == 1) {
-                    System.err.println("File " + ignoredFiles.get(0).getName() + " does not seem to be a Search Guard configuration file. Ignoring it");
-                } else if(ignoredFiles.size() > 1) {
-                    System.err.println("Files " + ignoredFiles.stream().map(File::getName).collect(Collectors.joining(", ")) + " do not seem to be Search Guard configuration files. Ignoring these");
-                }
+            if (files.size() == 1 && ConfigBundle.isBundle(files.get(0))) {
+                return uploadBundle(ConfigBundle.read(files.get(0), err()));
+            }
 
-                if (files.size() == 0) {
-                    throw new SgctlException("Directory " + dir + " does not contain any configuration files");
-                }
+            if (files.size() == 1 && files.get(0).isDirectory()) {
+                dir = files.get(0);
+                files = LocalConfigFile.listConfigFiles(dir, err());
 
                 if (verbose || debug) {
-                    System.out.println("Uploading config files from directory " + dir.getAbsolutePath() + ": "
+                    out().println("Uploading config files from directory " + dir.getAbsolutePath() + ": "
                             + files.stream().map(File::getName).collect(Collectors.joining(", ")));
                 }
             } else if (verbose || debug) {
-                System.out.println("Uploading config files: " + files.stream().map(File::getName).collect(Collectors.joining(", ")));
+                out().println("Uploading config files: " + files.stream().map(File::getName).collect(Collectors.joining(", ")));
             }
 
-            for (File file : files) {
-                try {
-                    Format format = Format.getByFileName(file.getName(), Format.YAML);
-                    String rawContent = Files.asCharSource(file, Charsets.UTF_8).read();
-                    DocNode content = DocNode.wrap(DocReader.format(format).fallbackForEmptyDocuments(ImmutableMap.empty()).readObject(file));
+            for (LocalConfigFile configFile : LocalConfigFile.readAll(files, getStreamingTypes(), validationErrors).values()) {
+                String configType = configFile.getConfigType().getApiName();
+                String etag = force ? null : configFile.getETag();
 
-                    ConfigType configType = ConfigType.getFor(file, content, rawContent);
-                    String etag = force ? null : getETag(rawContent);
-                    String clusterName = getClusterName(rawContent);
+                configTypeToConfigMap.put(configType, etag != null ? OrderedImmutableMap.of("content", configFile.getUploadContent(), "etag", etag)
+                        : OrderedImmutableMap.of("content", configFile.getUploadContent()));
+                configTypeToFileMap.put(configType, configFile.getFile().getPath());
+                configTypeToLocalFileMap.put(configType, configFile);
+            }
 
-                    if (!force && clusterName != null && getConnectedClusterName() != null && !clusterName.equals(getConnectedClusterName())) {
-                        validationErrors.add(new ValidationError(file.getPath(),
-                                "The file is designated for the cluster " + clusterName + ", but we are connected to the cluster "
-                                        + getConnectedClusterName() + ". Use the --force switch to write the configuration to "
-                                        + getConnectedClusterName()));
-                    }
+            validationErrors.throwExceptionForPresentErrors();
 
-                    if (!configTypeToConfigMap.containsKey(configType.getApiName())) {
-                        configTypeToConfigMap.put(configType.getApiName(),
-                                etag != null ? OrderedImmutableMap.of("content", content, "etag", etag) : OrderedImmutableMap.of("content", content));
-                        configTypeToFileMap.put(configType.getApiName(), file.getPath());
-                    } else {
-                        validationErrors.add(new ValidationError(file.getPath(), "Configuration of type " + configType.getApiName()
-                                + " is already specifed in file " + configTypeToFileMap.get(configType.getApiName())));
+            if (changedOnly) {
+                removeUnchangedConfig(configTypeToConfigMap, configTypeToFileMap, configTypeToLocalFileMap, manifests);
+
+                if (configTypeToConfigMap.isEmpty()) {
+                    out().println("No configuration changes found. Nothing to upload.");
+
+                    if (!watch) {
+                        return 0;
                     }
-                } catch (FileNotFoundException e) {
-                    validationErrors.add(new FileDoesNotExist(file.getPath(), file));
-                } catch (JsonProcessingException e) {
-                    validationErrors.add(new ValidationError(file.getPath(), e.getMessage()).cause(e));
-                } catch (IOException e) {
-                    validationErrors.add(new ValidationError(file.getPath(), "Error while reading: " + e).cause(e));
-                } catch (ConfigValidationException e) {
-                    validationErrors.add(file.getPath(), e);
                 }
             }
 
-            validationErrors.throwExceptionForPresentErrors();
+            try (SearchGuardRestClient client = getClient().debug(debug)) {
+                if (isExecutedForSeveralClusters()) {
+                    removeForeignETags(configTypeToConfigMap, (configType) -> configTypeToLocalFileMap.get(configType).getClusterName());
+                } else {
+                    checkClusterNames(configTypeToFileMap.keySet().stream().map(configTypeToLocalFileMap::get).collect(Collectors.toList()));
+                }
+
+                Set<String> uploadedTypes = new LinkedHashSet<>(configTypeToConfigMap.keySet());
+                readStreamedFileForPatch(configTypeToConfigMap, configTypeToLocalFileMap);
+                BasicResponse basicResponse = upload(client, configTypeToConfigMap);
 
-            BasicResponse basicResponse = client.putConfigBulk(configTypeToConfigMap);
+                // The manifest is shared by all clusters; if it was updated by the first cluster, the other clusters would see no changes
+                if (!isExecutedForSeveralClusters()) {
+                    updateManifests(configTypeToFileMap, configTypeToLocalFileMap, manifests);
+                }
 
-            System.out.println(basicResponse.getMessage());
+                if (watch) {
+                    return watch(client, dir, configTypeToLocalFileMap, uploadedTypes, basicResponse, manifests);
+                }
+            }
 
             return 0;
         } catch (ConfigValidationException e) {
-            System.err.println("Invalid config files:\n" + e.getValidationErrors());
+            err().println("Invalid config files:\n" + e.getValidationErrors());
             return 1;
         } catch (SgctlException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (InvalidResponseException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (FailedConnectionException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (ServiceUnavailableException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (UnauthorizedException e) {
-            System.err.println(e.getMessage());
+            err().println(e.getMessage());
             return 1;
         } catch (PreconditionFailedException e) {
-            System.err.println(e.getMessage());
-            System.err.println("Use the --force switch to overwrite any concurrent change");
+            err().println(e.getMessage());
+            err().println("Use the --force switch to overwrite any concurrent change");
             return 1;
         } catch (ApiException e) {
-            if (e.getValidationErrors() != null) {
-                Map<String, ValidationErrors> validationErrorsByFile = e.getValidationErrors().groupByKeys(configTypeToFileMap);
+            printApiException(e, configTypeToFileMap);
+            return 1;
+        }
+    }
 
-                System.err.println("Invalid config files:\n");
+    /**
+     * Uploads all configuration types contained in a bundle written by get-config --bundle.
+     */
+    private int uploadBundle(ConfigBundle bundle) throws SgctlException, ConfigValidationException, InvalidResponseException,
+            FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        if (watch || changedOnly) {
+            throw new SgctlException("--watch and --changed-only cannot be used with configuration bundles");
+        }
 
-                for (Map.Entry<String, ValidationErrors> entry : validationErrorsByFile.entrySet()) {
-                    System.err.println(entry.getKey() + ":");
-                    System.err.println(entry.getValue().toString().replaceAll("(?m)^", "  "));
-                    System.err.println();
-                }
-            } else {
-                System.err.println(e.getMessage());
+        if (verbose || debug) {
+            out().println("Uploading configuration bundle " + bundle.getFile() + ": "
+                    + bundle.getConfigTypes().stream().map(ConfigType::getApiName).collect(Collectors.joining(", ")));
+        }
+
+        Map<String, Map<String, ?>> configTypeToConfigMap = new LinkedHashMap<>();
+        Map<String, String> configTypeToFileMap = new HashMap<>();
+
+        for (ConfigType configType : bundle.getConfigTypes()) {
+            DocNode content = bundle.getContent(configType);
+            String etag = force ? null : bundle.getEtag(configType);
+
+            configTypeToConfigMap.put(configType.getApiName(),
+                    etag != null ? OrderedImmutableMap.of("content", content, "etag", etag) : OrderedImmutableMap.of("content", content));
+            configTypeToFileMap.put(configType.getApiName(), bundle.getFile().getPath());
+        }
+
+        if (configTypeToConfigMap.isEmpty()) {
+            throw new SgctlException("The bundle " + bundle.getFile() + " does not contain any configuration");
+        }
+
+        try (SearchGuardRestClient client = getClient().debug(debug)) {
+            if (isExecutedForSeveralClusters()) {
+                removeForeignETags(configTypeToConfigMap, (configType) -> bundle.getClusterName());
+            } else if (!force && bundle.getClusterName() != null && getConnectedClusterName() != null
+                    && !bundle.getClusterName().equals(getConnectedClusterName())) {
+                throw new ConfigValidationException(new ValidationError(bundle.getFile().getPath(),
+                        "The bundle is designated for the cluster " + bundle.getClusterName() + ", but we are connected to the cluster "
+                                + getConnectedClusterName() + ". Use the --force switch to write the configuration to "
+                                + getConnectedClusterName()));
             }
 
+            upload(client, configTypeToConfigMap);
+        } catch (PreconditionFailedException e) {
+            throw e;
+        } catch (ApiException e) {
+            // The validation errors are reported for the bundle file
+            printApiException(e, configTypeToFileMap);
             return 1;
         }
-    }
 
-    private static final Pattern ETAG_HEADER_PATTERN = Pattern.compile("^#\\s*.*etag:([a-z0-9\\.]+)");
+        return 0;
+    }
 
-    private String getETag(String rawContent) {
-        Matcher matcher = ETAG_HEADER_PATTERN.matcher(rawContent);
+    /**
+     * Uploads the given configuration, as patches if requested. Returns the response of the bulk request or null if everything could be
+     * uploaded as patch.
+     */
+    private BasicResponse upload(SearchGuardRestClient client, Map<String, Map<String, ?>> configTypeToConfigMap)
+            throws InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        if (patch) {
+            configTypeToConfigMap = uploadPatches(client, configTypeToConfigMap);
+        }
 
-        if (matcher.find()) {
-            return matcher.group(1);
-        } else {
+        if (configTypeToConfigMap.isEmpty()) {
             return null;
         }
+
+        BasicResponse basicResponse = client.putConfigBulk(configTypeToConfigMap);
+
+        out().println(basicResponse.getMessage());
+
+        return basicResponse;
+    }
+
+    /**
+     * Uploads changed configuration files until the process is terminated. Only the changed files are read and uploaded. After each upload,
+     * the etags of the uploaded configuration are retrieved, so that concurrent changes by others are still detected by the following uploads.
+     */
+    private int watch(SearchGuardRestClient client, File dir, Map<String, LocalConfigFile> configTypeToLocalFileMap, Set<String> uploadedTypes,
+            BasicResponse uploadResponse, Map<File, ConfigManifest> manifests) throws SgctlException, InvalidResponseException,
+            FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        Map<String, String> etags = new HashMap<>();
+        Map<String, String> contentHashes = new HashMap<>();
+
+        for (Map.Entry<String, LocalConfigFile> entry : configTypeToLocalFileMap.entrySet()) {
+            etags.put(entry.getKey(), entry.getValue().getETag());
+            contentHashes.put(entry.getKey(), getContentHash(entry.getValue()));
+        }
+
+        updateETags(client, uploadedTypes, uploadResponse, etags);
+
+        try (ConfigFileWatcher watcher = new ConfigFileWatcher(dir, dir != null ? null : files, debounceMillis)) {
+            out().println("Watching for changes. Press Ctrl-C to stop.");
+
+            for (;;) {
+                uploadChangedFiles(client, watcher.awaitChanges(), etags, contentHashes, manifests);
+            }
+        } catch (IOException e) {
+            throw new SgctlException("Error while watching files: " + e, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    /**
+     * Uploads the given files in watch mode. Errors are reported, but do not terminate the watch mode.
+     */
+    private void uploadChangedFiles(SearchGuardRestClient client, List<File> changedFiles, Map<String, String> etags,
+            Map<String, String> contentHashes, Map<File, ConfigManifest> manifests) {
+        Map<String, Map<String, ?>> configTypeToConfigMap = new LinkedHashMap<>();
+        Map<String, String> configTypeToFileMap = new HashMap<>();
+        Map<String, LocalConfigFile> configTypeToLocalFileMap = new HashMap<>();
+
+        try {
+            ValidationErrors validationErrors = new ValidationErrors();
+            Map<ConfigType, LocalConfigFile> changedConfig = LocalConfigFile.readAll(changedFiles, getStreamingTypes(), validationErrors);
+            validationErrors.throwExceptionForPresentErrors();
+
+            for (LocalConfigFile configFile : changedConfig.values()) {
+                String configType = configFile.getConfigType().getApiName();
+
+                if (getContentHash(configFile).equals(contentHashes.get(configType))) {
+                    if (verbose || debug) {
+                        out().println("Content of " + configFile.getFile() + " is unchanged");
+                    }
+                    continue;
+                }
+
+                String etag = force ? null : etags.containsKey(configType) ? etags.get(configType) : configFile.getETag();
+
+                configTypeToConfigMap.put(configType, etag != null ? OrderedImmutableMap.of("content", configFile.getUploadContent(), "etag", etag)
+                        : OrderedImmutableMap.of("content", configFile.getUploadContent()));
+                configTypeToFileMap.put(configType, configFile.getFile().getPath());
+                configTypeToLocalFileMap.put(configType, configFile);
+            }
+
+            if (configTypeToConfigMap.isEmpty()) {
+                return;
+            }
+
+            checkClusterNames(configTypeToLocalFileMap.values());
+
+            out().println(LocalTime.now().truncatedTo(ChronoUnit.SECONDS) + " Uploading " + String.join(", ", configTypeToFileMap.values()));
+
+            Set<String> uploadedTypes = new LinkedHashSet<>(configTypeToConfigMap.keySet());
+            readStreamedFileForPatch(configTypeToConfigMap, configTypeToLocalFileMap);
+            BasicResponse basicResponse = upload(client, configTypeToConfigMap);
+
+            for (Map.Entry<String, LocalConfigFile> entry : configTypeToLocalFileMap.entrySet()) {
+                contentHashes.put(entry.getKey(), getContentHash(entry.getValue()));
+            }
+
+            updateManifests(configTypeToFileMap, configTypeToLocalFileMap, manifests);
+            updateETags(client, uploadedTypes, basicResponse, etags);
+        } catch (ConfigValidationException e) {
+            err().println("Invalid config files:\n" + e.getValidationErrors());
+        } catch (PreconditionFailedException e) {
+            err().println(e.getMessage());
+            err().println("The configuration was changed concurrently. Use get-config to retrieve the current configuration "
+                    + "or the --force switch to overwrite it");
+        } catch (ApiException e) {
+            printApiException(e, configTypeToFileMap);
+        } catch (SgctlException | InvalidResponseException | FailedConnectionException | ServiceUnavailableException | UnauthorizedException e) {
+            err().println(e.getMessage());
+        }
+    }
+
+    /**
+     * Records the etags the server assigned to the uploaded configuration. A bulk request for a single type returns the new etag; otherwise,
+     * the etags need to be retrieved.
+     */
+    private void updateETags(SearchGuardRestClient client, Set<String> uploadedTypes, BasicResponse uploadResponse, Map<String, String> etags)
+            throws InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        if (force) {
+            return;
+        }
+
+        if (uploadedTypes.size() == 1 && uploadResponse != null && uploadResponse.getETag() != null) {
+            etags.put(uploadedTypes.iterator().next(), uploadResponse.getETag());
+            return;
+        }
+
+        for (String configType : uploadedTypes) {
+            etags.put(configType, client.getConfig(ConfigType.get(configType)).getEtag());
+        }
+    }
+
+    private void checkClusterNames(Collection<LocalConfigFile> configFiles) throws ConfigValidationException {
+        if (force || getConnectedClusterName() == null) {
+            return;
+        }
+
+        ValidationErrors validationErrors = new ValidationErrors();
+
+        for (LocalConfigFile configFile : configFiles) {
+            if (configFile.getClusterName() != null && !configFile.getClusterName().equals(getConnectedClusterName())) {
+                validationErrors.add(new ValidationError(configFile.getFile().getPath(),
+                        "The file is designated for the cluster " + configFile.getClusterName() + ", but we are connected to the cluster "
+                                + getConnectedClusterName() + ". Use the --force switch to write the configuration to "
+                                + getConnectedClusterName()));
+            }
+        }
+
+        validationErrors.throwExceptionForPresentErrors();
     }
 
-    private static final Pattern CLUSTER_HEADER_PATTERN = Pattern.compile("^#\\s*.*cluster:(\\S+)");
+    /**
+     * When the same configuration is uploaded to several clusters, it was usually retrieved from one of these. Its etags are only valid for
+     * that cluster; for the other clusters, the configuration is uploaded without etags.
+     */
+    private void removeForeignETags(Map<String, Map<String, ?>> configTypeToConfigMap, Function<String, String> configTypeToClusterName) {
+        String connectedClusterName = getConnectedClusterName();
 
-    private String getClusterName(String rawContent) {
-        Matcher matcher = CLUSTER_HEADER_PATTERN.matcher(rawContent);
+        for (Map.Entry<String, Map<String, ?>> entry : configTypeToConfigMap.entrySet()) {
+            if (entry.getValue().containsKey("etag")
+                    && (connectedClusterName == null || !connectedClusterName.equals(configTypeToClusterName.apply(entry.getKey())))) {
+                if (verbose || debug) {
+                    out().println("Ignoring the etag of " + entry.getKey() + ", as it was retrieved from another cluster");
+                }
 
-        if (matcher.find()) {
-            return matcher.group(1);
+                entry.setValue(OrderedImmutableMap.of("content", entry.getValue().get("content")));
+            }
+        }
+    }
+
+    /**
+     * The internal users, which can be huge, are streamed from the file. See readStreamedFileForPatch() for the exception made for --patch.
+     */
+    private Set<ConfigType> getStreamingTypes() {
+        return EnumSet.of(ConfigType.INTERNALUSERS);
+    }
+
+    private void printApiException(ApiException e, Map<String, String> configTypeToFileMap) {
+        if (e.getValidationErrors() != null) {
+            Map<String, ValidationErrors> validationErrorsByFile = e.getValidationErrors().groupByKeys(configTypeToFileMap);
+
+            err().println("Invalid config files:\n");
+
+            for (Map.Entry<String, ValidationErrors> entry : validationErrorsByFile.entrySet()) {
+                err().println(entry.getKey() + ":");
+                err().println(entry.getValue().toString().replaceAll("(?m)^", "  "));
+                err().println();
+            }
         } else {
-            return null;
+            err().println(e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the differences between the local configuration and the configuration on the server as merge patches. Configuration types
+     * without differences are not uploaded.
+     *
+     * If a single type was changed, its patch is sent. The If-Match header is set to the etag of the local file; thus, the server rejects
+     * the patch if the configuration was changed since the file was retrieved. With --force, the etag of the configuration the patch was
+     * computed from is used.
+     *
+     * Separate patch requests for several types would not be atomic: if one of them failed, the configuration on the server would be
+     * partially updated. Thus, if several types were changed, they are uploaded as complete documents in one bulk request. Streamed files
+     * cannot be compared and are always considered as changed.
+     *
+     * Returns the configuration which must be uploaded using the bulk API.
+     */
+    private Map<String, Map<String, ?>> uploadPatches(SearchGuardRestClient client, Map<String, Map<String, ?>> configTypeToConfigMap)
+            throws InvalidResponseException, FailedConnectionException, ServiceUnavailableException, UnauthorizedException, ApiException {
+        Map<String, Map<String, ?>> changed = new LinkedHashMap<>();
+        Map<String, MergePatch> patches = new LinkedHashMap<>();
+        Map<String, String> currentEtags = new HashMap<>();
+
+        for (Map.Entry<String, Map<String, ?>> entry : configTypeToConfigMap.entrySet()) {
+            ConfigType configType = ConfigType.get(entry.getKey());
+
+            if (configType == ConfigType.CONFIG_VARS || !(entry.getValue().get("content") instanceof DocNode)) {
+                changed.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            DocNode localContent = (DocNode) entry.getValue().get("content");
+            GetBulkConfigResponse.ConfigDocument currentConfig = client.getConfig(configType);
+
+            Map<String, Object> mergePatch = currentConfig.isExists()
+                    ? DocDiff.mergePatch(currentConfig.getContent().toBasicObject(), localContent.toBasicObject())
+                    : null;
+
+            if (mergePatch == null) {
+                if (verbose || debug) {
+                    out().println("The changes of " + configType.getApiName() + " cannot be expressed as patch; uploading complete document");
+                }
+
+                changed.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            if (mergePatch.isEmpty()) {
+                out().println("No changes for " + configType.getApiName());
+                continue;
+            }
+
+            changed.put(entry.getKey(), entry.getValue());
+            patches.put(entry.getKey(), new MergePatch(DocNode.wrap(mergePatch)));
+            currentEtags.put(entry.getKey(), currentConfig.getEtag());
         }
+
+        if (changed.size() != 1 || patches.size() != 1) {
+            if (changed.size() > 1 && (verbose || debug)) {
+                out().println("Several configuration types were changed; uploading them as complete documents in one request: "
+                        + String.join(", ", changed.keySet()));
+            }
+
+            return changed;
+        }
+
+        String configTypeName = patches.keySet().iterator().next();
+        ConfigType configType = ConfigType.get(configTypeName);
+        MergePatch docPatch = patches.get(configTypeName);
+        String localEtag = (String) changed.get(configTypeName).get("etag");
+        String etag = localEtag != null ? localEtag : currentEtags.get(configTypeName);
+
+        if (verbose || debug) {
+            out().println("Patch for " + configType.getApiName() + ": " + docPatch.toJsonString());
+        }
+
+        BasicResponse basicResponse = etag != null ? client.patchConfig(configType, docPatch, new IfMatch(etag))
+                : client.patchConfig(configType, docPatch);
+
+        out().println(basicResponse.getMessage());
+
+        return new LinkedHashMap<>();
+    }
+
+    /**
+     * Patches can only be computed from parsed documents. Thus, a streamed file is read completely if it is the only configuration to be
+     * uploaded with --patch. If several types are uploaded, streamed files are uploaded as complete documents anyway.
+     */
+    private void readStreamedFileForPatch(Map<String, Map<String, ?>> configTypeToConfigMap, Map<String, LocalConfigFile> configTypeToLocalFileMap)
+            throws SgctlException, ConfigValidationException {
+        if (!patch || configTypeToConfigMap.size() != 1) {
+            return;
+        }
+
+        String configType = configTypeToConfigMap.keySet().iterator().next();
+        LocalConfigFile localFile = configTypeToLocalFileMap.get(configType);
+
+        if (localFile == null || !localFile.isStreaming()) {
+            return;
+        }
+
+        try {
+            localFile = LocalConfigFile.read(localFile.getFile());
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + localFile.getFile() + ": " + e.getMessage(), e);
+        }
+
+        Object etag = configTypeToConfigMap.get(configType).get("etag");
+
+        configTypeToConfigMap.put(configType, etag != null ? OrderedImmutableMap.of("content", localFile.getContent(), "etag", etag)
+                : OrderedImmutableMap.of("content", localFile.getContent()));
+        configTypeToLocalFileMap.put(configType, localFile);
+    }
+
+    /**
+     * Removes the configuration types from the given maps whose files have the same content and etag as recorded in the manifest written by
+     * get-config.
+     */
+    private void removeUnchangedConfig(Map<String, Map<String, ?>> configTypeToConfigMap, Map<String, String> configTypeToFileMap,
+            Map<String, LocalConfigFile> configTypeToLocalFileMap, Map<File, ConfigManifest> manifests) throws SgctlException {
+        for (String configType : new ArrayList<>(configTypeToConfigMap.keySet())) {
+            File file = new File(configTypeToFileMap.get(configType));
+            ConfigManifest manifest = getManifest(file, manifests);
+
+            if (manifest == null) {
+                if (verbose || debug) {
+                    out().println("No manifest found for " + file + "; uploading it");
+                }
+
+                continue;
+            }
+
+            LocalConfigFile localFile = configTypeToLocalFileMap.get(configType);
+
+            if (manifest.isUnchanged(configType, getContentHash(localFile), localFile.getETag())) {
+                if (verbose || debug) {
+                    out().println("Skipping unchanged file " + file);
+                }
+
+                configTypeToConfigMap.remove(configType);
+                configTypeToFileMap.remove(configType);
+            } else if (verbose || debug) {
+                out().println("File " + file + " was changed");
+            }
+        }
+    }
+
+    /**
+     * Records the uploaded content in existing manifests, so that a further update-config --changed-only does not upload it again.
+     */
+    private void updateManifests(Map<String, String> configTypeToFileMap, Map<String, LocalConfigFile> configTypeToLocalFileMap,
+            Map<File, ConfigManifest> manifests) throws SgctlException {
+        Map<File, ConfigManifest> changedManifests = new LinkedHashMap<>();
+
+        for (Map.Entry<String, String> entry : configTypeToFileMap.entrySet()) {
+            File file = new File(entry.getValue());
+            ConfigManifest manifest = getManifest(file, manifests);
+
+            if (manifest != null) {
+                LocalConfigFile localFile = configTypeToLocalFileMap.get(entry.getKey());
+                manifest.putHash(entry.getKey(), file.getName(), getContentHash(localFile), localFile.getETag());
+                changedManifests.put(getDirectory(file), manifest);
+            }
+        }
+
+        for (Map.Entry<File, ConfigManifest> entry : changedManifests.entrySet()) {
+            entry.getValue().write(entry.getKey());
+        }
+    }
+
+    private static String getContentHash(LocalConfigFile localFile) throws SgctlException {
+        try {
+            return localFile.getContentHash();
+        } catch (IOException e) {
+            throw new SgctlException("Error while reading " + localFile.getFile() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static ConfigManifest getManifest(File file, Map<File, ConfigManifest> manifests) throws SgctlException {
+        File dir = getDirectory(file);
+
+        if (!manifests.containsKey(dir)) {
+            manifests.put(dir, ConfigManifest.read(dir));
+        }
+
+        return manifests.get(dir);
+    }
+
+    private static File getDirectory(File file) {
+        return file.getAbsoluteFile().getParentFile();
     }
 }
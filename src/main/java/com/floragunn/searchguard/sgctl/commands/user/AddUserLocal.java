@@ -19,6 +19,7 @@ package com.floragunn.searchguard.sgctl.commands.user;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -32,6 +33,7 @@ import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 import com.floragunn.codova.documents.DocWriter;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.FileWriteMode;
 import com.google.common.io.Files;
 
 import picocli.CommandLine.Command;
@@ -93,19 +95,18 @@ public class AddUserLocal implements Callable<Integer> {
                 } 
                 
                 if (output.exists()) {
-                    String existing = Files.asCharSource(output, Charsets.UTF_8).read();
-                    
-                    if (!existing.endsWith("\n")) {
-                        existing += "\n";
-                    }
-                    
                     System.out.println("Appending to " + output);
                     
                     if (userYaml.startsWith("---")) {
                         userYaml = userYaml.substring(3).trim();
                     }
+
+                    // Only the last byte of the existing file is read, as sg_internal_users.yml files can be huge
+                    if (!endsWithNewline(output)) {
+                        userYaml = "\n" + userYaml;
+                    }
                     
-                    Files.asCharSink(output, Charsets.UTF_8).write(existing + userYaml);
+                    Files.asCharSink(output, Charsets.UTF_8, FileWriteMode.APPEND).write(userYaml);
                 } else {
                     System.out.println("Wrting to " + output);
                     
@@ -120,6 +121,17 @@ public class AddUserLocal implements Callable<Integer> {
         } 
     }
 
+    private static boolean endsWithNewline(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            if (randomAccessFile.length() == 0) {
+                return false;
+            }
+
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            return randomAccessFile.read() == '\n';
+        }
+    }
+
     private static String hash(char[] clearTextPassword) {
         final byte[] salt = new byte[16];
         new SecureRandom().nextBytes(salt);
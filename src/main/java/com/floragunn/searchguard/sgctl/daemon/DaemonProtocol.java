@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The wire protocol spoken between the sgctl launcher and the sgctl daemon.
+ *
+ * The launcher starts with sending a request consisting of the protocol version, the working directory and the command line arguments.
+ * Afterwards, the daemon sends frames consisting of a type byte, a length and the payload:
+ *
+ * <ul>
+ * <li>{@link #STDOUT} and {@link #STDERR} carry output of the command</li>
+ * <li>{@link #STDIN_REQUEST} asks the launcher for at most <i>length</i> bytes from its standard input. The launcher answers with a
+ * {@link #STDIN} frame; a length of -1 signals the end of the input.</li>
+ * <li>{@link #EXIT} terminates the request. The length field carries the exit code.</li>
+ * </ul>
+ */
+public class DaemonProtocol {
+
+    public static final int VERSION = 1;
+
+    public static final byte STDOUT = 'O';
+    public static final byte STDERR = 'E';
+    public static final byte STDIN_REQUEST = 'R';
+    public static final byte STDIN = 'I';
+    public static final byte EXIT = 'X';
+
+    public static final File DEFAULT_SOCKET = new File(new File(System.getProperty("user.home"), ".searchguard"), "sgctl-daemon.sock");
+
+    public static File getSocketFile() {
+        String socket = System.getenv("SGCTL_DAEMON_SOCKET");
+
+        if (socket != null && socket.length() != 0) {
+            return new File(socket);
+        } else {
+            return DEFAULT_SOCKET;
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, String workingDirectory, String... args) throws IOException {
+        out.writeInt(VERSION);
+        writeString(out, workingDirectory);
+        out.writeInt(args.length);
+
+        for (String arg : args) {
+            writeString(out, arg);
+        }
+
+        out.flush();
+    }
+
+    static Request readRequest(DataInputStream in) throws IOException {
+        int version = in.readInt();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+
+        String workingDirectory = readString(in);
+        int argc = in.readInt();
+        List<String> args = new ArrayList<>(argc);
+
+        for (int i = 0; i < argc; i++) {
+            args.add(readString(in));
+        }
+
+        return new Request(workingDirectory, args.toArray(new String[argc]));
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, byte[] data, int offset, int length) throws IOException {
+        out.writeByte(type);
+        out.writeInt(length);
+
+        if (length > 0) {
+            out.write(data, offset, length);
+        }
+
+        out.flush();
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, int length) throws IOException {
+        out.writeByte(type);
+        out.writeInt(length);
+        out.flush();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > 1024 * 1024) {
+            throw new IOException("Invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Request {
+        private final String workingDirectory;
+        private final String[] args;
+
+        Request(String workingDirectory, String[] args) {
+            this.workingDirectory = workingDirectory;
+            this.args = args;
+        }
+
+        String getWorkingDirectory() {
+            return workingDirectory;
+        }
+
+        String[] getArgs() {
+            return args;
+        }
+    }
+
+    /**
+     * Wraps output written by a command into frames of the given type.
+     */
+    static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                writeFrame(out, type, b, off, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.floragunn.searchguard.sgctl.SgctlTool;
+import com.floragunn.searchguard.sgctl.commands.ConnectingCommand;
+import com.floragunn.searchguard.sgctl.commands.ConnectionCache;
+
+import picocli.CommandLine;
+
+/**
+ * A long-running sgctl process which executes commands forwarded by {@link SgctlLauncher} over a Unix domain socket. Cluster configurations,
+ * TLS configurations and connections are kept in a {@link ConnectionCache} and are thus re-used by subsequent commands.
+ *
+ * Commands are executed one after another, as they share the process wide standard streams.
+ */
+public class SgctlDaemon implements AutoCloseable {
+
+    private final File socketFile;
+    private final Duration idleTimeout;
+    private final ConnectionCache connectionCache = new ConnectionCache();
+    private final Instant startTime = Instant.now();
+    private final PrintStream log = System.out;
+    private ServerSocketChannel serverChannel;
+    private boolean stopRequested;
+
+    public SgctlDaemon(File socketFile, Duration idleTimeout) {
+        this.socketFile = socketFile.getAbsoluteFile();
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void run() throws SgctlException {
+        bind();
+
+        log.println(Instant.now() + " sgctl daemon listening on " + socketFile);
+
+        try (Selector selector = Selector.open()) {
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (!stopRequested) {
+                if (selector.select(idleTimeout.toMillis()) == 0) {
+                    log.println(Instant.now() + " No requests since " + idleTimeout.toMinutes() + " minutes; shutting down");
+                    break;
+                }
+
+                selector.selectedKeys().clear();
+
+                SocketChannel channel = serverChannel.accept();
+
+                if (channel != null) {
+                    handle(channel);
+                }
+            }
+        } catch (IOException e) {
+            throw new SgctlException("Error while accepting connections on " + socketFile + ": " + e.getMessage(), e);
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        connectionCache.close();
+
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                log.println("Error while closing " + socketFile + ": " + e);
+            }
+
+            serverChannel = null;
+            socketFile.delete();
+        }
+    }
+
+    private void bind() throws SgctlException {
+        if (socketFile.exists()) {
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketFile.toPath()))) {
+                throw new SgctlException("Another sgctl daemon is already listening on " + socketFile);
+            } catch (IOException e) {
+                // Stale socket file of a daemon which did not shut down properly
+                socketFile.delete();
+            }
+        }
+
+        Path tempDir = null;
+
+        try {
+            Files.createDirectories(socketFile.getParentFile().toPath());
+
+            // The daemon acts with the privileges of the user who started it. Thus, only this user must be able to connect. The socket is
+            // created in a directory which is only accessible by this user; only after its permissions have been restricted, it is moved to
+            // its final location.
+            tempDir = createPrivateDirectory(socketFile.getParentFile().toPath());
+            Path tempSocket = tempDir.resolve("s");
+
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            serverChannel.bind(UnixDomainSocketAddress.of(tempSocket));
+
+            try {
+                Files.setPosixFilePermissions(tempSocket, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system
+            }
+
+            Files.move(tempSocket, socketFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (serverChannel != null) {
+                try {
+                    serverChannel.close();
+                } catch (IOException e1) {
+                    e.addSuppressed(e1);
+                }
+
+                serverChannel = null;
+            }
+
+            throw new SgctlException("Could not listen on " + socketFile + ": " + e.getMessage(), e);
+        } finally {
+            if (tempDir != null) {
+                try {
+                    Files.deleteIfExists(tempDir.resolve("s"));
+                    Files.deleteIfExists(tempDir);
+                } catch (IOException e) {
+                    log.println("Could not delete " + tempDir + ": " + e);
+                }
+            }
+        }
+    }
+
+    private static Path createPrivateDirectory(Path parent) throws IOException {
+        try {
+            return Files.createTempDirectory(parent, ".sgctl", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+            return Files.createTempDirectory(parent, ".sgctl");
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (SocketChannel c = channel) {
+            channel.configureBlocking(true);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DaemonProtocol.Request request = DaemonProtocol.readRequest(in);
+
+            int exitCode = execute(request, in, out);
+
+            synchronized (out) {
+                DaemonProtocol.writeFrame(out, DaemonProtocol.EXIT, exitCode);
+            }
+        } catch (IOException e) {
+            log.println(Instant.now() + " Error while handling request: " + e);
+        }
+    }
+
+    private int execute(DaemonProtocol.Request request, DataInputStream in, DataOutputStream out) {
+        PrintStream stdout = new PrintStream(new BufferedOutputStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDOUT)), true,
+                StandardCharsets.UTF_8);
+        PrintStream stderr = new PrintStream(new BufferedOutputStream(new DaemonProtocol.FrameOutputStream(out, DaemonProtocol.STDERR)), true,
+                StandardCharsets.UTF_8);
+        InputStream stdin = new ForwardedInputStream(in, out, stdout, stderr);
+
+        List<String> args = Arrays.asList(request.getArgs());
+
+        if (!args.isEmpty() && args.get(0).equals("daemon")) {
+            try {
+                return executeDaemonCommand(args, stdout, stderr);
+            } finally {
+                stdout.flush();
+                stderr.flush();
+            }
+        }
+
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        InputStream originalIn = System.in;
+
+        System.setOut(stdout);
+        System.setErr(stderr);
+        System.setIn(stdin);
+
+        try {
+            File workingDirectory = new File(request.getWorkingDirectory());
+            CommandLine commandLine = new CommandLine(new SgctlTool(), new DaemonFactory(connectionCache));
+            // The daemon cannot change its working directory; thus, relative paths are resolved against the working directory of the launcher
+            commandLine.registerConverter(File.class, (value) -> {
+                File file = new File(value);
+                return file.isAbsolute() ? file : new File(workingDirectory, value);
+            });
+            commandLine.setOut(new PrintWriter(stdout, true));
+            commandLine.setErr(new PrintWriter(stderr, true));
+
+            return SgctlTool.exec(commandLine, request.getArgs());
+        } catch (RuntimeException e) {
+            e.printStackTrace(stderr);
+            return 1;
+        } finally {
+            stdout.flush();
+            stderr.flush();
+
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            System.setIn(originalIn);
+        }
+    }
+
+    private int executeDaemonCommand(List<String> args, PrintStream stdout, PrintStream stderr) {
+        if (args.contains("--stop")) {
+            stdout.println("Stopping sgctl daemon listening on " + socketFile);
+            stopRequested = true;
+            return 0;
+        } else if (args.contains("--status")) {
+            stdout.println("sgctl daemon listening on " + socketFile);
+            stdout.println("PID: " + ProcessHandle.current().pid());
+            stdout.println("Running since: " + startTime);
+            stdout.println("Cached connections: " + connectionCache.size());
+            return 0;
+        } else {
+            stderr.println("An sgctl daemon is already listening on " + socketFile);
+            return 1;
+        }
+    }
+
+    /**
+     * Requests data from the standard input of the launcher only when the command actually reads from System.in.
+     */
+    private static class ForwardedInputStream extends InputStream {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final PrintStream stdout;
+        private final PrintStream stderr;
+        private boolean eof;
+
+        ForwardedInputStream(DataInputStream in, DataOutputStream out, PrintStream stdout, PrintStream stderr) {
+            this.in = in;
+            this.out = out;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+
+            if (len == 0) {
+                return 0;
+            }
+
+            // Make sure that prompts are visible before waiting for input
+            stdout.flush();
+            stderr.flush();
+
+            synchronized (out) {
+                DaemonProtocol.writeFrame(out, DaemonProtocol.STDIN_REQUEST, Math.min(len, 8192));
+            }
+
+            byte type = in.readByte();
+            int length = in.readInt();
+
+            if (type != DaemonProtocol.STDIN) {
+                throw new IOException("Unexpected frame type " + type);
+            }
+
+            if (length < 0) {
+                eof = true;
+                return -1;
+            }
+
+            in.readFully(b, off, length);
+            return length;
+        }
+    }
+
+    private static class DaemonFactory implements CommandLine.IFactory {
+        private final ConnectionCache connectionCache;
+
+        DaemonFactory(ConnectionCache connectionCache) {
+            this.connectionCache = connectionCache;
+        }
+
+        @Override
+        public <K> K create(Class<K> cls) throws Exception {
+            K result = CommandLine.defaultFactory().create(cls);
+
+            if (result instanceof ConnectingCommand) {
+                ((ConnectingCommand) result).attachConnectionCache(connectionCache);
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import com.floragunn.searchguard.sgctl.SgctlTool;
+
+/**
+ * Entry point used by sgctl.sh when SGCTL_DAEMON=true is set. Forwards the command line arguments and the standard streams to the sgctl
+ * daemon, starting the daemon first if necessary. Falls back to executing the command in this process if the daemon cannot be started.
+ *
+ * This class must stay light-weight: it should not touch any classes besides the ones of the JDK unless it needs to fall back.
+ */
+public class SgctlLauncher {
+
+    private static final long DAEMON_STARTUP_TIMEOUT_MS = 10000;
+
+    public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("daemon")) {
+            // Managing the daemon itself happens in this process
+            SgctlTool.main(args);
+            return;
+        }
+
+        File socketFile = DaemonProtocol.getSocketFile();
+        SocketChannel channel = connect(socketFile);
+
+        if (channel == null) {
+            channel = startDaemon(socketFile);
+        }
+
+        if (channel == null) {
+            SgctlTool.main(args);
+            return;
+        }
+
+        System.exit(forward(channel, args));
+    }
+
+    /**
+     * Forwards the command to the daemon and returns the exit code. The channel is closed afterwards.
+     */
+    public static int forward(SocketChannel channel, String... args) {
+        try (SocketChannel c = channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            byte[] buffer = new byte[8192];
+
+            DaemonProtocol.writeRequest(out, System.getProperty("user.dir"), args);
+
+            for (;;) {
+                byte type = in.readByte();
+                int length = in.readInt();
+
+                switch (type) {
+                case DaemonProtocol.STDOUT:
+                    copy(in, System.out, length, buffer);
+                    break;
+                case DaemonProtocol.STDERR:
+                    copy(in, System.err, length, buffer);
+                    break;
+                case DaemonProtocol.STDIN_REQUEST:
+                    int read = System.in.read(buffer, 0, Math.min(length, buffer.length));
+
+                    if (read == -1) {
+                        DaemonProtocol.writeFrame(out, DaemonProtocol.STDIN, -1);
+                    } else {
+                        DaemonProtocol.writeFrame(out, DaemonProtocol.STDIN, buffer, 0, read);
+                    }
+                    break;
+                case DaemonProtocol.EXIT:
+                    return length;
+                default:
+                    throw new IOException("Unexpected frame type " + type);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Lost connection to sgctl daemon: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    public static SocketChannel connect(File socketFile) {
+        if (!socketFile.exists()) {
+            return null;
+        }
+
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socketFile.toPath()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static SocketChannel startDaemon(File socketFile) {
+        File logFile = new File(socketFile.getAbsoluteFile().getParentFile(), "sgctl-daemon.log");
+        List<String> command = Arrays.asList(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath(), "-cp",
+                System.getProperty("java.class.path"), "com.floragunn.searchguard.sgctl.SgctlTool", "daemon", "--socket", socketFile.getPath());
+
+        logFile.getParentFile().mkdirs();
+
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(Redirect.appendTo(logFile)).start();
+            process.getOutputStream().close();
+
+            long deadline = System.currentTimeMillis() + DAEMON_STARTUP_TIMEOUT_MS;
+
+            while (System.currentTimeMillis() < deadline && process.isAlive()) {
+                SocketChannel channel = connect(socketFile);
+
+                if (channel != null) {
+                    return channel;
+                }
+
+                Thread.sleep(20);
+            }
+
+            // Another launcher might have won the race for starting the daemon
+            SocketChannel channel = connect(socketFile);
+
+            if (channel != null) {
+                return channel;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not start sgctl daemon: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        System.err.println("sgctl daemon did not start; see " + logFile + ". Executing command without daemon.");
+        return null;
+    }
+
+    private static void copy(DataInputStream in, PrintStream out, int length, byte[] buffer) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, 0, Math.min(length, buffer.length));
+
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+
+            out.write(buffer, 0, read);
+            length -= read;
+        }
+
+        out.flush();
+    }
+}
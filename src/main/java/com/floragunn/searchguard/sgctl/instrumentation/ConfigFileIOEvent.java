@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for reading or writing a configuration file.
+ */
+@Name("sgctl.ConfigFileIO")
+@Label("sgctl Config File I/O")
+@Category("sgctl")
+@Description("Reading or writing of a configuration file")
+public class ConfigFileIOEvent extends Event {
+
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+
+    @Label("Path")
+    private String path;
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    /**
+     * Returns a started event or null if the event is not enabled in any running recording.
+     */
+    public static ConfigFileIOEvent start(File file, String operation) {
+        ConfigFileIOEvent event = new ConfigFileIOEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.path = file.getPath();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    public void finish(long size) {
+        end();
+
+        if (shouldCommit()) {
+            this.size = size;
+            commit();
+        }
+    }
+}
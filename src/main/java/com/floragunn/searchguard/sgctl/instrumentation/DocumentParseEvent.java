@@ -0,0 +1,69 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for parsing a JSON or YAML document, either from an HTTP response or from a file.
+ */
+@Name("sgctl.DocumentParse")
+@Label("sgctl Document Parse")
+@Category("sgctl")
+@Description("Parsing of a JSON or YAML document")
+public class DocumentParseEvent extends Event {
+
+    @Label("Format")
+    private String format;
+
+    @Label("Source")
+    private String source;
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    /**
+     * Returns a started event or null if the event is not enabled in any running recording.
+     */
+    public static DocumentParseEvent start(Object format, String source) {
+        DocumentParseEvent event = new DocumentParseEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.format = String.valueOf(format);
+        event.source = source;
+        event.begin();
+        return event;
+    }
+
+    public void finish(long size) {
+        end();
+
+        if (shouldCommit()) {
+            this.size = size;
+            commit();
+        }
+    }
+}
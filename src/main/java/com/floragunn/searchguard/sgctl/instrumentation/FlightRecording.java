@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Manages a Java Flight Recorder recording started by the --jfr option. The recording uses the default JFR settings plus the sgctl events
+ * and is written to the given file when the command has finished.
+ */
+public class FlightRecording {
+
+    private static Recording current;
+    private static File currentFile;
+
+    public static synchronized void start(File file) throws IOException, ParseException {
+        if (current != null) {
+            current.close();
+        }
+
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("sgctl");
+        recording.enable(HttpRequestEvent.class);
+        recording.enable(DocumentParseEvent.class);
+        recording.enable(ConfigFileIOEvent.class);
+        recording.setDestination(file.toPath());
+        recording.start();
+
+        current = recording;
+        currentFile = file;
+    }
+
+    /**
+     * Stops the recording, if any, and writes it to the file given on start.
+     */
+    public static synchronized void finish(PrintStream out) {
+        Recording recording = current;
+
+        if (recording == null) {
+            return;
+        }
+
+        current = null;
+
+        try {
+            recording.stop();
+            out.println("Wrote flight recording to " + currentFile);
+        } catch (RuntimeException e) {
+            out.println("Error while writing flight recording to " + currentFile + ": " + e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for an HTTP request sent by sgctl. The event starts when the request is sent and ends when the response body has been read
+ * completely.
+ */
+@Name("sgctl.HttpRequest")
+@Label("sgctl HTTP Request")
+@Category("sgctl")
+@Description("HTTP request sent to the cluster")
+public class HttpRequestEvent extends Event {
+
+    @Label("Method")
+    private String method;
+
+    @Label("Path")
+    private String path;
+
+    @Label("Status")
+    private int status;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    private long bytesSent;
+
+    @Label("Bytes Received")
+    @DataAmount
+    private long bytesReceived;
+
+    /**
+     * Returns a started event or null if the event is not enabled in any running recording.
+     */
+    public static HttpRequestEvent start(String method, String path) {
+        HttpRequestEvent event = new HttpRequestEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.method = method;
+        event.path = path;
+        event.begin();
+        return event;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public void setBytesSent(long bytesSent) {
+        this.bytesSent = bytesSent;
+    }
+
+    public void addBytesReceived(long bytes) {
+        this.bytesReceived += bytes;
+    }
+
+    public void finish() {
+        end();
+
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.floragunn.codova.documents.DocWriter;
+
+/**
+ * Records the time spent in the phases of a command, as well as timings and transferred bytes of the HTTP requests. Recording is only active
+ * if it was enabled by the --timings option; otherwise, all methods are no-ops.
+ *
+ * As commands are executed one at a time per JVM, there is only one global recording. Commands can be nested, like the commands executed by
+ * the shell command; a nested command records into the recording of the enclosing command, if there is one. All methods are thread safe, so
+ * that commands which send requests concurrently can be instrumented as well.
+ */
+public class Timings {
+
+    public enum Format {
+        table, json
+    }
+
+    /**
+     * Only the first requests are listed individually in order to keep the report readable for commands sending many requests
+     */
+    private static final int MAX_LISTED_REQUESTS = 50;
+
+    private static final Phase NOOP_PHASE = new Phase(null, null);
+
+    private static volatile Timings current;
+    private static int commandCount;
+    private static int commandDepth;
+    private static int recordingDepth;
+
+    private final Format format;
+    private final long start = System.nanoTime();
+    private final Map<String, PhaseStats> phases = new LinkedHashMap<>();
+    private final List<Request> requests = new ArrayList<>();
+    private long requestCount;
+
+    private Timings(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Must be called before a command is executed. Discards any recording left over by a previous command, unless the command is nested into
+     * another command.
+     */
+    public static synchronized void commandStarted() {
+        commandDepth++;
+        commandCount++;
+
+        if (commandDepth == 1) {
+            current = null;
+        }
+    }
+
+    /**
+     * Starts a new recording. The time passed since the start of the JVM is recorded as first phase, if this is the first command executed by
+     * this JVM. If the enclosing command is already recording, its recording is kept.
+     */
+    public static synchronized void enable(Format format) {
+        if (current != null && recordingDepth < commandDepth) {
+            return;
+        }
+
+        current = new Timings(format);
+        recordingDepth = commandDepth;
+
+        if (commandCount <= 1) {
+            current.add("JVM startup and initialization", TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * Starts the measurement of a phase. The phase ends when the returned object is closed.
+     */
+    public static Phase phase(String name) {
+        Timings timings = current;
+        return timings != null ? new Phase(timings, name) : NOOP_PHASE;
+    }
+
+    /**
+     * Starts the measurement of an HTTP request. Returns null if recording is not enabled.
+     */
+    public static Request request(String method, String path) {
+        Timings timings = current;
+
+        if (timings == null) {
+            return null;
+        }
+
+        Request request = new Request(method, path);
+
+        synchronized (timings) {
+            timings.requestCount++;
+
+            if (timings.requests.size() < MAX_LISTED_REQUESTS) {
+                timings.requests.add(request);
+            }
+        }
+
+        return request;
+    }
+
+    /**
+     * Must be called after a command has been executed. Ends the recording and prints the report if recording was enabled by this command.
+     */
+    public static void finish(PrintStream out) {
+        Timings timings = null;
+
+        synchronized (Timings.class) {
+            if (current != null && recordingDepth == commandDepth) {
+                timings = current;
+                current = null;
+            }
+
+            if (commandDepth > 0) {
+                commandDepth--;
+            }
+        }
+
+        if (timings != null) {
+            timings.print(out, System.nanoTime() - timings.start);
+        }
+    }
+
+    /**
+     * Records a phase whose duration was measured by the caller.
+     */
+    public static void record(String name, long nanos) {
+        Timings timings = current;
+
+        if (timings != null) {
+            timings.add(name, nanos);
+        }
+    }
+
+    private synchronized void add(String name, long nanos) {
+        phases.computeIfAbsent(name, (k) -> new PhaseStats()).add(nanos);
+    }
+
+    private synchronized void print(PrintStream out, long totalNanos) {
+        if (format == Format.json) {
+            out.println(DocWriter.json().writeAsString(toBasicObject(totalNanos)));
+            return;
+        }
+
+        out.println();
+        out.println(String.format("%-40s %8s %12s", "Phase", "Count", "Total ms"));
+
+        for (Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+            out.println(String.format("%-40s %8d %12.2f", entry.getKey(), entry.getValue().count, toMillis(entry.getValue().nanos)));
+        }
+
+        out.println(String.format("%-40s %8s %12.2f", "Command (after startup)", "", toMillis(totalNanos)));
+
+        if (requestCount == 0) {
+            return;
+        }
+
+        out.println();
+        out.println(String.format("%-7s %-40s %6s %10s %10s %10s %12s %12s", "Method", "Path", "Status", "Total ms", "Upload ms", "Wait ms",
+                "Bytes sent", "Bytes recv."));
+
+        for (Request request : requests) {
+            out.println(String.format("%-7s %-40s %6s %10.2f %10.2f %10.2f %12d %12d", request.method, abbreviate(request.path, 40),
+                    request.status != 0 ? String.valueOf(request.status) : "-", toMillis(request.totalNanos), toMillis(request.uploadNanos),
+                    toMillis(request.waitNanos), request.bytesSent.get(), request.bytesReceived.get()));
+        }
+
+        if (requestCount > requests.size()) {
+            out.println("... " + (requestCount - requests.size()) + " more requests");
+        }
+    }
+
+    private Map<String, Object> toBasicObject(long totalNanos) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<Object> phaseList = new ArrayList<>();
+
+        for (Map.Entry<String, PhaseStats> entry : phases.entrySet()) {
+            Map<String, Object> phase = new LinkedHashMap<>();
+            phase.put("name", entry.getKey());
+            phase.put("count", entry.getValue().count);
+            phase.put("total_ms", toMillis(entry.getValue().nanos));
+            phaseList.add(phase);
+        }
+
+        List<Object> requestList = new ArrayList<>();
+
+        for (Request request : requests) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("method", request.method);
+            map.put("path", request.path);
+            map.put("status", request.status);
+            map.put("total_ms", toMillis(request.totalNanos));
+            map.put("upload_ms", toMillis(request.uploadNanos));
+            map.put("wait_ms", toMillis(request.waitNanos));
+            map.put("bytes_sent", request.bytesSent.get());
+            map.put("bytes_received", request.bytesReceived.get());
+            requestList.add(map);
+        }
+
+        result.put("total_ms", toMillis(totalNanos));
+        result.put("phases", phaseList);
+        result.put("request_count", requestCount);
+        result.put("requests", requestList);
+
+        return result;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    private static String abbreviate(String string, int length) {
+        return string.length() <= length ? string : string.substring(0, length - 3) + "...";
+    }
+
+    public static class Phase implements AutoCloseable {
+        private final Timings timings;
+        private final String name;
+        private final long start;
+
+        Phase(Timings timings, String name) {
+            this.timings = timings;
+            this.name = name;
+            this.start = timings != null ? System.nanoTime() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (timings != null) {
+                timings.add(name, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * The timings of a single HTTP request. The upload time is the time needed to send the request body; the wait time is the time between the
+     * end of the upload and the receipt of the response headers, which mostly consists of the processing time on the server. The total time
+     * also ends with the receipt of the response headers; the received bytes are counted while the response body is read.
+     */
+    public static class Request {
+        private final String method;
+        private final String path;
+        private final long start = System.nanoTime();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private volatile long uploadEnd;
+        private volatile long uploadNanos;
+        private volatile long waitNanos;
+        private volatile long totalNanos;
+        private volatile int status;
+
+        Request(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        public void uploadFinished(long uploadNanos) {
+            this.uploadNanos = uploadNanos;
+            this.uploadEnd = System.nanoTime();
+        }
+
+        public void responseReceived(int status, long requestStart) {
+            long now = System.nanoTime();
+            this.status = status;
+            this.waitNanos = now - (uploadEnd != 0 ? uploadEnd : requestStart);
+            this.totalNanos = now - start;
+        }
+
+        public AtomicLong getBytesSent() {
+            return bytesSent;
+        }
+
+        public AtomicLong getBytesReceived() {
+            return bytesReceived;
+        }
+    }
+
+    private static class PhaseStats {
+        private long count;
+        private long nanos;
+
+        void add(long nanos) {
+            this.count++;
+            this.nanos += nanos;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+
+/**
+ * Writes files in a way that readers never see partially written content: The content is written to a temporary file in the same directory,
+ * which is flushed to the disk and then replaces the target file by an atomic rename. If the target file already has the same content, it is
+ * not touched at all, so that file watchers and version control systems only see actual changes.
+ */
+public class AtomicFiles {
+
+    public static WriteResult write(File file, Content content) throws IOException {
+        return writeBinary(file, (out) -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            content.writeTo(writer);
+            writer.flush();
+        });
+    }
+
+    public static WriteResult writeBinary(File file, BinaryContent content) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        // The name of the temporary file must not look like a configuration file, as it might be seen by other processes
+        Path temp = target.resolveSibling("." + file.getName() + "." + UUID.randomUUID() + ".tmp");
+
+        try {
+            String hash;
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                HashingOutputStream out = new HashingOutputStream(Hashing.sha256(), new BufferedOutputStream(Channels.newOutputStream(channel)));
+                content.writeTo(out);
+                out.flush();
+
+                hash = out.hash().toString();
+
+                if (Files.isRegularFile(target) && Files.size(target) == channel.size()
+                        && hash.equals(com.google.common.io.Files.asByteSource(target.toFile()).hash(Hashing.sha256()).toString())) {
+                    return new WriteResult(hash, false);
+                }
+
+                // The content must be on the disk before the rename; otherwise, a crash could leave an empty file under the target name
+                channel.force(true);
+            }
+
+            if (Files.exists(target)) {
+                preservePermissions(target, temp);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            syncDirectory(target.getParent());
+
+            return new WriteResult(hash, true);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Makes the rename durable. Not all platforms support opening directories; there, the rename is left to the operating system.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform
+        }
+    }
+
+    private static void preservePermissions(Path source, Path target) throws IOException {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; the default permissions are used
+        }
+    }
+
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BinaryContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public static class WriteResult {
+        private final String hash;
+        private final boolean changed;
+
+        WriteResult(String hash, boolean changed) {
+            this.hash = hash;
+            this.changed = changed;
+        }
+
+        /**
+         * The SHA-256 hash of the content as hex string
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * False if the file already had the content and was not touched
+         */
+        public boolean isChanged() {
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.floragunn.searchguard.sgctl.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes structural differences between documents in their basic object representation, i.e. maps, lists and scalar values.
+ *
+ * In order to be efficient for large documents, a hash is computed once for each subtree. Subtrees with different hashes are known to be
+ * different; only subtrees with equal hashes need to be compared in detail. As each part of a document is compared at most once, the effort
+ * is linear in the size of the documents.
+ */
+public class DocDiff {
+
+    private final Map<Object, Long> hashes = new IdentityHashMap<>();
+
+    private DocDiff() {
+    }
+
+    /**
+     * Computes a JSON merge patch (RFC 7386) which transforms the source document into the target document. Only changed attributes are
+     * contained in the patch; removed attributes are represented by null values. Lists are always replaced as a whole.
+     *
+     * Returns an empty map if the documents are equal. Returns null if the difference cannot be expressed as merge patch; this is the case if
+     * the target document is not an object or if it sets changed attributes to null, as null values in a merge patch remove attributes.
+     */
+    public static Map<String, Object> mergePatch(Object source, Object target) {
+        return new DocDiff().createMergePatch(source, target);
+    }
+
+    /**
+     * Returns the added, removed and changed attributes of the target document relative to the source document. Lists are compared as a
+     * whole.
+     */
+    public static List<Change> diff(Object source, Object target) {
+        List<Change> result = new ArrayList<>();
+        new DocDiff().collectChanges("", source, target, result);
+        return result;
+    }
+
+    /**
+     * Compares documents in their basic object representation. Numbers are compared by value, as different parsers may yield different
+     * number types for the same value.
+     */
+    public static boolean equal(Object a, Object b) {
+        return new DocDiff().isEqual(a, b);
+    }
+
+    private Map<String, Object> createMergePatch(Object source, Object target) {
+        if (!(source instanceof Map) || !(target instanceof Map)) {
+            return null;
+        }
+
+        Map<?, ?> sourceMap = (Map<?, ?>) source;
+        Map<?, ?> targetMap = (Map<?, ?>) target;
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        for (Object key : sourceMap.keySet()) {
+            if (!targetMap.containsKey(key)) {
+                result.put(String.valueOf(key), null);
+            }
+        }
+
+        for (Map.Entry<?, ?> entry : targetMap.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            Object sourceValue = sourceMap.get(entry.getKey());
+            Object targetValue = entry.getValue();
+
+            if (sourceMap.containsKey(entry.getKey()) && isEqual(sourceValue, targetValue)) {
+                continue;
+            }
+
+            if (sourceValue instanceof Map && targetValue instanceof Map) {
+                Map<String, Object> nestedPatch = createMergePatch(sourceValue, targetValue);
+
+                if (nestedPatch == null) {
+                    return null;
+                }
+
+                result.put(key, nestedPatch);
+            } else if (containsNull(targetValue)) {
+                return null;
+            } else {
+                result.put(key, targetValue);
+            }
+        }
+
+        return result;
+    }
+
+    private void collectChanges(String path, Object source, Object target, List<Change> result) {
+        if (isEqual(source, target)) {
+            return;
+        }
+
+        if (!(source instanceof Map) || !(target instanceof Map)) {
+            result.add(new Change(Change.Type.CHANGED, path, source, target));
+            return;
+        }
+
+        Map<?, ?> sourceMap = (Map<?, ?>) source;
+        Map<?, ?> targetMap = (Map<?, ?>) target;
+
+        for (Map.Entry<?, ?> entry : sourceMap.entrySet()) {
+            String attributePath = path + "/" + escape(String.valueOf(entry.getKey()));
+
+            if (!targetMap.containsKey(entry.getKey())) {
+                result.add(new Change(Change.Type.REMOVED, attributePath, entry.getValue(), null));
+            } else {
+                collectChanges(attributePath, entry.getValue(), targetMap.get(entry.getKey()), result);
+            }
+        }
+
+        for (Map.Entry<?, ?> entry : targetMap.entrySet()) {
+            if (!sourceMap.containsKey(entry.getKey())) {
+                result.add(new Change(Change.Type.ADDED, path + "/" + escape(String.valueOf(entry.getKey())), null, entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Compares the hashes first; only if these are equal, the values are compared in detail.
+     */
+    private boolean isEqual(Object a, Object b) {
+        if (a == b) {
+            return true;
+        } else if (a == null || b == null) {
+            return false;
+        } else if (hash(a) != hash(b)) {
+            return false;
+        } else {
+            return deepEquals(a, b);
+        }
+    }
+
+    private static boolean deepEquals(Object a, Object b) {
+        if (a == b) {
+            return true;
+        } else if (a == null || b == null) {
+            return false;
+        } else if (a instanceof Number && b instanceof Number) {
+            return equalNumbers((Number) a, (Number) b);
+        } else if (a instanceof Map && b instanceof Map) {
+            Map<?, ?> mapA = (Map<?, ?>) a;
+            Map<?, ?> mapB = (Map<?, ?>) b;
+
+            if (mapA.size() != mapB.size()) {
+                return false;
+            }
+
+            for (Map.Entry<?, ?> entry : mapA.entrySet()) {
+                if (!mapB.containsKey(entry.getKey()) || !deepEquals(entry.getValue(), mapB.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+
+            return true;
+        } else if (a instanceof List && b instanceof List) {
+            List<?> listA = (List<?>) a;
+            List<?> listB = (List<?>) b;
+
+            if (listA.size() != listB.size()) {
+                return false;
+            }
+
+            Iterator<?> iterA = listA.iterator();
+            Iterator<?> iterB = listB.iterator();
+
+            while (iterA.hasNext()) {
+                if (!deepEquals(iterA.next(), iterB.next())) {
+                    return false;
+                }
+            }
+
+            return true;
+        } else {
+            return a.equals(b);
+        }
+    }
+
+    /**
+     * Computes a 64 bit hash which is consistent with deepEquals(). The hashes of maps and lists are cached, so that each subtree is only
+     * hashed once. For scalar values, the hash code of the value is used, as this is cached for strings; collisions are no problem, as
+     * equal hashes are always verified.
+     */
+    private long hash(Object value) {
+        if (value instanceof Map || value instanceof List) {
+            Long cached = hashes.get(value);
+
+            if (cached != null) {
+                return cached;
+            }
+
+            long result = 0;
+
+            if (value instanceof Map) {
+                // The sum makes the hash independent of the order of the attributes
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    result += mix(hash(String.valueOf(entry.getKey())) * 31 + hash(entry.getValue()));
+                }
+
+                result = mix(result ^ 0x4d4150L);
+            } else {
+                result = 0x4c495354L;
+
+                for (Object element : (List<?>) value) {
+                    result = mix(result * 31 + hash(element));
+                }
+            }
+
+            hashes.put(value, result);
+            return result;
+        } else if (value == null) {
+            return 0x6e756c6cL;
+        } else if (value instanceof Number) {
+            // Must be consistent with equalNumbers(), which compares integral numbers with other numbers as doubles. Thus, all numbers are
+            // hashed as doubles; different longs above 2^53 which map to the same double just collide.
+            return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else {
+            return mix(value.hashCode());
+        }
+    }
+
+    /**
+     * The finalizer of SplitMix64
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static boolean equalNumbers(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return a.longValue() == b.longValue();
+        } else {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    /**
+     * Escapes an attribute name for use in a JSON pointer (RFC 6901)
+     */
+    private static String escape(String attributeName) {
+        return attributeName.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Returns true if the value is null or an object with null attributes. Lists may contain null values, as they are replaced as a whole.
+     */
+    private static boolean containsNull(Object value) {
+        if (value == null) {
+            return true;
+        } else if (value instanceof Map) {
+            for (Object attributeValue : ((Map<?, ?>) value).values()) {
+                if (containsNull(attributeValue)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public static class Change {
+        public enum Type {
+            ADDED, REMOVED, CHANGED
+        }
+
+        private final Type type;
+        private final String path;
+        private final Object oldValue;
+        private final Object newValue;
+
+        Change(Type type, String path, Object oldValue, Object newValue) {
+            this.type = type;
+            this.path = path;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * The path of the changed attribute as JSON pointer. The empty string denotes the whole document.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public Object getOldValue() {
+            return oldValue;
+        }
+
+        public Object getNewValue() {
+            return newValue;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + path;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgctl.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects latencies of requests and computes percentiles from them. All recorded values are kept, so this is suitable for some million
+ * requests at most. Instances are thread safe.
+ */
+public class LatencyStats {
+
+    private long[] values = new long[1024];
+    private int count;
+    private boolean sorted = true;
+
+    public synchronized void record(long latencyNanos) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+
+        values[count++] = latencyNanos;
+        sorted = false;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the latency in nanoseconds below which the given percentage of the recorded latencies lies. Uses the nearest rank method.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        if (!sorted) {
+            Arrays.sort(values, 0, count);
+            sorted = true;
+        }
+
+        // The epsilon avoids that rounding errors of the percentile increase the rank
+        int rank = (int) Math.ceil(percentile * count / 100 - 1e-9);
+
+        return values[Math.min(Math.max(rank - 1, 0), count - 1)];
+    }
+
+    public synchronized long getMax() {
+        return getPercentile(100);
+    }
+
+    public synchronized long getMean() {
+        if (count == 0) {
+            return 0;
+        }
+
+        long sum = 0;
+
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+
+        return sum / count;
+    }
+
+    /**
+     * Returns a copy of these stats with additional values which compensate for coordinated omission, in the same way as HdrHistogram does:
+     * For each recorded latency which is larger than the expected interval between requests, the latencies the requests would have had which
+     * could not be sent during that time are added.
+     */
+    public synchronized LatencyStats correctedForCoordinatedOmission(long expectedIntervalNanos) {
+        LatencyStats result = new LatencyStats();
+
+        for (int i = 0; i < count; i++) {
+            long value = values[i];
+            result.record(value);
+
+            if (expectedIntervalNanos > 0) {
+                for (long missing = value - expectedIntervalNanos; missing >= expectedIntervalNanos; missing -= expectedIntervalNanos) {
+                    result.record(missing);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the usual percentiles in milliseconds
+     */
+    public synchronized Map<String, Object> toBasicObject() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", count);
+        result.put("mean_ms", toMillis(getMean()));
+        result.put("p50_ms", toMillis(getPercentile(50)));
+        result.put("p90_ms", toMillis(getPercentile(90)));
+        result.put("p99_ms", toMillis(getPercentile(99)));
+        result.put("p99_9_ms", toMillis(getPercentile(99.9)));
+        result.put("max_ms", toMillis(getMax()));
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "p50: " + toMillis(getPercentile(50)) + " ms; p90: " + toMillis(getPercentile(90)) + " ms; p99: " + toMillis(getPercentile(99))
+                + " ms; max: " + toMillis(getMax()) + " ms";
+    }
+
+    public static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
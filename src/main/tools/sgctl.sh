@@ -14,4 +14,9 @@ else
     DIR="$( cd "$( dirname "$(realpath "$SCRIPT_PATH")" )" && pwd -P)"
 fi
 
+if [ "$SGCTL_DAEMON" = "true" ]; then
+    # The launcher only forwards the call to the sgctl daemon; thus, it is tuned for a fast start rather than for throughput
+    exec java -Xshare:auto -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -cp "$DIR/*:$DIR/../../lib/*:$DIR/deps/*" com.floragunn.searchguard.sgctl.daemon.SgctlLauncher "$@"
+fi
+
 java -cp "$DIR/*:$DIR/../../lib/*:$DIR/deps/*" com.floragunn.searchguard.sgctl.SgctlTool "$@"
\ No newline at end of file
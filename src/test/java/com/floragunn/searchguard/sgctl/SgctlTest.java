@@ -31,6 +31,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.output.TeeOutputStream;
 import org.junit.jupiter.api.AfterAll;
@@ -45,6 +47,7 @@ import com.floragunn.codova.documents.DocReader;
 import com.floragunn.codova.documents.DocWriter;
 import com.floragunn.codova.documents.Format;
 import com.floragunn.fluent.collections.ImmutableSet;
+import com.floragunn.searchguard.sgctl.commands.ConfigManifest;
 import com.floragunn.searchguard.sgctl.util.YamlRewriter;
 import com.floragunn.searchguard.sgctl.util.YamlRewriter.RewriteResult;
 import com.floragunn.searchguard.test.GenericRestClient;
@@ -77,6 +80,8 @@ public class SgctlTest {
             .addNodes("CN=127.0.0.1,OU=SearchGuard,O=SearchGuard")
             .addAdminClients(singletonList("CN=admin-0.example.com,OU=SearchGuard,O=SearchGuard"), 10, "secret").build();
 
+    private final static Pattern ETAG_HEADER_PATTERN = Pattern.compile("^#\\s*.*etag:([a-z0-9\\.]+)");
+
     private static LocalCluster cluster;
 
     static String configDir;
@@ -254,6 +259,84 @@ public class SgctlTest {
         Assertions.assertEquals(1, rc);
     }
 
+    @Test
+    public void testPatchWithETagOfSingleType() throws Exception {
+        Path sgConfigDir = Files.createTempDirectory("sgctl-test-sgconfig");
+
+        int rc = SgctlTool.exec("get-config", "-o", sgConfigDir.toString(), "--type", "tenants", "--debug", "--sgctl-config-dir", configDir);
+        Assertions.assertEquals(0, rc);
+
+        File sgTenantsYml = new File(sgConfigDir.toFile(), "sg_tenants.yml");
+        Assertions.assertTrue(sgTenantsYml.exists(), Arrays.asList(sgConfigDir.toFile().list()).toString());
+        Assertions.assertNotNull(getETagFromHeader(sgTenantsYml), com.google.common.io.Files.asCharSource(sgTenantsYml, Charsets.UTF_8).read());
+
+        YamlRewriter yamlRewriter = new YamlRewriter(sgTenantsYml);
+        yamlRewriter.insertAtBeginning(
+                new YamlRewriter.Attribute("sgctl_test_patch_tenant", ImmutableMap.of("description", "Tenant added for testing sgctl")));
+        com.google.common.io.Files.asCharSink(sgTenantsYml, Charsets.UTF_8).write(yamlRewriter.rewrite().getYaml());
+
+        // The patch is sent with the etag of the file header in If-Match
+        rc = SgctlTool.exec("update-config", sgTenantsYml.toString(), "--patch", "--debug", "--sgctl-config-dir", configDir);
+        Assertions.assertEquals(0, rc);
+
+        try (GenericRestClient client = cluster.getAdminCertRestClient()) {
+            GenericRestClient.HttpResponse response = client.get("/_searchguard/config/tenants");
+
+            Assertions.assertEquals(200, response.getStatusCode(), response.getBody());
+            Assertions.assertNotNull(response.getBodyAsDocNode().get("content", "sgctl_test_patch_tenant"), response.getBody());
+        }
+
+        // The etag is outdated now; thus, the server must reject another patch
+        yamlRewriter = new YamlRewriter(sgTenantsYml);
+        yamlRewriter.insertAtBeginning(
+                new YamlRewriter.Attribute("sgctl_test_patch_tenant2", ImmutableMap.of("description", "Tenant added for testing sgctl")));
+        com.google.common.io.Files.asCharSink(sgTenantsYml, Charsets.UTF_8).write(yamlRewriter.rewrite().getYaml());
+
+        rc = SgctlTool.exec("update-config", sgTenantsYml.toString(), "--patch", "--debug", "--sgctl-config-dir", configDir);
+        Assertions.assertEquals(1, rc);
+    }
+
+    @Test
+    public void testGetConfigTypesAndUploadChangedOnly() throws Exception {
+        Path sgConfigDir = Files.createTempDirectory("sgctl-test-sgconfig");
+
+        int rc = SgctlTool.exec("get-config", "-o", sgConfigDir.toString(), "--type", "roles,rolesmapping", "--debug", "--sgctl-config-dir",
+                configDir);
+        Assertions.assertEquals(0, rc);
+
+        File sgRolesYml = new File(sgConfigDir.toFile(), "sg_roles.yml");
+        File sgRolesMappingYml = new File(sgConfigDir.toFile(), "sg_roles_mapping.yml");
+        ConfigManifest manifest = ConfigManifest.read(sgConfigDir.toFile());
+
+        Assertions.assertNotNull(getETagFromHeader(sgRolesYml));
+        Assertions.assertEquals(getETagFromHeader(sgRolesYml), manifest.get("roles").getEtag());
+        Assertions.assertNotNull(getETagFromHeader(sgRolesMappingYml));
+        Assertions.assertEquals(getETagFromHeader(sgRolesMappingYml), manifest.get("rolesmapping").getEtag());
+
+        YamlRewriter yamlRewriter = new YamlRewriter(sgRolesYml);
+        yamlRewriter.insertAtBeginning(new YamlRewriter.Attribute("sgctl_test_role", ImmutableMap.of("cluster_permissions", singletonList("*"))));
+        com.google.common.io.Files.asCharSink(sgRolesYml, Charsets.UTF_8).write(yamlRewriter.rewrite().getYaml());
+
+        // Only the roles are uploaded; the server accepts them with the etag recorded by get-config in If-Match
+        rc = SgctlTool.exec("update-config", sgConfigDir.toString(), "--changed-only", "--debug", "--sgctl-config-dir", configDir);
+        Assertions.assertEquals(0, rc);
+
+        try (GenericRestClient client = cluster.getAdminCertRestClient()) {
+            GenericRestClient.HttpResponse response = client.get("/_searchguard/config/roles");
+
+            Assertions.assertEquals(200, response.getStatusCode(), response.getBody());
+            Assertions.assertNotNull(response.getBodyAsDocNode().get("content", "sgctl_test_role"), response.getBody());
+        }
+
+        // The etag in the file header is outdated now; thus, the server must reject another upload
+        yamlRewriter = new YamlRewriter(sgRolesYml);
+        yamlRewriter.insertAtBeginning(new YamlRewriter.Attribute("sgctl_test_role2", ImmutableMap.of("cluster_permissions", singletonList("*"))));
+        com.google.common.io.Files.asCharSink(sgRolesYml, Charsets.UTF_8).write(yamlRewriter.rewrite().getYaml());
+
+        rc = SgctlTool.exec("update-config", sgConfigDir.toString(), "--changed-only", "--debug", "--sgctl-config-dir", configDir);
+        Assertions.assertEquals(1, rc);
+    }
+
     @Test
     public void uploadEmptyFile() throws Exception {
         Path sgConfigDir = Files.createTempDirectory("sgctl-test-sgconfig");
@@ -591,4 +674,10 @@ public class SgctlTest {
         int result = SgctlTool.exec("set", "authc", "debux", "--true", "--sgctl-config-dir", configDir, "--debug");
         Assertions.assertEquals(1, result);
     }
+
+    private static String getETagFromHeader(File file) throws Exception {
+        Matcher matcher = ETAG_HEADER_PATTERN.matcher(com.google.common.io.Files.asCharSource(file, Charsets.UTF_8).readFirstLine());
+
+        return matcher.find() ? matcher.group(1) : null;
+    }
 }
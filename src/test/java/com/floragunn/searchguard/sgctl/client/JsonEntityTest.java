@@ -0,0 +1,59 @@
+package com.floragunn.searchguard.sgctl.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+
+public class JsonEntityTest {
+
+    @Test
+    public void shouldSendSmallDocumentsWithContentLength() throws Exception {
+        JsonEntity entity = new JsonEntity(DocNode.of("a", "b"));
+
+        assertThat(entity.isChunked(), equalTo(false));
+        assertThat(entity.getContentLength(), equalTo((long) "{\"a\":\"b\"}".length()));
+        assertThat(write(entity), equalTo("{\"a\":\"b\"}"));
+    }
+
+    @Test
+    public void shouldSendLargeDocumentsChunked() throws Exception {
+        Map<String, Object> document = new LinkedHashMap<>();
+
+        for (int i = 0; i < 10000; i++) {
+            document.put("key_" + i, "value_" + i);
+        }
+
+        JsonEntity entity = new JsonEntity(document);
+
+        assertThat(entity.isChunked(), equalTo(true));
+        assertThat(entity.getContentLength(), equalTo(-1L));
+        assertThat(DocReader.json().read(write(entity)), equalTo(document));
+    }
+
+    @Test
+    public void shouldSendStreamingDocumentsChunked() throws Exception {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("internalusers", (JsonEntity.StreamingDocument) (writer) -> writer.write("{\"content\":{}}"));
+
+        JsonEntity entity = new JsonEntity(document);
+
+        assertThat(entity.isChunked(), equalTo(true));
+        assertThat(entity.getContentLength(), equalTo(-1L));
+        assertThat(write(entity), equalTo("{\"internalusers\":{\"content\":{}}}"));
+    }
+
+    private static String write(JsonEntity entity) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
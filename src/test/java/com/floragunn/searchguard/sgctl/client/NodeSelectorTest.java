@@ -0,0 +1,74 @@
+package com.floragunn.searchguard.sgctl.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.Test;
+
+public class NodeSelectorTest {
+
+    private final HttpHost node1 = new HttpHost("node1", 9200, "https");
+    private final HttpHost node2 = new HttpHost("node2", 9200, "https");
+    private final HttpHost node3 = new HttpHost("node3", 9200, "https");
+
+    @Test
+    public void shouldPreferFirstNodeInitially() {
+        NodeSelector selector = new NodeSelector(Arrays.asList(node1, node2, node3));
+
+        assertThat(selector.select(Collections.emptySet()), equalTo(node1));
+        assertThat(selector.select(Collections.singleton(node1)), equalTo(node2));
+        assertThat(selector.select(Arrays.asList(node1, node2, node3)), nullValue());
+    }
+
+    @Test
+    public void shouldPreferFastestNode() {
+        NodeSelector selector = new NodeSelector(Arrays.asList(node1, node2, node3));
+
+        selector.onSuccess(node1, 30_000_000);
+        selector.onSuccess(node2, 10_000_000);
+        selector.onSuccess(node3, 20_000_000);
+
+        assertThat(selector.select(Collections.emptySet()), equalTo(node2));
+    }
+
+    @Test
+    public void shouldAvoidFailedNode() {
+        NodeSelector selector = new NodeSelector(Arrays.asList(node1, node2));
+
+        selector.onSuccess(node1, 10_000_000);
+        selector.onSuccess(node2, 30_000_000);
+        selector.onFailure(node1);
+
+        assertThat(selector.isHealthy(node1), is(false));
+        assertThat(selector.select(Collections.emptySet()), equalTo(node2));
+
+        selector.onFailure(node2);
+
+        // All nodes failed; the node which failed first is tried first
+        assertThat(selector.select(Collections.emptySet()), equalTo(node1));
+    }
+
+    @Test
+    public void shouldSpreadConcurrentRequests() {
+        NodeSelector selector = new NodeSelector(Arrays.asList(node1, node2));
+
+        selector.onSuccess(node1, 10_000_000);
+        selector.onSuccess(node2, 15_000_000);
+
+        assertThat(selector.select(Collections.emptySet()), equalTo(node1));
+
+        selector.onStart(node1);
+
+        assertThat(selector.select(Collections.emptySet()), equalTo(node2));
+
+        selector.onSuccess(node1, 10_000_000);
+
+        assertThat(selector.select(Collections.emptySet()), equalTo(node1));
+    }
+}
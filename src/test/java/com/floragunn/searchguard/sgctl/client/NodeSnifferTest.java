@@ -0,0 +1,93 @@
+package com.floragunn.searchguard.sgctl.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.Test;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.Format;
+import com.google.common.net.InetAddresses;
+
+public class NodeSnifferTest {
+
+    @Test
+    public void shouldParseNodesResponse() throws Exception {
+        DocNode response = DocNode.parse(Format.JSON).from("{\"nodes\": {"
+                + "\"a\": {\"roles\": [\"data\", \"ingest\"], \"http\": {\"publish_address\": \"10.0.0.1:9200\"}},"
+                + "\"b\": {\"roles\": [\"master\"], \"http\": {\"publish_address\": \"10.0.0.2:9200\"}},"
+                + "\"c\": {\"roles\": [\"data\"], \"http\": {\"publish_address\": \"node3.example.com/10.0.0.3:9201\"}},"
+                + "\"d\": {\"roles\": [\"master\", \"voting_only\"], \"http\": {\"publish_address\": \"10.0.0.4:9200\"}},"
+                + "\"e\": {\"roles\": [\"ml\", \"remote_cluster_client\"], \"http\": {\"publish_address\": \"10.0.0.5:9200\"}},"
+                + "\"f\": {\"roles\": [\"data_hot\", \"master\"], \"http\": {\"publish_address\": \"10.0.0.6:9200\"}},"
+                + "\"g\": {\"roles\": [], \"http\": {\"publish_address\": \"10.0.0.7:9200\"}}}}");
+
+        List<HttpHost> hosts = NodeSniffer.parseNodesResponse(response, "es.example.com");
+
+        assertThat(hosts, contains(new HttpHost(InetAddresses.forString("10.0.0.1"), "es.example.com", 9200, "https"),
+                new HttpHost(InetAddresses.forString("10.0.0.3"), "node3.example.com", 9201, "https"),
+                new HttpHost(InetAddresses.forString("10.0.0.6"), "es.example.com", 9200, "https"),
+                new HttpHost(InetAddresses.forString("10.0.0.7"), "es.example.com", 9200, "https")));
+    }
+
+    @Test
+    public void shouldParsePublishAddress() {
+        HttpHost host = NodeSniffer.parsePublishAddress("10.0.0.1:9200", "es.example.com");
+        assertThat(host, equalTo(new HttpHost(InetAddresses.forString("10.0.0.1"), "es.example.com", 9200, "https")));
+        assertThat(host.getHostName(), equalTo("es.example.com"));
+
+        assertThat(NodeSniffer.parsePublishAddress("host/10.0.0.1:9200", "es.example.com"),
+                equalTo(new HttpHost(InetAddresses.forString("10.0.0.1"), "host", 9200, "https")));
+        assertThat(NodeSniffer.parsePublishAddress("/10.0.0.1:9200", "es.example.com"),
+                equalTo(new HttpHost(InetAddresses.forString("10.0.0.1"), "es.example.com", 9200, "https")));
+        assertThat(NodeSniffer.parsePublishAddress("10.0.0.1", "es.example.com"), nullValue());
+    }
+
+    @Test
+    public void shouldParseIpv6PublishAddress() {
+        HttpHost host = NodeSniffer.parsePublishAddress("[fe80::1]:9200", "es.example.com");
+        assertThat(host, equalTo(new HttpHost(InetAddresses.forString("fe80::1"), "es.example.com", 9200, "https")));
+
+        host = NodeSniffer.parsePublishAddress("[::1]:9200", null);
+        assertThat(host.getAddress(), equalTo(InetAddresses.forString("::1")));
+        assertThat(host.toURI(), equalTo("https://[::1]:9200"));
+
+        assertThat(NodeSniffer.parsePublishAddress("[::1]", "es.example.com"), nullValue());
+    }
+
+    @Test
+    public void shouldKeepAddressesInCache() throws Exception {
+        File cacheFile = Files.createTempFile("sgctl_nodes", ".yml").toFile();
+        cacheFile.deleteOnExit();
+
+        List<HttpHost> hosts = Arrays.asList(new HttpHost(InetAddresses.forString("10.0.0.1"), "es.example.com", 9200, "https"),
+                new HttpHost(InetAddresses.forString("fe80::1"), "es.example.com", 9200, "https"));
+        NodeSniffer.writeCache(cacheFile, hosts);
+
+        assertThat(NodeSniffer.readCache(cacheFile, Duration.ofMinutes(5)), equalTo(hosts));
+    }
+
+    @Test
+    public void shouldUseCacheOnlyWithinTtl() throws Exception {
+        File cacheFile = Files.createTempFile("sgctl_nodes", ".yml").toFile();
+        cacheFile.deleteOnExit();
+
+        List<HttpHost> hosts = Arrays.asList(new HttpHost("node1", 9200, "https"), new HttpHost("node2", 9201, "https"));
+        NodeSniffer.writeCache(cacheFile, hosts);
+
+        assertThat(NodeSniffer.readCache(cacheFile, Duration.ofMinutes(5)), equalTo(hosts));
+
+        cacheFile.setLastModified(System.currentTimeMillis() - Duration.ofMinutes(10).toMillis());
+
+        assertThat(NodeSniffer.readCache(cacheFile, Duration.ofMinutes(5)), nullValue());
+    }
+}
@@ -0,0 +1,44 @@
+package com.floragunn.searchguard.sgctl.client;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.time.Duration;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void shouldGrowDelayExponentiallyWithJitter() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, Duration.ofMillis(100), Duration.ofMillis(300), 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.getDelayMillis(1, null), is(both(greaterThanOrEqualTo(50L)).and(lessThanOrEqualTo(100L))));
+            assertThat(retryPolicy.getDelayMillis(2, null), is(both(greaterThanOrEqualTo(100L)).and(lessThanOrEqualTo(200L))));
+            assertThat(retryPolicy.getDelayMillis(4, null), is(both(greaterThanOrEqualTo(150L)).and(lessThanOrEqualTo(300L))));
+        }
+
+        assertThat(retryPolicy.canRetry(4), is(true));
+        assertThat(retryPolicy.canRetry(5), is(false));
+    }
+
+    @Test
+    public void shouldHonourRetryAfterHeader() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(100), Duration.ofSeconds(5), 0.5);
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+
+        response.setHeader("Retry-After", "2");
+        assertThat(retryPolicy.getDelayMillis(1, response), equalTo(2000L));
+
+        response.setHeader("Retry-After", "120");
+        assertThat(retryPolicy.getDelayMillis(1, response), equalTo(5000L));
+    }
+}
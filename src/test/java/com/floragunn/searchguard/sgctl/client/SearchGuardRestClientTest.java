@@ -25,18 +25,30 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.verify;
@@ -227,4 +239,234 @@ public class SearchGuardRestClientTest {
         assertThat(contentTypeHeader, notNullValue());
         assertThat(contentTypeHeader.getValue(), containsString("application/json-patch+json"));
     }
+
+    @Test
+    public void shouldCompleteFutureWhenAsyncGetUserSucceeds() throws Exception {
+        String json = "{\"data\":{\"description\":\"desc\",\"search_guard_roles\":[\"role1\"]}}";
+        prepareHttpResponse(200, json, "application/json; charset=UTF-8", "etag-123");
+
+        try (SearchGuardAsyncRestClient asyncClient = new SearchGuardAsyncRestClient(restClient, Executors.newSingleThreadExecutor())) {
+            GetUserResponse resp = asyncClient.getUser("john").get();
+
+            assertThat(resp.getDescription(), equalTo("desc"));
+            assertThat(resp.getETag(), equalTo("etag-123"));
+        }
+    }
+
+    @Test
+    public void shouldCompleteFutureExceptionallyWhenAsyncGetUserNotFound() throws Exception {
+        prepareHttpResponse(404, "{}", "application/json; charset=UTF-8", null);
+
+        try (SearchGuardAsyncRestClient asyncClient = new SearchGuardAsyncRestClient(restClient, Executors.newSingleThreadExecutor())) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+                asyncClient.getUser("nonexistent").get();
+            });
+            assertThat(ex.getCause(), instanceOf(ApiException.class));
+        }
+    }
+
+    @Test
+    public void shouldStreamResponseBodyToOutputStream() throws Exception {
+        String json = "{\"data\":{\"description\":\"desc\"}}";
+        prepareHttpResponse(200, json, "application/json; charset=UTF-8", null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        restClient.get("/_searchguard/internal_users/john").writeBodyTo(out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8), equalTo(json));
+    }
+
+    @Test
+    public void shouldThrowApiExceptionInsteadOfStreamingErrorResponse() throws Exception {
+        prepareHttpResponse(404, "{\"error\":\"not here\"}", "application/json; charset=UTF-8", null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ApiException ex = assertThrows(ApiException.class, () -> {
+            restClient.get("/_searchguard/internal_users/john").writeBodyTo(out);
+        });
+        assertThat(ex.getMessage(), containsString("not here"));
+        assertThat(out.size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldDecompressGzipResponse() throws Exception {
+        String json = "{\"message\":\"compressed\"}";
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(compressed.toByteArray()));
+        entity.setContentType("application/json");
+        entity.setContentEncoding("gzip");
+
+        AtomicReference<HttpEntity> currentEntity = new AtomicReference<>(entity);
+        when(httpResponse.getEntity()).thenAnswer(invocation -> currentEntity.get());
+        Mockito.doAnswer(invocation -> {
+            currentEntity.set(invocation.getArgument(0));
+            return null;
+        }).when(httpResponse).setEntity(Mockito.any(HttpEntity.class));
+        when(httpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+        when(httpClient.execute(eq(httpHost), Mockito.any(HttpRequest.class))).thenReturn(httpResponse);
+
+        BasicResponse resp = restClient.getComponentState(null, false);
+
+        assertThat(resp.getMessage(), equalTo("compressed"));
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).execute(eq(httpHost), captor.capture());
+        assertThat(captor.getValue().getFirstHeader("Accept-Encoding").getValue(), equalTo("gzip"));
+    }
+
+    @Test
+    public void shouldCompressRequestBodyAboveThreshold() throws Exception {
+        prepareHttpResponse(200, "{\"message\":\"ok\"}", "application/json; charset=UTF-8", null);
+
+        Map<String, Object> newUser = new HashMap<>();
+        newUser.put("description", "a rather long description which exceeds the threshold");
+
+        restClient.compression(true, 16).putUser("bob", newUser);
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient).execute(eq(httpHost), captor.capture());
+        HttpEntity entity = ((org.apache.http.HttpEntityEnclosingRequest) captor.getValue()).getEntity();
+        assertThat(entity.getContentEncoding().getValue(), equalTo("gzip"));
+
+        try (GZIPInputStream in = new GZIPInputStream(entity.getContent())) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8), containsString("exceeds the threshold"));
+        }
+    }
+
+    @Test
+    public void shouldFailOverToNextNodeWhenConnectionFails() throws Exception {
+        HttpHost failingHost = new HttpHost("failing", 9200, "http");
+        SearchGuardRestClient client = new SearchGuardRestClient(new NodeSelector(Arrays.asList(failingHost, httpHost)), tlsConfig, httpClient);
+        prepareHttpResponse(200, "{\"message\":\"ok\"}", "application/json; charset=UTF-8", null);
+        when(httpClient.execute(eq(failingHost), Mockito.any(HttpRequest.class))).thenThrow(new java.net.ConnectException("Connection refused"));
+
+        BasicResponse resp = client.deleteUser("bob");
+
+        assertThat(resp.getMessage(), equalTo("ok"));
+        verify(httpClient).execute(eq(failingHost), Mockito.any(HttpRequest.class));
+        verify(httpClient).execute(eq(httpHost), Mockito.any(HttpRequest.class));
+    }
+
+    @Test
+    public void shouldNotFailOverModifyingRequestWhenResponseTimesOut() throws Exception {
+        HttpHost failingHost = new HttpHost("failing", 9200, "http");
+        SearchGuardRestClient client = new SearchGuardRestClient(new NodeSelector(Arrays.asList(failingHost, httpHost)), tlsConfig, httpClient);
+        when(httpClient.execute(eq(failingHost), Mockito.any(HttpRequest.class))).thenThrow(new java.net.SocketTimeoutException("Read timed out"));
+
+        assertThrows(FailedConnectionException.class, () -> client.deleteUser("bob"));
+
+        verify(httpClient).execute(eq(failingHost), Mockito.any(HttpRequest.class));
+        verify(httpClient, Mockito.never()).execute(eq(httpHost), Mockito.any(HttpRequest.class));
+    }
+
+    @Test
+    public void shouldNotFailOverGatewayTimeout() throws Exception {
+        HttpHost failingHost = new HttpHost("failing", 9200, "http");
+        SearchGuardRestClient client = new SearchGuardRestClient(new NodeSelector(Arrays.asList(failingHost, httpHost)), tlsConfig, httpClient);
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream("{\"error\":\"gateway timeout\"}".getBytes(StandardCharsets.UTF_8)));
+        entity.setContentType("application/json; charset=UTF-8");
+        when(httpResponse.getEntity()).thenReturn(entity);
+        when(httpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 504, "Gateway Timeout"));
+        when(httpClient.execute(eq(failingHost), Mockito.any(HttpRequest.class))).thenReturn(httpResponse);
+
+        assertThrows(ServiceUnavailableException.class, () -> client.getUser("bob"));
+
+        verify(httpClient).execute(eq(failingHost), Mockito.any(HttpRequest.class));
+        verify(httpClient, Mockito.never()).execute(eq(httpHost), Mockito.any(HttpRequest.class));
+    }
+
+    @Test
+    public void shouldRetryServiceUnavailableResponse() throws Exception {
+        CloseableHttpResponse unavailableResponse = Mockito.mock(CloseableHttpResponse.class);
+        when(unavailableResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 503, "Service Unavailable"));
+        when(unavailableResponse.getFirstHeader("Retry-After")).thenReturn(new BasicHeader("Retry-After", "0"));
+
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream("{\"message\":\"ok\"}".getBytes(StandardCharsets.UTF_8)));
+        entity.setContentType("application/json; charset=UTF-8");
+        when(httpResponse.getEntity()).thenReturn(entity);
+        when(httpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+        when(httpClient.execute(eq(httpHost), Mockito.any(HttpRequest.class))).thenReturn(unavailableResponse, httpResponse);
+
+        BasicResponse resp = restClient.deleteUser("bob");
+
+        assertThat(resp.getMessage(), equalTo("ok"));
+        verify(httpClient, Mockito.times(2)).execute(eq(httpHost), Mockito.any(HttpRequest.class));
+    }
+
+    @Test
+    public void shouldServeNotModifiedResponseFromCache() throws Exception {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream("{\"message\":\"cached\"}".getBytes(StandardCharsets.UTF_8)));
+        entity.setContentType("application/json; charset=UTF-8");
+
+        AtomicReference<HttpEntity> currentEntity = new AtomicReference<>(entity);
+        when(httpResponse.getEntity()).thenAnswer(invocation -> currentEntity.get());
+        Mockito.doAnswer(invocation -> {
+            currentEntity.set(invocation.getArgument(0));
+            return null;
+        }).when(httpResponse).setEntity(Mockito.any(HttpEntity.class));
+        when(httpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+        when(httpResponse.containsHeader("ETag")).thenReturn(true);
+        when(httpResponse.getFirstHeader("ETag")).thenReturn(new BasicHeader("ETag", "etag-1"));
+
+        CloseableHttpResponse notModifiedResponse = Mockito.mock(CloseableHttpResponse.class);
+        when(notModifiedResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 304, "Not Modified"));
+        when(httpClient.execute(eq(httpHost), Mockito.any(HttpRequest.class))).thenReturn(httpResponse, notModifiedResponse);
+
+        File cacheDir = new File(Files.createTempDirectory("sgctl-test-cache").toFile(), "cache");
+        restClient.responseCache(new ResponseCache(cacheDir, 1024 * 1024));
+
+        assertThat(restClient.getComponentState(null, false).getMessage(), equalTo("cached"));
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDir.toPath())), equalTo("rwx------"));
+        assertThat(cacheDir.listFiles(), arrayWithSize(1));
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheDir.listFiles()[0].toPath())), equalTo("rw-------"));
+
+        BasicResponse resp = restClient.getComponentState(null, false);
+
+        assertThat(resp.getMessage(), equalTo("cached"));
+        assertThat(resp.getETag(), equalTo("etag-1"));
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, Mockito.times(2)).execute(eq(httpHost), captor.capture());
+        assertThat(captor.getAllValues().get(0).getFirstHeader("If-None-Match"), nullValue());
+        assertThat(captor.getAllValues().get(1).getFirstHeader("If-None-Match").getValue(), equalTo("etag-1"));
+    }
+
+    @Test
+    public void shouldNotCacheResponsesExceedingMaximumSize() throws Exception {
+        AtomicReference<HttpEntity> currentEntity = new AtomicReference<>();
+        when(httpResponse.getEntity()).thenAnswer(invocation -> currentEntity.get());
+        Mockito.doAnswer(invocation -> {
+            currentEntity.set(invocation.getArgument(0));
+            return null;
+        }).when(httpResponse).setEntity(Mockito.any(HttpEntity.class));
+        when(httpResponse.getStatusLine()).thenReturn(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+        when(httpResponse.containsHeader("ETag")).thenReturn(true);
+        when(httpResponse.getFirstHeader("ETag")).thenReturn(new BasicHeader("ETag", "etag-1"));
+        when(httpClient.execute(eq(httpHost), Mockito.any(HttpRequest.class))).thenAnswer(invocation -> {
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(new ByteArrayInputStream("{\"message\":\"a message which is larger than the cache\"}".getBytes(StandardCharsets.UTF_8)));
+            entity.setContentType("application/json; charset=UTF-8");
+            currentEntity.set(entity);
+            return httpResponse;
+        });
+
+        File cacheDir = Files.createTempDirectory("sgctl-test-cache").toFile();
+        restClient.responseCache(new ResponseCache(cacheDir, 20));
+
+        assertThat(restClient.getComponentState(null, false).getMessage(), equalTo("a message which is larger than the cache"));
+        assertThat(restClient.getComponentState(null, false).getMessage(), equalTo("a message which is larger than the cache"));
+
+        ArgumentCaptor<HttpRequest> captor = ArgumentCaptor.forClass(HttpRequest.class);
+        verify(httpClient, Mockito.times(2)).execute(eq(httpHost), captor.capture());
+        assertThat(captor.getAllValues().get(1).getFirstHeader("If-None-Match"), nullValue());
+        assertThat(cacheDir.list(), arrayWithSize(0));
+    }
 }
@@ -0,0 +1,50 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+
+public class ConfigBundleTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-bundle");
+        File file = dir.resolve("config" + ConfigBundle.FILE_EXTENSION).toFile();
+
+        DocNode roles = DocNode.of("test_role", DocNode.of("cluster_permissions", Arrays.asList("*")));
+        DocNode tenants = DocNode.of("test_tenant", DocNode.of("description", "Test"));
+
+        ConfigBundle.write(file, new GetBulkConfigResponse("1.0", DocNode.of("roles", DocNode.of("content", roles, "_etag", "roles.1", "exists", true),
+                "tenants", DocNode.of("content", tenants, "_etag", "tenants.1", "exists", true), "blocks",
+                DocNode.of("content", DocNode.EMPTY, "exists", false))), "cluster1");
+
+        Assertions.assertTrue(ConfigBundle.isBundle(file));
+
+        ConfigBundle bundle = ConfigBundle.read(file);
+
+        Assertions.assertEquals("1.0", bundle.getSearchGuardVersion());
+        Assertions.assertEquals("cluster1", bundle.getClusterName());
+        Assertions.assertEquals(Arrays.asList(ConfigType.ROLES, ConfigType.TENANTS), bundle.getConfigTypes());
+        Assertions.assertEquals("tenants.1", bundle.getEtag(ConfigType.TENANTS));
+        Assertions.assertEquals(tenants.toBasicObject(), bundle.getContent(ConfigType.TENANTS).toBasicObject());
+        Assertions.assertEquals(roles.toBasicObject(), bundle.getContent(ConfigType.ROLES).toBasicObject());
+        Assertions.assertNull(bundle.getContent(ConfigType.BLOCKS));
+    }
+
+    @Test
+    public void testIsBundle() throws Exception {
+        Path file = Files.createTempFile("sgctl-test-bundle", ".yml");
+        Files.writeString(file, "# sg_roles\ntest_role: {}\n");
+
+        Assertions.assertFalse(ConfigBundle.isBundle(file.toFile()));
+        Assertions.assertFalse(ConfigBundle.isBundle(file.getParent().toFile()));
+    }
+}
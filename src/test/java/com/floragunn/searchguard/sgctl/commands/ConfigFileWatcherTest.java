@@ -0,0 +1,44 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConfigFileWatcherTest {
+
+    @Test
+    public void testDirectory() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-watch");
+        Files.writeString(dir.resolve("sg_roles.yml"), "a: {}\n");
+
+        try (ConfigFileWatcher watcher = new ConfigFileWatcher(dir.toFile(), null, 200)) {
+            Files.writeString(dir.resolve("sg_roles.yml"), "b: {}\n");
+            Files.writeString(dir.resolve("sg_tenants.yml"), "c: {}\n");
+            Files.writeString(dir.resolve("other.txt"), "x");
+            Files.writeString(dir.resolve("sg_roles.yml"), "d: {}\n");
+
+            List<File> changedFiles = watcher.awaitChanges();
+
+            Assertions.assertEquals(Arrays.asList("sg_roles.yml", "sg_tenants.yml"), changedFiles.stream().map(File::getName).sorted().toList());
+        }
+    }
+
+    @Test
+    public void testFiles() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-watch");
+        File roles = dir.resolve("sg_roles.yml").toFile();
+        Files.writeString(roles.toPath(), "a: {}\n");
+
+        try (ConfigFileWatcher watcher = new ConfigFileWatcher(null, Arrays.asList(roles), 200)) {
+            Files.writeString(dir.resolve("sg_tenants.yml"), "c: {}\n");
+            Files.writeString(roles.toPath(), "b: {}\n");
+
+            Assertions.assertEquals(Arrays.asList(roles.getAbsoluteFile()), watcher.awaitChanges());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import com.floragunn.codova.documents.DocNode;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+
+public class DiffConfigCommandTest {
+    @RegisterExtension
+    private final static WireMockExtension wm = MockCluster.createWireMock();
+
+    private static String configDir;
+
+    @BeforeAll
+    public static void connect() throws Exception {
+        configDir = MockCluster.connect(wm);
+    }
+
+    @Test
+    public void testDiffConfig() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-diff-config");
+        Files.writeString(dir.resolve("sg_tenants.yml"), "# sg_tenants v:1.0 etag:tenants.1\ntest_tenant:\n  description: \"Changed\"\n"
+                + "new_tenant:\n  description: \"New\"\n");
+
+        wm.stubFor(get("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("tenants", DocNode.of("content", DocNode.of("test_tenant", DocNode.of("description", "Test"), "old_tenant",
+                        DocNode.of("description", "Old")), "_etag", "tenants.1", "exists", true)).toJsonString())));
+
+        MockCluster.Result result = MockCluster.exec("diff-config", dir.toString(), "--exit-code", "--sgctl-config-dir", configDir,
+                "--skip-connection-check");
+
+        Assertions.assertEquals(2, result.exitCode, result.output);
+        Assertions.assertTrue(result.output.contains("~ /test_tenant/description: \"Test\" -> \"Changed\""), result.output);
+        Assertions.assertTrue(result.output.contains("- /old_tenant: {\"description\":\"Old\"}"), result.output);
+        Assertions.assertTrue(result.output.contains("+ /new_tenant: {\"description\":\"New\"}"), result.output);
+    }
+}
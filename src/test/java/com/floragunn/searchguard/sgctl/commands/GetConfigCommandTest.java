@@ -0,0 +1,90 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.searchguard.sgctl.SgctlTool;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static java.util.Collections.singletonList;
+
+public class GetConfigCommandTest {
+    @RegisterExtension
+    private final static WireMockExtension wm = MockCluster.createWireMock();
+
+    private static String configDir;
+
+    @BeforeAll
+    public static void connect() throws Exception {
+        configDir = MockCluster.connect(wm);
+    }
+
+    @Test
+    public void testGetConfigTypes() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-get-config");
+        ConfigManifest manifest = new ConfigManifest();
+        manifest.put("tenants", "sg_tenants.yml", "# sg_tenants v:1.0 etag:tenants.1\n", "tenants.1");
+        manifest.write(dir.toFile());
+
+        wm.stubFor(get("/_searchguard/config/roles").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withHeader("ETag", "roles.2")
+                .withBody(DocNode.of("content", DocNode.of("test_role", DocNode.of("cluster_permissions", singletonList("*")))).toJsonString())));
+        wm.stubFor(get("/_searchguard/config/rolesmapping").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withHeader("ETag", "rolesmapping.2")
+                .withBody(DocNode.of("content", DocNode.of("test_role", DocNode.of("users", singletonList("alice")))).toJsonString())));
+
+        int result = SgctlTool.exec("get-config", "-o", dir.toString(), "--type", "roles,rolesmapping", "--sgctl-config-dir", configDir,
+                "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        wm.verify(0, getRequestedFor(urlEqualTo("/_searchguard/config")));
+
+        Assertions.assertTrue(Files.readString(dir.resolve("sg_roles.yml")).startsWith("# sg_roles"));
+        Assertions.assertTrue(Files.readString(dir.resolve("sg_roles_mapping.yml")).contains("alice"));
+        Assertions.assertFalse(Files.exists(dir.resolve("sg_tenants.yml")));
+
+        ConfigManifest updatedManifest = ConfigManifest.read(dir.toFile());
+        Assertions.assertEquals("roles.2", updatedManifest.get("roles").getEtag());
+        Assertions.assertEquals("rolesmapping.2", updatedManifest.get("rolesmapping").getEtag());
+        Assertions.assertEquals("tenants.1", updatedManifest.get("tenants").getEtag());
+
+        result = SgctlTool.exec("get-config", "-o", dir.toString(), "--type", "roles,unknown", "--sgctl-config-dir", configDir,
+                "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+    }
+
+    @Test
+    public void testGetConfigTypesPartialFailure() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-get-config");
+        ConfigManifest manifest = new ConfigManifest();
+        manifest.put("roles", "sg_roles.yml", "# sg_roles v:1.0 etag:roles.1\n", "roles.1");
+        manifest.put("tenants", "sg_tenants.yml", "# sg_tenants v:1.0 etag:tenants.1\n", "tenants.1");
+        manifest.write(dir.toFile());
+
+        wm.stubFor(get("/_searchguard/config/roles").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withHeader("ETag", "roles.3")
+                .withBody(DocNode.of("content", DocNode.of("test_role", DocNode.of("cluster_permissions", singletonList("*")))).toJsonString())));
+        wm.stubFor(get("/_searchguard/config/tenants").willReturn(aResponse().withStatus(500).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("status", 500, "error", "Internal error").toJsonString())));
+
+        int result = SgctlTool.exec("get-config", "-o", dir.toString(), "--type", "roles,tenants", "--sgctl-config-dir", configDir,
+                "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+
+        // The file which was written must be recorded in the manifest, even though another type failed
+        String roles = Files.readString(dir.resolve("sg_roles.yml"));
+        ConfigManifest updatedManifest = ConfigManifest.read(dir.toFile());
+        Assertions.assertEquals("roles.3", updatedManifest.get("roles").getEtag());
+        Assertions.assertTrue(updatedManifest.isUnchanged("roles", ConfigManifest.hash(roles), "roles.3"));
+        Assertions.assertEquals("tenants.1", updatedManifest.get("tenants").getEtag());
+    }
+}
@@ -0,0 +1,62 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.floragunn.codova.validation.ConfigValidationException;
+import com.floragunn.codova.validation.ValidationErrors;
+import com.floragunn.codova.validation.errors.ValidationError;
+import com.floragunn.searchguard.sgctl.client.api.ConfigType;
+
+public class LocalConfigFileTest {
+
+    @Test
+    public void testReadAllOrder() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-read-all");
+        Files.writeString(dir.resolve("sg_roles.yml"), "# sg_roles v:1.0\ntest_role:\n  cluster_permissions:\n  - \"*\"\n");
+        Files.writeString(dir.resolve("sg_tenants.yml"), "test_tenant: [\n");
+        Files.writeString(dir.resolve("sg_roles_mapping.yml"), "# sg_rolesmapping v:1.0\ntest_role:\n  users:\n  - \"alice\"\n");
+        Files.writeString(dir.resolve("sg_action_groups.yml"), "# sg_actiongroups v:1.0\ntest_group:\n  allowed_actions:\n  - \"*\"\n");
+        Files.writeString(dir.resolve("more_roles.yml"), "# sg_roles v:1.0\nother_role:\n  cluster_permissions:\n  - \"*\"\n");
+
+        List<File> files = Arrays.asList(dir.resolve("sg_action_groups.yml").toFile(), dir.resolve("sg_tenants.yml").toFile(),
+                dir.resolve("sg_roles.yml").toFile(), dir.resolve("missing.yml").toFile(), dir.resolve("sg_roles_mapping.yml").toFile(),
+                dir.resolve("more_roles.yml").toFile());
+
+        // The files are read in parallel; thus, the order is checked several times
+        for (int i = 0; i < 20; i++) {
+            RecordingValidationErrors validationErrors = new RecordingValidationErrors();
+            Map<ConfigType, LocalConfigFile> result = LocalConfigFile.readAll(files, validationErrors);
+
+            Assertions.assertEquals(Arrays.asList(ConfigType.ACTIONGROUPS, ConfigType.ROLES, ConfigType.ROLESMAPPING),
+                    new ArrayList<>(result.keySet()));
+            Assertions.assertEquals(dir.resolve("sg_roles.yml").toFile(), result.get(ConfigType.ROLES).getFile());
+            Assertions.assertEquals(Arrays.asList(dir.resolve("sg_tenants.yml").toString(), dir.resolve("missing.yml").toString(),
+                    dir.resolve("more_roles.yml").toString()), validationErrors.attributes);
+        }
+    }
+
+    private static class RecordingValidationErrors extends ValidationErrors {
+        private final List<String> attributes = new ArrayList<>();
+
+        @Override
+        public ValidationErrors add(ValidationError validationError) {
+            attributes.add(validationError.getAttribute());
+            return super.add(validationError);
+        }
+
+        @Override
+        public ValidationErrors add(String attribute, ConfigValidationException configValidationException) {
+            attributes.add(attribute);
+            return super.add(attribute, configValidationException);
+        }
+    }
+}
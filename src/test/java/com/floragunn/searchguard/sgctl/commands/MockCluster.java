@@ -0,0 +1,97 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import com.floragunn.searchguard.sgctl.SgctlTool;
+import com.floragunn.searchguard.test.helper.certificate.TestCertificate;
+import com.floragunn.searchguard.test.helper.certificate.TestCertificates;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import org.junit.jupiter.api.Assertions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static java.util.Collections.singletonList;
+
+/**
+ * A WireMock server which is reachable via HTTPS using test certificates, together with the sgctl configuration for connecting to it. Tests
+ * register the WireMock extension returned by createWireMock() and connect to it using connect().
+ */
+class MockCluster {
+    private final static TestCertificates testCertificates = TestCertificates.builder()
+            .ca("CN=localhost,OU=SearchGuard,O=SearchGuard")
+            .addAdminClients(singletonList("CN=admin-0.example.com,OU=SearchGuard,O=SearchGuard"), 10, "secret").build();
+    private final static TestCertificate wmCert = testCertificates.create("CN=localhost,OU=SearchGuard,O=SearchGuard");
+
+    static WireMockExtension createWireMock() {
+        return WireMockExtension.newInstance().options(wireMockConfig()
+                .httpDisabled(true)
+                .dynamicHttpsPort()
+                .keystorePath(wmCert.getJksFile().getPath())
+                .keystorePassword(wmCert.getPrivateKeyPassword())
+                .keyManagerPassword(wmCert.getPrivateKeyPassword())
+        ).build();
+    }
+
+    /**
+     * Creates a new sgctl configuration directory with a cluster configuration for the given WireMock server. Returns the path of the directory.
+     */
+    static String connect(WireMockExtension wm) throws Exception {
+        String configDir = Files.createTempDirectory("sgctl-test-config").toString();
+        connect(wm, configDir, null);
+        return configDir;
+    }
+
+    /**
+     * Adds a cluster configuration for the given WireMock server with the given ID to the given sgctl configuration directory. If the ID is
+     * null, the default ID is used.
+     */
+    static void connect(WireMockExtension wm, String configDir, String clusterId) throws Exception {
+        List<String> args = new ArrayList<>(Arrays.asList("connect", "-h", "localhost", "-p", String.valueOf(wm.getHttpsPort()),
+                "--cert", testCertificates.getAdminCertificate().getCertificateFile().getPath(),
+                "--key", testCertificates.getAdminCertificate().getPrivateKeyFile().getPath(),
+                "--key-pass", "secret",
+                "--ca-cert", testCertificates.getCaCertificate().getCertificateFile().getPath(),
+                "--sgctl-config-dir", configDir, "--skip-connection-check"));
+
+        if (clusterId != null) {
+            args.addAll(Arrays.asList("-c", clusterId));
+        }
+
+        int result = SgctlTool.exec(args.toArray(new String[0]));
+
+        Assertions.assertEquals(0, result);
+    }
+
+    /**
+     * Executes sgctl with the given arguments and returns the exit code together with the output written to standard out.
+     */
+    static Result exec(String... args) {
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode;
+
+        try {
+            System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+            exitCode = SgctlTool.exec(args);
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        return new Result(exitCode, out.toString(StandardCharsets.UTF_8));
+    }
+
+    static class Result {
+        final int exitCode;
+        final String output;
+
+        Result(int exitCode, String output) {
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+
+public class MultiClusterCommandTest {
+    @RegisterExtension
+    private final static WireMockExtension wm = MockCluster.createWireMock();
+
+    @RegisterExtension
+    private final static WireMockExtension eastWm = MockCluster.createWireMock();
+
+    @RegisterExtension
+    private final static WireMockExtension westWm = MockCluster.createWireMock();
+
+    private static String configDir;
+
+    @BeforeAll
+    public static void connect() throws Exception {
+        configDir = Files.createTempDirectory("sgctl-test-config").toString();
+        MockCluster.connect(wm, configDir, "east");
+        MockCluster.connect(wm, configDir, "west");
+    }
+
+    @Test
+    public void testAllClusters() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        Files.writeString(dir.resolve("sg_tenants.yml"), "test_tenant:\n  description: \"Baseline\"\n");
+
+        wm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        int requestsBefore = wm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config"))).size();
+
+        MockCluster.Result result = MockCluster.exec("update-config", dir.toString(), "--all-clusters", "--parallelism", "2",
+                "--sgctl-config-dir", configDir, "--skip-connection-check");
+
+        Assertions.assertEquals(0, result.exitCode, result.output);
+        Assertions.assertEquals(requestsBefore + 2, wm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config"))).size());
+        Assertions.assertTrue(result.output.matches("(?s).*east\\s+OK\\s+\\d+\\s+success.*"), result.output);
+        Assertions.assertTrue(result.output.matches("(?s).*west\\s+OK\\s+\\d+\\s+success.*"), result.output);
+    }
+
+    @Test
+    public void testUploadConfigRetrievedFromOneOfTheClusters() throws Exception {
+        String baselineConfigDir = Files.createTempDirectory("sgctl-test-config").toString();
+        MockCluster.connect(eastWm, baselineConfigDir, "east");
+        MockCluster.connect(westWm, baselineConfigDir, "west");
+
+        for (WireMockExtension clusterWm : Arrays.asList(eastWm, westWm)) {
+            String clusterName = clusterWm == eastWm ? "east" : "west";
+
+            clusterWm.stubFor(get("/_searchguard/authinfo").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                    .withBody(DocNode.of("cluster_name", clusterName, "user_name", "admin").toJsonString())));
+            clusterWm.stubFor(get("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                    .withBody(DocNode.of("tenants", DocNode.of("content", DocNode.of("test_tenant", DocNode.of("description", "Baseline")),
+                            "_etag", "tenants." + clusterName, "exists", true)).toJsonString())));
+            clusterWm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                    .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+        }
+
+        Path dir = Files.createTempDirectory("sgctl-test-baseline");
+        MockCluster.Result result = MockCluster.exec("get-config", "-o", dir.toString(), "-c", "east", "--sgctl-config-dir", baselineConfigDir);
+        Assertions.assertEquals(0, result.exitCode, result.output);
+        Assertions.assertTrue(Files.readString(dir.resolve("sg_tenants.yml")).contains("cluster:east etag:tenants.east"));
+
+        result = MockCluster.exec("update-config", dir.toString(), "--clusters", "east,west", "--sgctl-config-dir", baselineConfigDir);
+        Assertions.assertEquals(0, result.exitCode, result.output);
+
+        // The etag is only valid for the cluster the configuration was retrieved from
+        List<LoggedRequest> eastRequests = eastWm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+        Assertions.assertEquals(1, eastRequests.size());
+        DocNode eastBody = DocNode.wrap(DocReader.json().read(eastRequests.get(0).getBodyAsString()));
+        Assertions.assertEquals("tenants.east", eastBody.getAsNode("tenants").getAsString("etag"), eastBody.toJsonString());
+
+        List<LoggedRequest> westRequests = westWm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+        Assertions.assertEquals(1, westRequests.size());
+        DocNode westBody = DocNode.wrap(DocReader.json().read(westRequests.get(0).getBodyAsString()));
+        Assertions.assertNull(westBody.getAsNode("tenants").get("etag"), westBody.toJsonString());
+        Assertions.assertEquals("Baseline", westBody.get("tenants", "content", "test_tenant", "description"));
+    }
+
+    @Test
+    public void testChangedOnlyUploadsToEveryCluster() throws Exception {
+        String clustersConfigDir = Files.createTempDirectory("sgctl-test-config").toString();
+        MockCluster.connect(eastWm, clustersConfigDir, "east");
+        MockCluster.connect(westWm, clustersConfigDir, "west");
+
+        for (WireMockExtension clusterWm : Arrays.asList(eastWm, westWm)) {
+            clusterWm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                    .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+        }
+
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        String roles = "# sg_roles v:1.0\ntest_role:\n  cluster_permissions:\n  - \"*\"\n";
+        String tenants = "# sg_tenants v:1.0\ntest_tenant:\n  description: \"Test\"\n";
+        Files.writeString(dir.resolve("sg_roles.yml"), roles);
+        Files.writeString(dir.resolve("sg_tenants.yml"), tenants + "other_tenant:\n  description: \"Other\"\n");
+
+        ConfigManifest manifest = new ConfigManifest();
+        manifest.put("roles", "sg_roles.yml", roles, null);
+        manifest.put("tenants", "sg_tenants.yml", tenants, null);
+        manifest.write(dir.toFile());
+
+        // The clusters are processed one after another; each of them must still see the changes
+        for (int i = 1; i <= 2; i++) {
+            MockCluster.Result result = MockCluster.exec("update-config", dir.toString(), "--changed-only", "--clusters", "east,west",
+                    "--parallelism", "1", "--sgctl-config-dir", clustersConfigDir, "--skip-connection-check");
+            Assertions.assertEquals(0, result.exitCode, result.output);
+
+            for (WireMockExtension clusterWm : Arrays.asList(eastWm, westWm)) {
+                List<LoggedRequest> requests = clusterWm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+                Assertions.assertEquals(i, requests.size(), result.output);
+
+                DocNode body = DocNode.wrap(DocReader.json().read(requests.get(i - 1).getBodyAsString()));
+                Assertions.assertEquals(Arrays.asList("tenants"), List.copyOf(body.keySet()), body.toJsonString());
+            }
+        }
+
+        Assertions.assertEquals(manifest.get("tenants").getHash(), ConfigManifest.read(dir.toFile()).get("tenants").getHash());
+    }
+}
@@ -1,6 +1,7 @@
 package com.floragunn.searchguard.sgctl.commands;
 
 import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.Format;
 import com.floragunn.fluent.collections.ImmutableList;
 import com.floragunn.searchguard.sgctl.SgctlTool;
 import com.floragunn.searchguard.test.helper.certificate.TestCertificate;
@@ -24,6 +25,7 @@ import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
@@ -33,6 +35,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.patch;
 import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
@@ -119,6 +122,15 @@ public class RestCommandTest {
         result = SgctlTool.exec("rest", "put", "/some/endpoint", "--input", contentFile.getPath(),
                 "--sgctl-config-dir", configDir, "--debug", "--skip-connection-check");
         Assertions.assertEquals(1, result);
+
+        // The input must be an object
+        File arrayFile = File.createTempFile("content", ".json");
+        Files.writeString(arrayFile.toPath(), "[\"a\", \"b\"]");
+        result = SgctlTool.exec("rest", "put", "/array/endpoint", "--input", arrayFile.getPath(),
+                "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+        Assertions.assertTrue(errStreamCaptor.toString().contains("must contain an object"), errStreamCaptor.toString());
+        wm.verify(0, putRequestedFor(urlEqualTo("/array/endpoint")));
     }
 
     @Test
@@ -164,6 +176,24 @@ public class RestCommandTest {
         Assertions.assertEquals(okMessage, outputString.substring(0, outputString.lastIndexOf("\n")));
     }
 
+    @Test
+    public void testOutputFileErrorStatus() throws Exception {
+        wm.stubFor(get(urlEqualTo("/missing/endpoint"))
+                .willReturn(aResponse().withStatus(404)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(DocNode.of("status", 404, "error", "Endpoint not found").toJsonString())));
+
+        File outputFile = new File(Files.createTempDirectory("outputs").toFile(), "out.json");
+        int result = SgctlTool.exec("rest", "get", "/missing/endpoint", "--output", outputFile.getPath(),
+                "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+
+        // For error responses, no file is written and the error is reported like without --output
+        Assertions.assertFalse(outputFile.exists());
+        Assertions.assertFalse(outputStreamCaptor.toString().contains("Response has been written"), outputStreamCaptor.toString());
+        Assertions.assertTrue(errStreamCaptor.size() > 0);
+    }
+
     @Test
     public void testGet() throws Exception {
         final String okMessage = DocNode.of("status", 200, "message", "ok").toPrettyJsonString();
@@ -345,4 +375,69 @@ public class RestCommandTest {
         Assertions.assertEquals(0, result);
         wm.verify(exactly(1), patchRequestedFor(urlEqualTo("/some/endpoint")));
     }
+
+    @Test
+    public void testBatch() throws Exception {
+        final String okMessage = DocNode.of("status", 200, "message", "success").toPrettyJsonString();
+        wm.stubFor(put(urlEqualTo("/batch/a"))
+                .withRequestBody(equalToJson("{\"key\": \"value\"}"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(okMessage)));
+        wm.stubFor(put(urlEqualTo("/batch/b"))
+                .withRequestBody(equalToJson("{\"obj\": {\"num\": 3}}"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(okMessage)));
+        wm.stubFor(delete(urlEqualTo("/batch/c"))
+                .willReturn(aResponse().withStatus(404)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(DocNode.of("status", 404, "error", "not found").toJsonString())));
+
+        File batchFile = File.createTempFile("ops", ".ndjson");
+        Files.write(batchFile.toPath(), Arrays.asList(
+                "{\"method\": \"put\", \"endpoint\": \"/batch/a\", \"body\": {\"key\": \"value\"}}",
+                "{\"method\": \"put\", \"endpoint\": \"/batch/b\", \"clon\": \"obj[num]=3\"}",
+                "",
+                "{\"method\": \"delete\", \"endpoint\": \"/batch/c\"}",
+                "{\"method\": \"put\""));
+        File resultFile = File.createTempFile("results", ".ndjson");
+
+        int result = SgctlTool.exec("rest", "batch", "--file", batchFile.getPath(), "--concurrency", "3", "-o", resultFile.getPath(),
+                "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+
+        List<String> lines = Files.readAllLines(resultFile.toPath());
+        Assertions.assertEquals(4, lines.size(), lines.toString());
+        Assertions.assertEquals(1, DocNode.parse(Format.JSON).from(lines.get(0)).get("line"));
+        Assertions.assertEquals(200, DocNode.parse(Format.JSON).from(lines.get(0)).get("status"));
+        Assertions.assertEquals(200, DocNode.parse(Format.JSON).from(lines.get(1)).get("status"));
+        Assertions.assertEquals(4, DocNode.parse(Format.JSON).from(lines.get(2)).get("line"));
+        Assertions.assertEquals(404, DocNode.parse(Format.JSON).from(lines.get(2)).get("status"));
+        Assertions.assertNotNull(DocNode.parse(Format.JSON).from(lines.get(3)).get("error"), lines.get(3));
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("Executed 4 operations"), outputStreamCaptor.toString());
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        wm.stubFor(get(urlEqualTo("/bench/ok"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+        wm.stubFor(get(urlEqualTo("/bench/unauthorized"))
+                .willReturn(aResponse().withStatus(401)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(DocNode.of("status", 401, "error", "Unauthorized").toJsonString())));
+
+        int result = SgctlTool.exec("rest", "get", "/bench/ok", "--repeat", "20", "--concurrency", "4",
+                "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("Requests: 20 in"), outputStreamCaptor.toString());
+        wm.verify(exactly(20), getRequestedFor(urlEqualTo("/bench/ok")));
+
+        result = SgctlTool.exec("rest", "get", "/bench/unauthorized", "--repeat", "3",
+                "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+        Assertions.assertTrue(outputStreamCaptor.toString().contains("UnauthorizedException: 3"), outputStreamCaptor.toString());
+    }
 }
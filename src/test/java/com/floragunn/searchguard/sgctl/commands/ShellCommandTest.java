@@ -0,0 +1,82 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.searchguard.sgctl.SgctlException;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+
+public class ShellCommandTest {
+    @RegisterExtension
+    private final static WireMockExtension wm = MockCluster.createWireMock();
+
+    @Test
+    public void parseArguments() throws Exception {
+        Assertions.assertEquals(Arrays.asList("rest", "get", "/_searchguard/authinfo"), ShellCommand.parseArguments("  rest get   /_searchguard/authinfo "));
+        Assertions.assertEquals(Collections.emptyList(), ShellCommand.parseArguments("   "));
+    }
+
+    @Test
+    public void parseArguments_quoted() throws Exception {
+        Assertions.assertEquals(Arrays.asList("rest", "put", "/endpoint", "--json", "{\"key\": \"value\"}"),
+                ShellCommand.parseArguments("rest put /endpoint --json '{\"key\": \"value\"}'"));
+        Assertions.assertEquals(Arrays.asList("add-user", "john doe", ""), ShellCommand.parseArguments("add-user \"john doe\" \"\""));
+        Assertions.assertEquals(Arrays.asList("a\"b", "c d"), ShellCommand.parseArguments("\"a\\\"b\" c\\ d"));
+    }
+
+    @Test
+    public void parseArguments_unterminatedQuote() {
+        Assertions.assertThrows(SgctlException.class, () -> ShellCommand.parseArguments("rest put '/endpoint"));
+    }
+
+    @Test
+    public void severalCommandsInOneSession() throws Exception {
+        String configDir = MockCluster.connect(wm);
+
+        wm.stubFor(get("/_searchguard/authinfo").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("cluster_name", "test_cluster", "user_name", "admin").toJsonString())));
+        wm.stubFor(get("/first").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("message", "first response").toJsonString())));
+        wm.stubFor(get("/second").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("message", "second response").toJsonString())));
+
+        InputStream originalIn = System.in;
+        MockCluster.Result result;
+
+        try {
+            System.setIn(new ByteArrayInputStream("rest get /first --debug\nrest get /second\nexit\n".getBytes(StandardCharsets.UTF_8)));
+            result = MockCluster.exec("shell", "--sgctl-config-dir", configDir);
+        } finally {
+            System.setIn(originalIn);
+        }
+
+        Assertions.assertEquals(0, result.exitCode, result.output);
+
+        // The connection is established and checked only once for the whole session
+        wm.verify(1, getRequestedFor(urlEqualTo("/_searchguard/authinfo")));
+        wm.verify(1, getRequestedFor(urlEqualTo("/first")));
+        wm.verify(1, getRequestedFor(urlEqualTo("/second")));
+
+        String[] commandOutputs = result.output.split("sgctl> ");
+        Assertions.assertTrue(commandOutputs.length >= 3, result.output);
+        Assertions.assertTrue(commandOutputs[1].contains("first response"), result.output);
+        Assertions.assertTrue(commandOutputs[2].contains("second response"), result.output);
+
+        // The --debug option of the first command must not affect the second command
+        Assertions.assertTrue(commandOutputs[1].contains("----------"), result.output);
+        Assertions.assertFalse(commandOutputs[2].contains("----------"), result.output);
+    }
+}
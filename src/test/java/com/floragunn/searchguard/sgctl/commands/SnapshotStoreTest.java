@@ -0,0 +1,58 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+
+public class SnapshotStoreTest {
+
+    @Test
+    public void testDeduplication() throws Exception {
+        Path configDir = Files.createTempDirectory("sgctl-test-snapshots");
+        SnapshotStore store = new SnapshotStore(configDir.toFile());
+
+        DocNode roles = DocNode.of("test_role", DocNode.of("cluster_permissions", Arrays.asList("*")));
+        DocNode tenants = DocNode.of("a", DocNode.of("description", "A"), "b", DocNode.of("description", "B"));
+        DocNode reorderedTenants = DocNode.of("b", DocNode.of("description", "B"), "a", DocNode.of("description", "A"));
+
+        SnapshotStore.Snapshot first = store.create("test", "cluster1", new GetBulkConfigResponse("1.0",
+                DocNode.of("roles", DocNode.of("content", roles, "_etag", "r.1", "exists", true), "tenants",
+                        DocNode.of("content", tenants, "_etag", "t.1", "exists", true))));
+        SnapshotStore.Snapshot second = store.create("test", "cluster1", new GetBulkConfigResponse("1.0",
+                DocNode.of("roles", DocNode.of("content", DocNode.of("other_role", DocNode.EMPTY), "_etag", "r.2", "exists", true), "tenants",
+                        DocNode.of("content", reorderedTenants, "_etag", "t.1", "exists", true))));
+
+        Assertions.assertNotEquals(first.getId(), second.getId());
+        Assertions.assertEquals(first.getTypes().get("tenants").getHash(), second.getTypes().get("tenants").getHash());
+        Assertions.assertNotEquals(first.getTypes().get("roles").getHash(), second.getTypes().get("roles").getHash());
+        Assertions.assertEquals(3, countBlobs(configDir.resolve("snapshots").resolve("blobs").toFile()));
+
+        List<SnapshotStore.Snapshot> snapshots = store.list();
+        Assertions.assertEquals(Arrays.asList(first.getId(), second.getId()),
+                snapshots.stream().map(SnapshotStore.Snapshot::getId).collect(Collectors.toList()));
+        Assertions.assertEquals("cluster1", snapshots.get(0).getClusterName());
+        Assertions.assertEquals("1.0", snapshots.get(0).getSearchGuardVersion());
+        Assertions.assertEquals("r.1", snapshots.get(0).getTypes().get("roles").getEtag());
+
+        Assertions.assertEquals(roles.toBasicObject(), store.getContent(store.get(first.getId()), "roles").toBasicObject());
+    }
+
+    private static int countBlobs(File dir) {
+        int result = 0;
+
+        for (File file : dir.listFiles()) {
+            result += file.isDirectory() ? countBlobs(file) : 1;
+        }
+
+        return result;
+    }
+}
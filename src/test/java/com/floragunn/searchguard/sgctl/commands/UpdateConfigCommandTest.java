@@ -0,0 +1,223 @@
+package com.floragunn.searchguard.sgctl.commands;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+import com.floragunn.searchguard.sgctl.SgctlTool;
+import com.floragunn.searchguard.sgctl.client.api.GetBulkConfigResponse;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.patch;
+import static com.github.tomakehurst.wiremock.client.WireMock.patchRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static java.util.Collections.singletonList;
+
+public class UpdateConfigCommandTest {
+    @RegisterExtension
+    private final static WireMockExtension wm = MockCluster.createWireMock();
+
+    private static String configDir;
+
+    @BeforeAll
+    public static void connect() throws Exception {
+        configDir = MockCluster.connect(wm);
+    }
+
+    @Test
+    public void testChangedOnly() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        String roles = "# sg_roles v:1.0 etag:roles.1\ntest_role:\n  cluster_permissions:\n  - \"*\"\n";
+        String tenants = "# sg_tenants v:1.0 etag:tenants.1\ntest_tenant:\n  description: \"Test\"\n";
+        Files.writeString(dir.resolve("sg_roles.yml"), roles);
+        Files.writeString(dir.resolve("sg_tenants.yml"), tenants);
+
+        ConfigManifest manifest = new ConfigManifest();
+        manifest.put("roles", "sg_roles.yml", roles, "roles.1");
+        manifest.put("tenants", "sg_tenants.yml", tenants, "tenants.1");
+        manifest.write(dir.toFile());
+
+        wm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        int result = SgctlTool.exec("update-config", dir.toString(), "--changed-only", "--sgctl-config-dir", configDir,
+                "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+        wm.verify(0, putRequestedFor(urlEqualTo("/_searchguard/config")));
+
+        Files.writeString(dir.resolve("sg_tenants.yml"), tenants + "other_tenant:\n  description: \"Other\"\n");
+
+        result = SgctlTool.exec("update-config", dir.toString(), "--changed-only", "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        List<LoggedRequest> requests = wm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+        Assertions.assertEquals(1, requests.size());
+
+        DocNode body = DocNode.wrap(DocReader.json().read(requests.get(0).getBodyAsString()));
+        Assertions.assertEquals(singletonList("tenants"), List.copyOf(body.keySet()), body.toJsonString());
+        Assertions.assertEquals("tenants.1", body.getAsNode("tenants").getAsString("etag"));
+
+        // The manifest has been updated by the upload, so the changed file is not uploaded again
+        result = SgctlTool.exec("update-config", dir.toString(), "--changed-only", "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+        wm.verify(1, putRequestedFor(urlEqualTo("/_searchguard/config")));
+
+        ConfigManifest updatedManifest = ConfigManifest.read(dir.toFile());
+        Assertions.assertEquals("roles.1", updatedManifest.get("roles").getEtag());
+        Assertions.assertNotEquals(manifest.get("tenants").getHash(), updatedManifest.get("tenants").getHash());
+    }
+
+    @Test
+    public void testPatch() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        Files.writeString(dir.resolve("sg_internal_users.yml"), "# sg_internalusers v:1.0 etag:iu.1\nalice:\n  hash: \"a1\"\n"
+                + "  backend_roles:\n  - \"admin\"\nbob:\n  hash: \"b1\"\n  backend_roles:\n  - \"user\"\n  - \"reader\"\n");
+
+        wm.stubFor(get("/_searchguard/config/internalusers").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withHeader("ETag", "iu.1").withBody(DocNode.of("content", DocNode.of("alice", DocNode.of("hash", "a1", "backend_roles",
+                        singletonList("admin")), "bob", DocNode.of("hash", "b1", "backend_roles", singletonList("user")), "carol",
+                        DocNode.of("hash", "c1"))).toJsonString())));
+        wm.stubFor(patch(urlEqualTo("/_searchguard/config/internalusers")).willReturn(aResponse().withStatus(200)
+                .withHeader("Content-Type", "application/json").withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        int result = SgctlTool.exec("update-config", dir.toString(), "--patch", "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        wm.verify(0, putRequestedFor(urlEqualTo("/_searchguard/config")));
+
+        List<LoggedRequest> requests = wm.findAll(patchRequestedFor(urlEqualTo("/_searchguard/config/internalusers")));
+        Assertions.assertEquals(1, requests.size());
+        Assertions.assertEquals("iu.1", requests.get(0).getHeader("If-Match"));
+
+        DocNode body = DocNode.wrap(DocReader.json().read(requests.get(0).getBodyAsString()));
+        Assertions.assertEquals(Arrays.asList("bob", "carol"), List.copyOf(body.keySet()), body.toJsonString());
+        Assertions.assertEquals(Arrays.asList("user", "reader"), body.getAsNode("bob").getAsListOfStrings("backend_roles"));
+        Assertions.assertNull(body.get("bob", "hash"));
+        Assertions.assertTrue(body.containsKey("carol"));
+        Assertions.assertNull(body.get("carol"));
+    }
+
+    @Test
+    public void testPatchSingleChangedType() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        Files.writeString(dir.resolve("sg_roles.yml"), "# sg_roles v:1.0 etag:roles.3\ntest_role:\n  cluster_permissions:\n  - \"*\"\n");
+        Files.writeString(dir.resolve("sg_tenants.yml"), "# sg_tenants v:1.0 etag:tenants.3\ntest_tenant:\n  description: \"Test\"\n"
+                + "other_tenant:\n  description: \"Other\"\n");
+
+        stubConfig("roles", DocNode.of("test_role", DocNode.of("cluster_permissions", singletonList("*"))), "roles.3");
+        stubConfig("tenants", DocNode.of("test_tenant", DocNode.of("description", "Test")), "tenants.3");
+        wm.stubFor(patch(urlEqualTo("/_searchguard/config/tenants")).willReturn(aResponse().withStatus(200)
+                .withHeader("Content-Type", "application/json").withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        int result = SgctlTool.exec("update-config", dir.toString(), "--patch", "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        // Only the changed type is uploaded; as this is a single type, it is sent as patch
+        wm.verify(0, putRequestedFor(urlEqualTo("/_searchguard/config")));
+        wm.verify(0, patchRequestedFor(urlEqualTo("/_searchguard/config/roles")));
+
+        List<LoggedRequest> requests = wm.findAll(patchRequestedFor(urlEqualTo("/_searchguard/config/tenants")));
+        Assertions.assertEquals(1, requests.size());
+        Assertions.assertEquals("tenants.3", requests.get(0).getHeader("If-Match"));
+
+        DocNode body = DocNode.wrap(DocReader.json().read(requests.get(0).getBodyAsString()));
+        Assertions.assertEquals(singletonList("other_tenant"), List.copyOf(body.keySet()), body.toJsonString());
+    }
+
+    @Test
+    public void testPatchSeveralTypes() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        Files.writeString(dir.resolve("sg_roles.yml"), "# sg_roles v:1.0 etag:roles.2\ntest_role:\n  cluster_permissions:\n  - \"*\"\n");
+        Files.writeString(dir.resolve("sg_tenants.yml"), "# sg_tenants v:1.0 etag:tenants.2\ntest_tenant:\n  description: \"Test\"\n");
+        Files.writeString(dir.resolve("sg_roles_mapping.yml"), "# sg_rolesmapping v:1.0 etag:rolesmapping.2\ntest_role:\n  users:\n  - \"alice\"\n");
+        Files.writeString(dir.resolve("sg_internal_users.yml"), "# sg_internalusers v:1.0 etag:iu.3\nalice:\n  hash: \"a1\"\n");
+
+        stubConfig("roles", DocNode.of("test_role", DocNode.of("cluster_permissions", singletonList("*"))), "roles.2");
+        stubConfig("tenants", DocNode.of("test_tenant", DocNode.of("description", "Old")), "tenants.2");
+        stubConfig("rolesmapping", DocNode.EMPTY, "rolesmapping.2");
+        wm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        int result = SgctlTool.exec("update-config", dir.toString(), "--patch", "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        // Several changed types are uploaded atomically in one bulk request instead of separate patches. The internal users are streamed
+        // and thus cannot be compared.
+        wm.verify(0, getRequestedFor(urlEqualTo("/_searchguard/config/internalusers")));
+        wm.verify(0, patchRequestedFor(urlMatching("/_searchguard/config/.*")));
+
+        List<LoggedRequest> requests = wm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+        Assertions.assertEquals(1, requests.size());
+
+        DocNode body = DocNode.wrap(DocReader.json().read(requests.get(0).getBodyAsString()));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("tenants", "rolesmapping", "internalusers")), body.keySet(), body.toJsonString());
+        Assertions.assertEquals("tenants.2", body.getAsNode("tenants").getAsString("etag"));
+        Assertions.assertEquals("rolesmapping.2", body.getAsNode("rolesmapping").getAsString("etag"));
+        Assertions.assertEquals("iu.3", body.getAsNode("internalusers").getAsString("etag"));
+    }
+
+    @Test
+    public void testStreamingInternalUsers() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-update-config");
+        Path file = dir.resolve("sg_internal_users.yml");
+        Files.writeString(file, "# sg_internalusers v:1.0 etag:iu.2\nalice:\n  hash: \"a1\"\n  backend_roles:\n  - \"admin\"\nbob: \"b1\"\n");
+
+        int result = SgctlTool.exec("update-config", file.toString(), "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(1, result);
+
+        Files.writeString(file, "# sg_internalusers v:1.0 etag:iu.2\nalice:\n  hash: \"a1\"\n  backend_roles:\n  - \"admin\"\nbob:\n  hash: \"b1\"\n");
+
+        wm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        result = SgctlTool.exec("update-config", file.toString(), "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        List<LoggedRequest> requests = wm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+        DocNode body = DocNode.wrap(DocReader.json().read(requests.get(requests.size() - 1).getBodyAsString()));
+        Assertions.assertEquals("iu.2", body.getAsNode("internalusers").getAsString("etag"), body.toJsonString());
+        Assertions.assertEquals(Arrays.asList("admin"), body.getAsNode("internalusers", "content", "alice").getAsListOfStrings("backend_roles"));
+        Assertions.assertEquals("b1", body.getAsNode("internalusers", "content", "bob").getAsString("hash"));
+    }
+
+    @Test
+    public void testBundle() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-bundle");
+        File bundleFile = dir.resolve("config.sgb").toFile();
+
+        ConfigBundle.write(bundleFile, new GetBulkConfigResponse("1.0", DocNode.of("tenants", DocNode.of("content",
+                DocNode.of("test_tenant", DocNode.of("description", "Bundled")), "_etag", "tenants.7", "exists", true))), null);
+
+        wm.stubFor(put("/_searchguard/config").willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withBody(DocNode.of("status", 200, "message", "success").toJsonString())));
+
+        int result = SgctlTool.exec("update-config", bundleFile.getPath(), "--sgctl-config-dir", configDir, "--skip-connection-check");
+        Assertions.assertEquals(0, result);
+
+        List<LoggedRequest> requests = wm.findAll(putRequestedFor(urlEqualTo("/_searchguard/config")));
+        DocNode body = DocNode.wrap(DocReader.json().read(requests.get(requests.size() - 1).getBodyAsString()));
+        Assertions.assertEquals("tenants.7", body.getAsNode("tenants").getAsString("etag"));
+        Assertions.assertEquals("Bundled", body.get("tenants", "content", "test_tenant", "description"));
+    }
+
+    private static void stubConfig(String configType, DocNode content, String etag) {
+        wm.stubFor(get("/_searchguard/config/" + configType).willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                .withHeader("ETag", etag).withBody(DocNode.of("content", content).toJsonString())));
+    }
+}
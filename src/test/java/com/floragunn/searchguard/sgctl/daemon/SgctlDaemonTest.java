@@ -0,0 +1,145 @@
+package com.floragunn.searchguard.sgctl.daemon;
+
+import com.floragunn.searchguard.test.helper.certificate.TestCertificates;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static java.util.Collections.singletonList;
+
+public class SgctlDaemonTest {
+    private final static TestCertificates testCertificates = TestCertificates.builder()
+            .ca("CN=localhost,OU=SearchGuard,O=SearchGuard")
+            .addAdminClients(singletonList("CN=admin-0.example.com,OU=SearchGuard,O=SearchGuard"), 10, "secret").build();
+
+    private File socketFile;
+    private Thread daemonThread;
+
+    @BeforeEach
+    public void startDaemon() throws Exception {
+        socketFile = new File(Files.createTempDirectory("sgctl").toFile(), "d.sock");
+
+        SgctlDaemon daemon = new SgctlDaemon(socketFile, Duration.ofMinutes(1));
+        daemonThread = new Thread(daemon::run, "sgctl-daemon-test");
+        daemonThread.setDaemon(true);
+        daemonThread.start();
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (!socketFile.exists()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Daemon did not start");
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    public void stopDaemon() throws Exception {
+        if (socketFile.exists()) {
+            send(socketFile.getParentFile(), "daemon", "--stop");
+        }
+
+        daemonThread.join(10000);
+    }
+
+    @Test
+    public void socketIsOnlyAccessibleByOwner() throws Exception {
+        Assertions.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socketFile.toPath())));
+
+        File[] siblings = socketFile.getParentFile().listFiles();
+        Assertions.assertEquals(1, siblings.length, "Temporary files were left behind: " + Arrays.toString(siblings));
+    }
+
+    @Test
+    public void status() throws Exception {
+        Response response = send(socketFile.getParentFile(), "daemon", "--status");
+
+        Assertions.assertEquals(0, response.exitCode, response.toString());
+        Assertions.assertTrue(response.stdout.contains("sgctl daemon listening on " + socketFile.getAbsoluteFile()), response.toString());
+    }
+
+    @Test
+    public void relativePathsAreResolvedAgainstWorkingDirectoryOfClient() throws Exception {
+        File workingDirectory = Files.createTempDirectory("sgctl-daemon-wd").toFile();
+
+        Response response = send(workingDirectory, "connect", "-h", "localhost", "-p", "9200",
+                "--cert", testCertificates.getAdminCertificate().getCertificateFile().getPath(),
+                "--key", testCertificates.getAdminCertificate().getPrivateKeyFile().getPath(),
+                "--key-pass", "secret",
+                "--ca-cert", testCertificates.getCaCertificate().getCertificateFile().getPath(),
+                "--sgctl-config-dir", "cfg", "--skip-connection-check");
+
+        Assertions.assertEquals(0, response.exitCode, response.toString());
+        Assertions.assertTrue(new File(workingDirectory, "cfg/cluster_localhost.yml").exists(), response.toString());
+
+        response = send(workingDirectory, "update-config", "missing.yml", "--sgctl-config-dir", "cfg", "--skip-connection-check");
+
+        Assertions.assertEquals(1, response.exitCode, response.toString());
+        Assertions.assertTrue(response.stderr.contains(new File(workingDirectory, "missing.yml").getPath()), response.toString());
+    }
+
+    private Response send(File workingDirectory, String... args) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketFile.toPath()))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+            DaemonProtocol.writeRequest(out, workingDirectory.getAbsolutePath(), args);
+
+            for (;;) {
+                byte type = in.readByte();
+                int length = in.readInt();
+
+                switch (type) {
+                case DaemonProtocol.STDOUT:
+                    stdout.write(in.readNBytes(length));
+                    break;
+                case DaemonProtocol.STDERR:
+                    stderr.write(in.readNBytes(length));
+                    break;
+                case DaemonProtocol.STDIN_REQUEST:
+                    DaemonProtocol.writeFrame(out, DaemonProtocol.STDIN, -1);
+                    break;
+                case DaemonProtocol.EXIT:
+                    return new Response(length, stdout.toString(StandardCharsets.UTF_8), stderr.toString(StandardCharsets.UTF_8));
+                default:
+                    throw new IOException("Unexpected frame type " + type);
+                }
+            }
+        }
+    }
+
+    private static class Response {
+        final int exitCode;
+        final String stdout;
+        final String stderr;
+
+        Response(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public String toString() {
+            return "exit code: " + exitCode + "\nstdout:\n" + stdout + "\nstderr:\n" + stderr;
+        }
+    }
+}
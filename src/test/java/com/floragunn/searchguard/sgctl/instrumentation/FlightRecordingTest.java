@@ -0,0 +1,54 @@
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecordingTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecording() throws Exception {
+        File file = tempDir.resolve("sgctl.jfr").toFile();
+
+        FlightRecording.start(file);
+
+        HttpRequestEvent requestEvent = HttpRequestEvent.start("GET", "/_searchguard/config");
+        requestEvent.setStatus(200);
+        requestEvent.addBytesReceived(1234);
+        requestEvent.finish();
+
+        DocumentParseEvent parseEvent = DocumentParseEvent.start("YAML", "sg_roles.yml");
+        parseEvent.finish(42);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlightRecording.finish(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        Assertions.assertTrue(out.toString(StandardCharsets.UTF_8).contains("Wrote flight recording to"), out.toString(StandardCharsets.UTF_8));
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath()).stream()
+                .filter((e) -> e.getEventType().getName().startsWith("sgctl.")).collect(Collectors.toList());
+
+        RecordedEvent recordedRequest = events.stream().filter((e) -> e.getEventType().getName().equals("sgctl.HttpRequest")).findFirst().get();
+        Assertions.assertEquals("/_searchguard/config", recordedRequest.getString("path"));
+        Assertions.assertEquals(200, recordedRequest.getInt("status"));
+        Assertions.assertEquals(1234, recordedRequest.getLong("bytesReceived"));
+
+        RecordedEvent recordedParse = events.stream().filter((e) -> e.getEventType().getName().equals("sgctl.DocumentParse")).findFirst().get();
+        Assertions.assertEquals("sg_roles.yml", recordedParse.getString("source"));
+        Assertions.assertEquals(42, recordedParse.getLong("size"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.floragunn.searchguard.sgctl.instrumentation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.floragunn.codova.documents.DocNode;
+import com.floragunn.codova.documents.DocReader;
+
+public class TimingsTest {
+
+    @Test
+    public void testJsonReport() throws Exception {
+        Timings.commandStarted();
+        Timings.enable(Timings.Format.json);
+
+        try (Timings.Phase phase = Timings.phase("Test phase")) {
+            Thread.sleep(2);
+        }
+
+        Timings.record("Test phase", 1_000_000);
+
+        Timings.Request request = Timings.request("GET", "/_searchguard/authinfo");
+        request.getBytesSent().addAndGet(10);
+        request.uploadFinished(1000);
+        request.responseReceived(200, System.nanoTime());
+        request.getBytesReceived().addAndGet(200);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Timings.finish(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        DocNode report = DocNode.wrap(DocReader.json().read(out.toString(StandardCharsets.UTF_8)));
+        DocNode phase = report.getAsListOfNodes("phases").stream().filter((p) -> "Test phase".equals(p.getAsString("name"))).findFirst().get();
+
+        Assertions.assertEquals(2, ((Number) phase.get("count")).intValue(), report.toJsonString());
+        Assertions.assertTrue(((Number) phase.get("total_ms")).doubleValue() >= 3, report.toJsonString());
+        Assertions.assertEquals(1, ((Number) report.get("request_count")).intValue(), report.toJsonString());
+
+        DocNode requestNode = report.getAsListOfNodes("requests").get(0);
+        Assertions.assertEquals(200, ((Number) requestNode.get("status")).intValue());
+        Assertions.assertEquals(10, ((Number) requestNode.get("bytes_sent")).intValue());
+        Assertions.assertEquals(200, ((Number) requestNode.get("bytes_received")).intValue());
+    }
+
+    @Test
+    public void testDisabled() {
+        Timings.commandStarted();
+
+        Assertions.assertFalse(Timings.isEnabled());
+        Assertions.assertNull(Timings.request("GET", "/"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Timings.finish(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testNestedCommand() throws Exception {
+        Timings.commandStarted();
+        Timings.enable(Timings.Format.json);
+        Timings.record("Outer phase", 1_000_000);
+
+        // Like a command executed by the shell command
+        ByteArrayOutputStream nestedOut = new ByteArrayOutputStream();
+        Timings.commandStarted();
+        Timings.enable(Timings.Format.table);
+        Timings.record("Nested phase", 1_000_000);
+        Timings.finish(new PrintStream(nestedOut, true, StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(0, nestedOut.size());
+        Assertions.assertTrue(Timings.isEnabled());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Timings.finish(new PrintStream(out, true, StandardCharsets.UTF_8));
+
+        DocNode report = DocNode.wrap(DocReader.json().read(out.toString(StandardCharsets.UTF_8)));
+        List<String> phases = report.getAsListOfNodes("phases").stream().map((p) -> p.getAsString("name")).collect(Collectors.toList());
+
+        Assertions.assertTrue(phases.contains("Outer phase"), report.toJsonString());
+        Assertions.assertTrue(phases.contains("Nested phase"), report.toJsonString());
+        Assertions.assertFalse(Timings.isEnabled());
+    }
+}
@@ -0,0 +1,37 @@
+package com.floragunn.searchguard.sgctl.util;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AtomicFilesTest {
+
+    @Test
+    public void testWrite() throws Exception {
+        Path dir = Files.createTempDirectory("sgctl-test-atomic-files");
+        File file = dir.resolve("sg_roles.yml").toFile();
+
+        AtomicFiles.WriteResult first = AtomicFiles.write(file, (writer) -> writer.write("a: 1\n"));
+        Assertions.assertTrue(first.isChanged());
+        Assertions.assertEquals("a: 1\n", Files.readString(file.toPath()));
+
+        long lastModified = file.lastModified();
+        Thread.sleep(10);
+
+        AtomicFiles.WriteResult second = AtomicFiles.write(file, (writer) -> writer.write("a: 1\n"));
+        Assertions.assertFalse(second.isChanged());
+        Assertions.assertEquals(first.getHash(), second.getHash());
+        Assertions.assertEquals(lastModified, file.lastModified());
+
+        AtomicFiles.WriteResult third = AtomicFiles.write(file, (writer) -> writer.write("a: 2\n"));
+        Assertions.assertTrue(third.isChanged());
+        Assertions.assertNotEquals(first.getHash(), third.getHash());
+        Assertions.assertEquals("a: 2\n", Files.readString(file.toPath()));
+
+        Assertions.assertEquals(Arrays.asList("sg_roles.yml"), Arrays.asList(dir.toFile().list()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.floragunn.searchguard.sgctl.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class DocDiffTest {
+
+    @Test
+    public void testMergePatch() {
+        Map<String, Object> source = ImmutableMap.of("alice", ImmutableMap.of("hash", "a1", "backend_roles", Arrays.asList("admin")), "bob",
+                ImmutableMap.of("hash", "b1"), "carol", ImmutableMap.of("hash", "c1"));
+        Map<String, Object> target = ImmutableMap.of("alice", ImmutableMap.of("hash", "a1", "backend_roles", Arrays.asList("admin", "user")), "bob",
+                ImmutableMap.of("hash", "b1"), "dave", ImmutableMap.of("hash", "d1"));
+
+        Map<String, Object> patch = DocDiff.mergePatch(source, target);
+
+        Assertions.assertEquals(
+                ImmutableMap.of("alice", ImmutableMap.of("backend_roles", Arrays.asList("admin", "user")), "dave", ImmutableMap.of("hash", "d1")),
+                withoutNullValues(patch));
+        Assertions.assertTrue(patch.containsKey("carol"));
+        Assertions.assertNull(patch.get("carol"));
+        Assertions.assertEquals(3, patch.size());
+    }
+
+    @Test
+    public void testEqualDocuments() {
+        Map<String, Object> patch = DocDiff.mergePatch(ImmutableMap.of("a", 1, "b", ImmutableMap.of("c", 2.5)),
+                ImmutableMap.of("a", 1L, "b", ImmutableMap.of("c", 2.5)));
+
+        Assertions.assertEquals(Collections.emptyMap(), patch);
+    }
+
+    @Test
+    public void testEqualNumbersHaveEqualHashes() {
+        // 2^53 + 1 is not representable as double; as double, it is equal to 2^53
+        Assertions.assertTrue(DocDiff.equal(ImmutableMap.of("a", 9007199254740993L), ImmutableMap.of("a", 9007199254740992.0)));
+        Assertions.assertTrue(DocDiff.equal(ImmutableMap.of("a", Arrays.asList(1L, 2)), ImmutableMap.of("a", Arrays.asList(1.0, 2.0f))));
+        Assertions.assertTrue(DocDiff.equal(ImmutableMap.of("a", new BigInteger("12345678901234567890")),
+                ImmutableMap.of("a", 12345678901234567890.0)));
+
+        Assertions.assertFalse(DocDiff.equal(ImmutableMap.of("a", 9007199254740993L), ImmutableMap.of("a", 9007199254740992L)));
+        Assertions.assertFalse(DocDiff.equal(ImmutableMap.of("a", 1L), ImmutableMap.of("a", 1.5)));
+    }
+
+    @Test
+    public void testNullValuesCannotBeExpressed() {
+        Map<String, Object> target = new HashMap<>();
+        target.put("a", null);
+
+        Assertions.assertNull(DocDiff.mergePatch(ImmutableMap.of("a", 1), target));
+        Assertions.assertNull(DocDiff.mergePatch(ImmutableMap.of("a", 1), Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void testDiff() {
+        Map<String, Object> source = ImmutableMap.of("alice", ImmutableMap.of("hash", "a1", "backend_roles", Arrays.asList("admin")), "carol",
+                ImmutableMap.of("hash", "c1"), "a/b", 1);
+        Map<String, Object> target = ImmutableMap.of("alice", ImmutableMap.of("hash", "a2", "backend_roles", Arrays.asList("admin")), "a/b", 1L,
+                "dave", ImmutableMap.of("hash", "d1"));
+
+        List<DocDiff.Change> changes = DocDiff.diff(source, target);
+
+        Assertions.assertEquals(Arrays.asList("CHANGED /alice/hash", "REMOVED /carol", "ADDED /dave"),
+                changes.stream().map(DocDiff.Change::toString).collect(Collectors.toList()));
+        Assertions.assertEquals("a1", changes.get(0).getOldValue());
+        Assertions.assertEquals("a2", changes.get(0).getNewValue());
+        Assertions.assertEquals(ImmutableMap.of("hash", "d1"), changes.get(2).getNewValue());
+        Assertions.assertTrue(DocDiff.diff(target, target).isEmpty());
+    }
+
+    private static Map<String, Object> withoutNullValues(Map<String, Object> map) {
+        Map<String, Object> result = new HashMap<>(map);
+        result.values().removeIf((v) -> v == null);
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package com.floragunn.searchguard.sgctl.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LatencyStatsTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyStats stats = new LatencyStats();
+
+        for (int i = 2000; i >= 1; i--) {
+            stats.record(i);
+        }
+
+        Assertions.assertEquals(2000, stats.getCount());
+        Assertions.assertEquals(1000, stats.getPercentile(50));
+        Assertions.assertEquals(1980, stats.getPercentile(99));
+        Assertions.assertEquals(1998, stats.getPercentile(99.9));
+        Assertions.assertEquals(2000, stats.getMax());
+    }
+
+    @Test
+    public void testCoordinatedOmissionCorrection() {
+        LatencyStats stats = new LatencyStats();
+        stats.record(10);
+        stats.record(10);
+        stats.record(45);
+
+        LatencyStats corrected = stats.correctedForCoordinatedOmission(10);
+
+        // 45 hides requests which would have taken 35, 25 and 15
+        Assertions.assertEquals(6, corrected.getCount());
+        Assertions.assertEquals(45, corrected.getMax());
+        Assertions.assertEquals(15, corrected.getPercentile(50));
+    }
+}